@@ -0,0 +1,215 @@
+package bench;
+
+import math.BFGSSolver;
+import math.ChainGradientSolver;
+import math.DifferentiableFunction;
+import math.DifferentialEvolutionSolver;
+import math.DirectSolver;
+import math.ExpressionCompiler;
+import math.FastGradientSolver;
+import math.GaussSeidelSolver;
+import math.GradientSolver;
+import math.LinearRegion;
+import math.ParticleSwarmSolver;
+import math.PenaltyAdjuster;
+import math.PointDouble;
+import math.PopulationSolver;
+import math.PowellSolver;
+import math.ScanSolver;
+import math.SimplexSolver;
+import math.SolveContext;
+import math.Solver;
+import math.Vector2;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Allocation check of the evaluation path: every solver is driven over a compiled objective, the penalty objective of
+ * {@link PenaltyAdjuster} and that objective restricted to a {@link LinearRegion}. A probe around the objective sums the bytes
+ * the evaluating threads allocate inside each evaluation, value and gradient alike. Objectives keep their buffers in thread-locals,
+ * created by the first evaluation of a thread, so each problem is solved once to warm up and then measured; the least of
+ * {@link #RUNS} measured solves has to show 0 bytes, which leaves out one-off reallocations by the JIT.
+ * The bytes the calling thread allocates over the whole solve, iterations, context and cache included, are reported per evaluation.
+ * <p>
+ * Parallel solvers are measured on a pool of their own. Workers of the common pool drop their thread-locals after every task
+ * on recent JDKs, so there the buffers are created again once per generation or batch; those bytes are reported, not checked.
+ * The interval solver is left out, it evaluates interval extensions of the expressions rather than the objective.
+ * Exits with status 1 if an evaluation allocated. Needs a JVM with thread allocation accounting, as HotSpot has.
+ */
+public class AllocationCheck {
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final double RANGE = 2;
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) {
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            throw new IllegalStateException("Thread allocation accounting is not supported by this JVM");
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        DoubleBinaryOperator objective = compile("(1-x)^2+5*(y-x^2)^2");
+        DoubleBinaryOperator penalty = PenaltyAdjuster.getCombinedPenaltyFunction(objective,
+                Arrays.asList(compile("4-x^2-y^2")), PenaltyAdjuster.QUADRATIC_PENALTY_FUNCTION,
+                Arrays.asList(compile("x-y^2+0.5")), PenaltyAdjuster.QUADRATIC_BIDIRECTIONAL_PENALTY_FUNCTION, 100);
+        //x >= -1.5 and x = y
+        LinearRegion region = new LinearRegion(Arrays.asList(new double[]{1, 0, 1.5}), Arrays.asList(new double[]{1, -1, 0}));
+        Map<String, DoubleBinaryOperator> objectives = new LinkedHashMap<>();
+        objectives.put("compiled", objective);
+        objectives.put("penalty", penalty);
+        objectives.put("restricted penalty", region.restrict(penalty));
+
+        //Solvers built for the pool they evaluate on, which the sequential ones ignore
+        Map<String, Function<ForkJoinPool, Solver>> solvers = new LinkedHashMap<>();
+        solvers.put("Gauss-Seidel", pool -> new GaussSeidelSolver());
+        solvers.put("Powell", pool -> new PowellSolver());
+        solvers.put("Simplex", pool -> new SimplexSolver());
+        solvers.put("Gradient", pool -> new GradientSolver());
+        solvers.put("Fast Gradient", pool -> new FastGradientSolver());
+        solvers.put("Chain Gradient", pool -> new ChainGradientSolver());
+        solvers.put("BFGS", pool -> new BFGSSolver());
+        solvers.put("DIRECT", pool -> {
+            DirectSolver direct = new DirectSolver();
+            direct.setBounds(-RANGE, RANGE, -RANGE, RANGE);
+            return direct;
+        });
+        solvers.put("Scan", pool -> {
+            ScanSolver scan = new ScanSolver();
+            scan.setBounds(-RANGE, RANGE, -RANGE, RANGE);
+            scan.setPool(pool);
+            return scan;
+        });
+        solvers.put("Differential Evolution", pool -> population(new DifferentialEvolutionSolver(), pool));
+        solvers.put("Particle Swarm", pool -> population(new ParticleSwarmSolver(), pool));
+        String[] parallel = {"Scan", "Differential Evolution", "Particle Swarm"};
+
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        int failures = 0;
+        System.out.printf("%-24s %-20s %12s %14s %20s%n", "Solver", "Objective", "Evaluations", "Bytes inside", "Bytes/eval of solve");
+        for (Map.Entry<String, Function<ForkJoinPool, Solver>> solver : solvers.entrySet()) {
+            boolean isParallel = Arrays.asList(parallel).contains(solver.getKey());
+            for (Map.Entry<String, DoubleBinaryOperator> entry : objectives.entrySet()) {
+                Measurement measurement = measure(() -> solver.getValue().apply(pool), (DifferentiableFunction) entry.getValue());
+                boolean passed = measurement.bytes == 0;
+                if (!passed) {
+                    failures++;
+                }
+                print(solver.getKey(), entry.getKey(), measurement, passed ? "" : "FAIL");
+                if (isParallel) {
+                    Measurement common = measure(() -> solver.getValue().apply(ForkJoinPool.commonPool()), (DifferentiableFunction) entry.getValue());
+                    print("  on the common pool", "", common, "not checked");
+                }
+            }
+        }
+        pool.shutdown();
+        System.out.println(failures == 0 ? "No evaluation allocated" : failures + " solves allocated inside evaluations");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Solver population(PopulationSolver solver, ForkJoinPool pool) {
+        solver.setBounds(-RANGE, RANGE, -RANGE, RANGE);
+        solver.setPool(pool);
+        return solver;
+    }
+
+    /**@return The measured solve with the least bytes inside evaluations, after a solve that warms up*/
+    private static Measurement measure(Supplier<Solver> solvers, DifferentiableFunction f) {
+        solve(solvers.get(), new Probe(f));
+        Measurement best = null;
+        for (int i = 0; i < RUNS; i++) {
+            Probe probe = new Probe(f);
+            long before = allocatedBytes();
+            SolveContext context = solve(solvers.get(), probe);
+            Measurement measurement = new Measurement(probe.evaluations.get(), probe.bytes.get(),
+                    (allocatedBytes() - before) / (double) Math.max(1, context.getEvaluations()));
+            if (best == null || measurement.bytes < best.bytes) {
+                best = measurement;
+            }
+        }
+        return best;
+    }
+
+    private static void print(String solver, String objective, Measurement measurement, String verdict) {
+        System.out.printf("%-24s %-20s %12d %14d %20.1f  %s%n", solver, objective, measurement.evaluations, measurement.bytes, measurement.solveBytes, verdict);
+    }
+
+    private static SolveContext solve(Solver solver, DoubleBinaryOperator f) {
+        solver.setTracing(false);
+        return solver.solve(f, 1e-6, new PointDouble(-1.2, 1));
+    }
+
+    private static DoubleBinaryOperator compile(String expression) {
+        return ExpressionCompiler.compile(expression, "x", "y");
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static class Measurement {
+        private final long evaluations;
+        private final long bytes;
+        private final double solveBytes;
+
+        private Measurement(long evaluations, long bytes, double solveBytes) {
+            this.evaluations = evaluations;
+            this.bytes = bytes;
+            this.solveBytes = solveBytes;
+        }
+    }
+
+    /**Objective that counts the evaluations and the bytes the evaluating threads allocate inside them*/
+    private static class Probe implements DifferentiableFunction {
+        private final DifferentiableFunction f;
+        private final AtomicLong evaluations = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+
+        private Probe(DifferentiableFunction f) {
+            this.f = f;
+        }
+
+        @Override
+        public double applyAsDouble(double x, double y) {
+            long before = allocatedBytes();
+            double value = f.applyAsDouble(x, y);
+            record(before);
+            return value;
+        }
+
+        @Override
+        public void gradient(double x, double y, Vector2 out) {
+            long before = allocatedBytes();
+            f.gradient(x, y, out);
+            record(before);
+        }
+
+        @Override
+        public double valueAndGradient(double x, double y, Vector2 gradient) {
+            long before = allocatedBytes();
+            double value = f.valueAndGradient(x, y, gradient);
+            record(before);
+            return value;
+        }
+
+        @Override
+        public void hessian(double x, double y, double[] out) {
+            long before = allocatedBytes();
+            f.hessian(x, y, out);
+            record(before);
+        }
+
+        private void record(long before) {
+            bytes.addAndGet(allocatedBytes() - before);
+            evaluations.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package bench;
+
+import math.ExpressionCompiler;
+import math.ExpressionNode;
+import org.mariuszgromada.math.mxparser.Function;
+
+import java.util.Random;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Differential check of {@link ExpressionCompiler} against mXparser over the grammar the compiler supports: every expression
+ * the compiler parses has to pass the mXparser syntax check, and its compiled value has to match {@link Function#calculate}
+ * at points that include negative bases, zero divisors and the poles of the trigonometric functions.
+ * mXparser rounds results that are within a few ulps of an integer, so values are compared to a relative tolerance.
+ * Expressions with a unary plus are left out, mXparser accepts them but never finishes evaluating them.
+ * Exits with status 1 if a case fails.
+ */
+public class ExpressionCheck {
+    private static final double TOLERANCE = 1e-9;
+    private static final int RANDOM_POINTS = 200;
+
+    private static final String[] EXPRESSIONS = {
+            //Arithmetic, precedence and signs
+            "x + y", "x - y", "x * y", "x / y", "x ^ y", "-x", "-x^2", "2^-x", "x^-y", "x^y^2", "x^y^-1", "x*-y", "x/-y", "-(-x)",
+            "x+(-y)", "2*x-3*y/4+1", "(x-1)^2+5*(y-x^2)^2", "x/y/2", "x-y-1", "x^2/y^2", "1/x", "x/(y-y)", "0/0", "2*e", "-pi*x",
+            "1e3*x", "1.5e+2-y", "2.5E-1*x", ".5*x", "00.5+x", "x=-y", "x<-y", "x&-y",
+            //Powers of negative bases
+            "x^(1/3)", "x^(-1/3)", "x^(1/5)", "x^(1/7)", "x^(2/3)", "x^(3/5)", "x^(1/4)", "x^0.5", "x^2.5", "x^(-1)", "x^(-3)",
+            "x^0", "0^0", "(x-y)^(1/3)", "(x*y)^(1/3)+y^(1/5)", "x^(0.3333)", "(-8)^(1/3)", "(-8)^(2/3)", "0^(-1)", "x^y+y^x",
+            //Functions and their aliases
+            "sin(x)", "cos(y)", "tan(x)", "tg(x)", "cot(x)", "ctg(x)", "ctan(x)", "asin(x)", "arcsin(y)", "acos(x)",
+            "arccos(y)", "atan(x)", "arctan(y)", "arctg(x)", "sinh(x)", "cosh(y)", "tanh(x)", "tgh(y)", "exp(x)", "ln(x)",
+            "log10(x)", "log2(y)", "log(2, x)", "log(x, y)", "sqrt(x)", "abs(x)", "sgn(x)", "floor(x)", "ceil(y)",
+            "min(x, y)", "max(x, y)", "min(x, y, 1)", "max(x)", "sqrt(x^2+y^2)-1", "exp(-x^2-y^2)*sin(3*x)",
+            //Comparisons, logic and conditions
+            "x < y", "x > y", "x <= y", "x >= y", "x = y", "x == y", "x <> y", "x ~= y", "x != y", "x < 0 & y > 0",
+            "x < 0 && y > 0", "x < 0 | y > 0", "x < 0 || y > 0", "~(x > 0)", "~x", "x & y", "x | y", "sqrt(x) > 0",
+            "sqrt(x) > 0 | y > 0", "sqrt(x) > 0 & y > 0", "~(sqrt(x) > 0)", "~x+1", "x+~y", "x^~y", "~-x", "~(~x)", "x<~y",
+            "if(x > 0, x, y)", "if(sqrt(x) > 1, 1, 2)", "if(x, 1/x, 0)", "x*y = 0", "x + 0.1 = y + 0.1",
+            //Rejected by mXparser, so the compiler has to reject them too
+            "lg(x)", "x - -y", "x+-y", "x-+y", "--x", "~~x", "-~x", "2*--x", "x^--y", "5.", "1.e3", "2e", "x%y", "iff(x>0, 1, 2)",
+            "x y", "sin x", "x(y)",
+    };
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        double[] special = {-8, -2, -1, -0.5, 0, 0.5, 1, 2, 8, Math.PI / 2, -Math.PI};
+        Random random = new Random(1);
+        for (String expression : EXPRESSIONS) {
+            Function function = new Function("f(x, y) = " + expression);
+            ExpressionNode tree = ExpressionCompiler.tryParse(function);
+            boolean syntax = function.checkSyntax();
+            if (tree == null) {
+                System.out.printf("%-4s %-32s %s%n", "ok", expression, syntax ? "left to mXparser" : "rejected by both");
+                continue;
+            }
+            if (!syntax) {
+                fail(expression, "parsed by the compiler, rejected by mXparser");
+                continue;
+            }
+            DoubleBinaryOperator compiled = ExpressionCompiler.compile(function);
+            int mismatches = 0;
+            String first = null;
+            for (int i = 0; i < special.length * special.length + RANDOM_POINTS; i++) {
+                double x = i < special.length * special.length ? special[i / special.length] : 20 * random.nextDouble() - 10;
+                double y = i < special.length * special.length ? special[i % special.length] : 20 * random.nextDouble() - 10;
+                double expected = function.calculate(x, y);
+                double actual = compiled.applyAsDouble(x, y);
+                if (!matches(expected, actual)) {
+                    if (first == null) {
+                        first = String.format("at (%s; %s) mXparser %s, compiled %s", x, y, expected, actual);
+                    }
+                    mismatches++;
+                }
+            }
+            if (mismatches > 0) {
+                fail(expression, mismatches + " mismatches, first " + first);
+            }
+            else {
+                System.out.printf("%-4s %-32s %s%n", "ok", expression, "compiled as " + compiled.getClass().getSimpleName());
+            }
+        }
+        System.out.println(failures == 0 ? "All cases passed" : failures + " cases failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean matches(double expected, double actual) {
+        if (Double.isNaN(expected) || Double.isNaN(actual) || Double.isInfinite(expected) || Double.isInfinite(actual)) {
+            return Double.compare(expected, actual) == 0;
+        }
+        return Math.abs(expected - actual) <= TOLERANCE * Math.max(1, Math.max(Math.abs(expected), Math.abs(actual)));
+    }
+
+    private static void fail(String expression, String message) {
+        failures++;
+        System.out.printf("%-4s %-32s %s%n", "FAIL", expression, message);
+    }
+}
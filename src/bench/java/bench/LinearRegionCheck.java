@@ -0,0 +1,112 @@
+package bench;
+
+import math.BFGSSolver;
+import math.ExpressionCompiler;
+import math.GradientSolver;
+import math.PenaltyAdjuster;
+import math.PenaltyFunction;
+import math.PointDouble;
+import math.PowellSolver;
+import math.SimplexSolver;
+import math.Solver;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Regression check of {@link PenaltyAdjuster} with exact linear parts: on problems that mix nonlinear bounds with linear bounds
+ * and constraints, every finite point it returns has to meet the linear ones to rounding, whatever the inner solver and penalty function.
+ * The solvers that converge on these problems also have to end near the known solution; gradient descent with a fixed step
+ * diverges at high penalty factors and the simplex stalls against barriers, with or without the exact linear parts.
+ * Exits with status 1 if a case fails.
+ */
+public class LinearRegionCheck {
+    /**Violation of a linear bound or constraint that counts as rounding*/
+    private static final double LINEAR_TOLERANCE = 1e-9;
+    /**Violation of a nonlinear bound the penalty may leave*/
+    private static final double BOUND_TOLERANCE = 1e-4;
+    /**Distance from the known solution*/
+    private static final double SOLUTION_TOLERANCE = 1e-2;
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        //Nearest point to (2; 2) of the unit disc on the line y = 0.5
+        check("disc and y = 0.5", "(x-2)^2+(y-2)^2", Arrays.asList("1-x^2-y^2"), Arrays.asList("y-0.5"),
+                new PointDouble(Math.sqrt(0.75), 0.5), new PointDouble(0.1, 0.1), new PointDouble(2, 2));
+        //Nearest point to (2; 0) of the unit disc on the diagonal
+        check("disc and x = y", "(x-2)^2+y^2", Arrays.asList("1-x^2-y^2"), Arrays.asList("x-y"),
+                new PointDouble(Math.sqrt(0.5), Math.sqrt(0.5)), new PointDouble(0.1, -0.3), new PointDouble(-2, 1));
+        //The linear bound x >= 0.2 is active, the disc is not
+        check("disc, x >= 0.2 and y = 0.5", "(x+2)^2+(y-2)^2", Arrays.asList("1-x^2-y^2", "x-0.2"), Arrays.asList("y-0.5"),
+                new PointDouble(0.2, 0.5), new PointDouble(0.5, 0.1), new PointDouble(-2, 2));
+        //Two constraints leave a single point inside the disc
+        check("disc, x + y = 0.5 and x = y", "(x-2)^2+(y-2)^2", Arrays.asList("1-x^2-y^2"), Arrays.asList("x+y-0.5", "x-y"),
+                new PointDouble(0.25, 0.25), new PointDouble(0.1, 0.1), new PointDouble(2, -2));
+        //Annulus around the origin: the nonlinear bound keeps the point out of the small disc
+        check("annulus and x = 0.3", "x^2+(y-0.1)^2", Arrays.asList("x^2+y^2-0.25"), Arrays.asList("x-0.3"),
+                new PointDouble(0.3, 0.4), new PointDouble(0.3, 0.9), new PointDouble(1, 2));
+        System.out.println(failures == 0 ? "All cases passed" : failures + " cases failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void check(String name, String objective, List<String> boundExpressions, List<String> constraintExpressions, PointDouble solution, PointDouble... starts) {
+        DoubleBinaryOperator f = compile(objective);
+        List<DoubleBinaryOperator> bounds = compile(boundExpressions);
+        List<DoubleBinaryOperator> constraints = compile(constraintExpressions);
+        List<Supplier<Solver>> solvers = Arrays.asList(BFGSSolver::new, PowellSolver::new, GradientSolver::new, SimplexSolver::new);
+        int converging = 2;
+        List<PenaltyFunction> penaltyFunctions = Arrays.asList(PenaltyAdjuster.QUADRATIC_PENALTY_FUNCTION, PenaltyAdjuster.INVERSE_PENALTY_FUNCTION, PenaltyAdjuster.LOGARITHMIC_PENALTY_FUNCTION);
+        String[] penaltyNames = {"quadratic", "inverse", "logarithmic"};
+        for (int s = 0; s < solvers.size(); s++) {
+            for (int p = 0; p < penaltyFunctions.size(); p++) {
+                for (PointDouble start : starts) {
+                    Solver inner = solvers.get(s).get();
+                    PenaltyAdjuster adjuster = new PenaltyAdjuster(inner, penaltyFunctions.get(p), bounds, constraints, true);
+                    PointDouble result = adjuster.solve(f, 1e-6, start).getResult();
+                    double linear = 0;
+                    double nonlinear = 0;
+                    for (int i = 0; i < bounds.size(); i++) {
+                        double violation = -bounds.get(i).applyAsDouble(result.getX(), result.getY());
+                        if (ExpressionCompiler.affine(bounds.get(i)) != null) {
+                            linear = Math.max(linear, violation);
+                        }
+                        else {
+                            nonlinear = Math.max(nonlinear, violation);
+                        }
+                    }
+                    for (DoubleBinaryOperator constraint : constraints) {
+                        linear = Math.max(linear, Math.abs(constraint.applyAsDouble(result.getX(), result.getY())));
+                    }
+                    double distance = result.add(solution.scale(-1)).length();
+                    boolean finite = Double.isFinite(result.getX()) && Double.isFinite(result.getY());
+                    boolean passed = finite ? linear <= LINEAR_TOLERANCE : s >= converging;
+                    if (s < converging) {
+                        passed &= nonlinear <= BOUND_TOLERANCE && distance <= SOLUTION_TOLERANCE;
+                    }
+                    if (!passed) {
+                        failures++;
+                    }
+                    System.out.printf("%-4s %-28s %-16s %-12s from %-12s linear %.1e nonlinear %.1e distance %.1e%n", passed ? "ok" : "FAIL",
+                            name, inner.getClass().getSimpleName(), penaltyNames[p], start.toString(2), linear, nonlinear, distance);
+                }
+            }
+        }
+    }
+
+    private static DoubleBinaryOperator compile(String expression) {
+        return ExpressionCompiler.compile(expression, "x", "y");
+    }
+
+    private static List<DoubleBinaryOperator> compile(List<String> expressions) {
+        DoubleBinaryOperator[] compiled = new DoubleBinaryOperator[expressions.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = compile(expressions.get(i));
+        }
+        return Arrays.asList(compiled);
+    }
+}
@@ -0,0 +1,94 @@
+package bench;
+
+import graphics.ContourGraphDisplay;
+import math.ExpressionCompiler;
+import org.mariuszgromada.math.mxparser.Function;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Headless benchmark of {@link ContourGraphDisplay} painting: a heatmap with two bounds and a constraint, whose pixels and edges
+ * are rendered in parallel tiles, painted on pools of 1, 2, 4... workers up to the processors of the machine, and on the common pool.
+ * Reports the first paint, which also fills the function cache, and the best of the repaints, which render only the tiles,
+ * with the speed-up of the repaint over one worker and whether the image is the same as with one worker.
+ * Arguments: side of the graph in pixels (1000), repaints per pool (10).
+ */
+public class PaintBenchmark {
+    private static final int MARGIN = 100;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int repaints = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int processors = Runtime.getRuntime().availableProcessors();
+        List<Integer> workers = new ArrayList<>();
+        for (int i = 1; i < processors; i *= 2) {
+            workers.add(i);
+        }
+        workers.add(processors);
+        System.out.println(size + "x" + size + " heatmap with 2 bounds and 1 constraint, " + processors + " processors, best of " + repaints + " repaints");
+        System.out.printf("%-16s %16s %14s %10s %10s%n", "Pool", "First paint, ms", "Repaint, ms", "Speed-up", "Same image");
+
+        //Warms up the JIT, so the first paint on one worker is not the only one that includes compilation
+        paint(display(size, ForkJoinPool.commonPool()), size);
+
+        int[] reference = null;
+        double single = 0;
+        for (int i = 0; i <= workers.size(); i++) {
+            boolean common = i == workers.size();
+            ForkJoinPool pool = common ? ForkJoinPool.commonPool() : new ForkJoinPool(workers.get(i));
+            ContourGraphDisplay display = display(size, pool);
+            BufferedImage image = new BufferedImage(size + MARGIN, size + MARGIN, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = image.createGraphics();
+            long start = System.nanoTime();
+            display.paint(graphics);
+            double first = (System.nanoTime() - start) / 1e6;
+            double best = Double.POSITIVE_INFINITY;
+            for (int r = 0; r < repaints; r++) {
+                start = System.nanoTime();
+                display.paint(graphics);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            graphics.dispose();
+            int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+            if (reference == null) {
+                reference = pixels;
+                single = best;
+            }
+            System.out.printf("%-16s %16.1f %14.1f %10.2f %10s%n", common ? "common (" + pool.getParallelism() + ")" : workers.get(i) + " workers",
+                    first, best, single / best, Arrays.equals(reference, pixels) ? "yes" : "NO");
+            if (!common) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void paint(ContourGraphDisplay display, int size) {
+        Graphics2D graphics = new BufferedImage(size + MARGIN, size + MARGIN, BufferedImage.TYPE_INT_RGB).createGraphics();
+        display.paint(graphics);
+        display.paint(graphics);
+        graphics.dispose();
+    }
+
+    private static ContourGraphDisplay display(int size, ForkJoinPool pool) {
+        ContourGraphDisplay display = new ContourGraphDisplay();
+        display.setPool(pool);
+        display.setSize(size + MARGIN, size + MARGIN);
+        display.setFunction(new Function("f(x, y) = sin(3*x)+cos(2*y)+x^2/4"));
+        display.setLowerX(-5);
+        display.setUpperX(5);
+        display.setLowerY(-5);
+        display.setUpperY(5);
+        display.setResolution(50);
+        display.setContours(0);
+        display.getFunctionBounds().add(ExpressionCompiler.compile("x+2*y+1", "x", "y"));
+        display.getFunctionBounds().add(ExpressionCompiler.compile("9-x^2-y^2", "x", "y"));
+        display.getFunctionConstraints().add(ExpressionCompiler.compile("sin(x*y)-0.3*x", "x", "y"));
+        return display;
+    }
+}
@@ -8,7 +8,6 @@ import javax.swing.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.function.BiFunction;
 import java.util.function.DoubleBinaryOperator;
 import java.util.stream.Collectors;
 
@@ -27,6 +26,7 @@ public class MainWindow {
     private JTextField lowerZ;
     private JTextField upperZ;
     private JTextField resolutionField;
+    private JTextField sampleBudgetField;
     private JTextField contoursField;
     private JTextField widthField;
     private JTextField offsetField;
@@ -46,11 +46,21 @@ public class MainWindow {
     private JButton deleteConstraintButton;
     private JButton eqButton;
     private JButton leBoundButton;
+    private JTextField sampledStartsField;
+    private JComboBox samplingBox;
+    private JCheckBox warmStartCheckBox;
     
     private static String TITLE = "2D-Optimization-1";
+    private static final int CACHE_CAPACITY = 1 << 14;
+    /**Penalty factor used to rank the results of a multi-start solve, so that infeasible results lose*/
+    private static final double MULTI_START_SCORE_K = 1e6;
+    private static final int AUGMENTED_LAGRANGIAN = 3;
+    /**Milliseconds a penalty solve over DIRECT may take across all its levels, so that it can not freeze the window*/
+    private static final long DIRECT_TIME_BUDGET = 2000;
     private Function function;
     private Solver solver;
-    PenaltyAdjuster pa;
+    private SolveContext result;
+    private PenaltyAdjuster.Context penaltyResult;
     private List<Function> bounds = new ArrayList<>();
     private List<Function> constraints = new ArrayList<>();
     private double k = 1;
@@ -127,17 +137,16 @@ public class MainWindow {
             }
             initSolver();
             k = 1;
+            penaltyResult = null;
             int displayIteration = Integer.parseInt(displayIterationField.getText());
             if (solver != null) {
                 if (bounds == null) {
                     bounds = new ArrayList<>();
                 }
-                List<BiFunction<Double, Double, Double>> boundsProcessed = new ArrayList<>();
-                bounds.forEach(b -> boundsProcessed.add((x, y) -> b.calculate(x, y)));
-                List<BiFunction<Double, Double, Double>> constraintsProcessed = new ArrayList<>();
-                constraints.forEach(c -> constraintsProcessed.add((x, y) -> c.calculate(x, y)));
+                List<DoubleBinaryOperator> boundsProcessed = bounds.stream().map(ExpressionCompiler::compile).collect(Collectors.toList());
+                List<DoubleBinaryOperator> constraintsProcessed = constraints.stream().map(ExpressionCompiler::compile).collect(Collectors.toList());
                 
-                BiFunction<List<Double>, Double, Double> penaltyFunction;
+                PenaltyFunction penaltyFunction;
                 switch (penaltyFunctionBox.getSelectedIndex()) {
                     case 0:
                         penaltyFunction = PenaltyAdjuster.INVERSE_PENALTY_FUNCTION;
@@ -149,16 +158,51 @@ public class MainWindow {
                         penaltyFunction = PenaltyAdjuster.QUADRATIC_PENALTY_FUNCTION;
                 }
                 
-                pa = new PenaltyAdjuster(solver, penaltyFunction, boundsProcessed, constraintsProcessed, true);
-                pa.setDisplayIteration(displayIteration);
-                
-                solver.setF(function::calculate);
+                DoubleBinaryOperator objective = ExpressionCompiler.compile(function);
                 List<PointDouble> startPoints = getStartPoints();
-                PointDouble result = pa.solve(startPoints.toArray(new PointDouble[]{}));
-                log.append("\nResult: " + new PointDouble(result.getX(), result.getY()).toString(Solver.PRECISION));
+                int sampledStarts = Integer.parseInt(sampledStartsField.getText());
+                solver.setCacheCapacity(CACHE_CAPACITY);
+                PenaltyAdjuster pa = null;
+                if (solver instanceof IntervalSolver) {
+                    //Interval evaluation discards infeasible boxes itself, no penalties are involved
+                    ((IntervalSolver) solver).setConstraints(boundsProcessed, constraintsProcessed);
+                    result = solver.solve(objective);
+                }
+                else {
+                    pa = penaltyFunctionBox.getSelectedIndex() == AUGMENTED_LAGRANGIAN
+                            ? new AugmentedLagrangianAdjuster(solver, boundsProcessed, constraintsProcessed)
+                            : new PenaltyAdjuster(solver, penaltyFunction, boundsProcessed, constraintsProcessed, true);
+                    pa.setDisplayIteration(displayIteration);
+                    pa.setContinuation(warmStartCheckBox.isSelected());
+                    if (solver instanceof DirectSolver) {
+                        pa.setTimeBudget(DIRECT_TIME_BUDGET);
+                    }
+                    //Global solvers cover the range by themselves, several starts would only repeat the same search
+                    if (pa.isLocal() && (startPoints.size() != 1 || sampledStarts > 0)) {
+                        MultiStartSolver multiStart = new MultiStartSolver(pa);
+                        multiStart.setScore(PenaltyAdjuster.getCombinedPenaltyFunction(objective, boundsProcessed, PenaltyAdjuster.QUADRATIC_PENALTY_FUNCTION, constraintsProcessed, PenaltyAdjuster.QUADRATIC_BIDIRECTIONAL_PENALTY_FUNCTION, MULTI_START_SCORE_K));
+                        multiStart.setSampledStarts(sampledStarts);
+                        multiStart.setSampling(samplingBox.getSelectedIndex() == 1 ? MultiStartSolver.Sampling.RANDOM : MultiStartSolver.Sampling.SOBOL);
+                        multiStart.setBounds(Double.parseDouble(lowerX.getText()), Double.parseDouble(upperX.getText()), Double.parseDouble(lowerY.getText()), Double.parseDouble(upperY.getText()));
+                        MultiStartSolver.Context multiStartResult = multiStart.solve(objective, startPoints.toArray(new PointDouble[]{}));
+                        penaltyResult = (PenaltyAdjuster.Context) multiStartResult.getBestRun().getContext();
+                        result = multiStartResult;
+                    }
+                    else {
+                        penaltyResult = pa.solve(objective, startPoints.toArray(new PointDouble[]{}));
+                        result = penaltyResult;
+                    }
+                }
+                log.append("\nResult: " + result.getResult().toString(Solver.PRECISION));
+                log.append("\nEvaluations: " + result.getEvaluations() + "; Gradient evaluations: " + result.getGradientEvaluations());
+                if (penaltyResult instanceof AugmentedLagrangianAdjuster.Context) {
+                    log.append("\nMultipliers: " + ((AugmentedLagrangianAdjuster.Context) penaltyResult).getMultipliersString());
+                }
                 log.append("\nLog:");
-                pa.getSolutionLog().forEach(s -> log.append("\n" + s));
-                k = displayIteration < 0 ? pa.getK() : Math.min(pa.getKOfIteration(displayIteration), pa.getK());
+                result.getSolutionLog().forEach(s -> log.append("\n" + s));
+                if (penaltyResult != null) {
+                    k = displayIteration < 0 ? penaltyResult.getK() : Math.min(pa.getKOfIteration(displayIteration), penaltyResult.getK());
+                }
             }
             updateGraph();
         }
@@ -171,6 +215,9 @@ public class MainWindow {
     }
     
     private List<PointDouble> getStartPoints() {
+        if (startXField.getText().trim().isEmpty() && startYField.getText().trim().isEmpty()) {
+            return new ArrayList<>();
+        }
         List<String> stringsX = Arrays.asList(startXField.getText().split(";\\s*"));
         List<String> stringsY = Arrays.asList(startYField.getText().split(";\\s*"));
         if (stringsX.size() != stringsY.size()) {
@@ -185,9 +232,9 @@ public class MainWindow {
     
     private void updateGraph() {
         graph.setFunction(function);
-        if (pa != null && solver!= null) {
-            graph.setPoints(pa.getPoints());
-            graph.setLines(pa.getLines());
+        if (result != null && solver!= null) {
+            graph.setPoints(result.getPoints());
+            graph.setLines(result.getLines());
         }
         else {
             graph.getPoints().clear();
@@ -196,10 +243,10 @@ public class MainWindow {
         graph.getFunctionBounds().clear();
         graph.getFunctionConstraints().clear();
         if (bounds != null) { ;
-            bounds.forEach(b -> graph.getFunctionBounds().add((x, y) -> b.calculate(x, y)));
+            bounds.stream().map(ExpressionCompiler::compile).forEach(graph.getFunctionBounds()::add);
         }
         if (constraints != null) {
-            constraints.forEach(c -> graph.getFunctionConstraints().add((x, y) -> c.calculate(x, y)));
+            constraints.stream().map(ExpressionCompiler::compile).forEach(graph.getFunctionConstraints()::add);
         }
         graph.setLowerX(Double.parseDouble(lowerX.getText()));
         graph.setUpperX(Double.parseDouble(upperX.getText()));
@@ -208,6 +255,7 @@ public class MainWindow {
         graph.setLowerZ(Double.parseDouble(lowerZ.getText()));
         graph.setUpperZ(Double.parseDouble(upperZ.getText()));
         graph.setResolution(Integer.parseInt(resolutionField.getText()));
+        graph.setSampleBudget(Long.parseLong(sampleBudgetField.getText()));
         graph.setContours(Double.parseDouble(contoursField.getText()));
         graph.setContourWidth(Double.parseDouble(widthField.getText()));
         graph.setContourOffset(Double.parseDouble(offsetField.getText()));
@@ -216,7 +264,7 @@ public class MainWindow {
         graph.setDisplayingValues(displayValuesCheckBox.isSelected());
         graph.setDisplayPenaltyFunction(displayPenaltyFunctionCheckBox.isSelected());
         
-        BiFunction<List<Double>, Double, Double> penaltyFunction;
+        PenaltyFunction penaltyFunction;
         switch (penaltyFunctionBox.getSelectedIndex()) {
             case 0:
                 penaltyFunction = PenaltyAdjuster.INVERSE_PENALTY_FUNCTION;
@@ -227,8 +275,18 @@ public class MainWindow {
             default:
                 penaltyFunction = PenaltyAdjuster.QUADRATIC_PENALTY_FUNCTION;
         }
-        graph.setPenaltyFunction(l -> penaltyFunction.apply(l, k));
-        graph.setConstraintPenaltyFunction(l -> PenaltyAdjuster.QUADRATIC_BIDIRECTIONAL_PENALTY_FUNCTION.apply(l, k));
+        if (penaltyFunctionBox.getSelectedIndex() == AUGMENTED_LAGRANGIAN) {
+            //Terms with the multipliers of the last solve, plain quadratic penalties before any
+            AugmentedLagrangianAdjuster.Context lagrangian = penaltyResult instanceof AugmentedLagrangianAdjuster.Context ? (AugmentedLagrangianAdjuster.Context) penaltyResult : null;
+            PenaltyFunction boundPenalty = AugmentedLagrangianAdjuster.getBoundPenaltyFunction(lagrangian != null ? lagrangian.getBoundMultipliers() : new double[0]);
+            PenaltyFunction constraintPenalty = AugmentedLagrangianAdjuster.getConstraintPenaltyFunction(lagrangian != null ? lagrangian.getConstraintMultipliers() : new double[0]);
+            graph.setPenaltyFunction(l -> boundPenalty.apply(l, k));
+            graph.setConstraintPenaltyFunction(l -> constraintPenalty.apply(l, k));
+        }
+        else {
+            graph.setPenaltyFunction(l -> penaltyFunction.apply(l, k));
+            graph.setConstraintPenaltyFunction(l -> PenaltyAdjuster.QUADRATIC_BIDIRECTIONAL_PENALTY_FUNCTION.apply(l, k));
+        }
         /*graph.setPenaltyFunction(l -> {
             double sum = 0;
             for (double val : l) {
@@ -247,7 +305,9 @@ public class MainWindow {
         switch (index) {
             case 0:
                 //Scan
-                solver = null;
+                ScanSolver scan = new ScanSolver();
+                scan.setBounds(Double.parseDouble(lowerX.getText()), Double.parseDouble(upperX.getText()), Double.parseDouble(lowerY.getText()), Double.parseDouble(upperY.getText()));
+                solver = scan;
                 break;
             case 1:
                 //Gauss-Seidel
@@ -273,6 +333,34 @@ public class MainWindow {
                 //Chain Gradient
                 solver = new ChainGradientSolver();
                 break;
+            case 7:
+                //BFGS
+                solver = new BFGSSolver();
+                break;
+            case 8:
+                //DIRECT
+                DirectSolver direct = new DirectSolver();
+                direct.setBounds(Double.parseDouble(lowerX.getText()), Double.parseDouble(upperX.getText()), Double.parseDouble(lowerY.getText()), Double.parseDouble(upperY.getText()));
+                solver = direct;
+                break;
+            case 9:
+                //Interval Branch and Bound
+                IntervalSolver interval = new IntervalSolver();
+                interval.setBounds(Double.parseDouble(lowerX.getText()), Double.parseDouble(upperX.getText()), Double.parseDouble(lowerY.getText()), Double.parseDouble(upperY.getText()));
+                solver = interval;
+                break;
+            case 10:
+                //Differential Evolution
+                DifferentialEvolutionSolver evolution = new DifferentialEvolutionSolver();
+                evolution.setBounds(Double.parseDouble(lowerX.getText()), Double.parseDouble(upperX.getText()), Double.parseDouble(lowerY.getText()), Double.parseDouble(upperY.getText()));
+                solver = evolution;
+                break;
+            case 11:
+                //Particle Swarm
+                ParticleSwarmSolver swarm = new ParticleSwarmSolver();
+                swarm.setBounds(Double.parseDouble(lowerX.getText()), Double.parseDouble(upperX.getText()), Double.parseDouble(lowerY.getText()), Double.parseDouble(upperY.getText()));
+                solver = swarm;
+                break;
             default:
                 throw new IllegalArgumentException("No such method");
         }
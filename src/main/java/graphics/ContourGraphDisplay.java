@@ -1,18 +1,28 @@
 package graphics;
 
+import math.ExpressionCompiler;
 import math.LineDouble;
 import math.PointDouble;
 import org.mariuszgromada.math.mxparser.Function;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
-import java.util.function.BiFunction;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
 
 public class ContourGraphDisplay extends JPanel {
     private static final int MARGIN_X = 50;
@@ -27,13 +37,30 @@ public class ContourGraphDisplay extends JPanel {
     private static final Color LINE_COLOR = new Color(0x66ff22);
     private static final Color BOUND_COLOR = new Color(0xff0000);
     private static final int POINT_SIZE = 2;
+    /**Side in pixels of the tiles the graph is rendered in parallel by*/
+    private static final int TILE_SIZE = 64;
+    /**RGB values of the heatmap from LOW_COLOR to HIGH_COLOR, fine enough that neighbouring entries differ by at most one in a channel*/
+    private static final int[] PALETTE = new int[1024];
+    
+    static {
+        for (int i = 0; i < PALETTE.length; i++) {
+            PALETTE[i] = interpolate(LOW_COLOR, HIGH_COLOR, i / (double) (PALETTE.length - 1)).getRGB();
+        }
+    }
     
     private Function function;
     private FunctionCache cache;
-    private List<BiFunction<Double, Double, Double>> bounds = new ArrayList<>();
-    private java.util.function.Function<List<Double>, Double> penaltyFunction;
-    private List<BiFunction<Double, Double, Double>> constraints = new ArrayList<>();
-    private java.util.function.Function<List<Double>, Double> constraintPenaltyFunction;
+    //Heatmap of the last paint, reused while the size of the graph stays the same
+    private BufferedImage heatmap;
+    //Edges of the bounds and constraints of the last paint, transparent elsewhere
+    private BufferedImage overlay;
+    //Contour polylines of the last paint, kept while the cache and the levels stay the same
+    private ContourLines contourLines;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private List<DoubleBinaryOperator> bounds = new ArrayList<>();
+    private ToDoubleFunction<double[]> penaltyFunction;
+    private List<DoubleBinaryOperator> constraints = new ArrayList<>();
+    private ToDoubleFunction<double[]> constraintPenaltyFunction;
     
     private double lowerX;
     private double upperX;
@@ -42,6 +69,7 @@ public class ContourGraphDisplay extends JPanel {
     private double lowerZ = Double.NEGATIVE_INFINITY;
     private double upperZ = Double.POSITIVE_INFINITY;
     private int resolution = 50;
+    private long sampleBudget = 0;
     
     private double contours = 20;
     private double contourWidth = 0.2;
@@ -72,19 +100,14 @@ public class ContourGraphDisplay extends JPanel {
         super.paintComponent(g);
     
         if (function != null && (cache == null || !cache.isValid())) {
-            cache = new FunctionCache(function, resolution, lowerX, upperX, lowerY, upperY, displayPenaltyFunction ? penaltyFunction : null, bounds, displayPenaltyFunction ? constraintPenaltyFunction : null, constraints);
+            cache = new FunctionCache(function, resolution, lowerX, upperX, lowerY, upperY, displayPenaltyFunction ? penaltyFunction : null, bounds, displayPenaltyFunction ? constraintPenaltyFunction : null, constraints, pool, sampleBudget);
         }
         
         drawGrid(g);
         if (function != null) {
             drawGraph(g);
         }
-        if (bounds != null) {
-            drawBounds(g, bounds);
-        }
-        if (constraints != null) {
-            drawBounds(g, constraints);
-        }
+        drawBounds(g);
         if (lines != null) {
             drawLines(g);
         }
@@ -100,133 +123,100 @@ public class ContourGraphDisplay extends JPanel {
         double max = Math.min(upperZ, cache.max);
         double min = Math.max(lowerZ, cache.min);
         double dz = (max - min) / (double)contours;
-        boolean matched;
-        for (int i = 0; i < graphWidth(); i++) {
-            for (int j = 0; j < graphHeight(); j++) {
-                PointDouble in = graphToValue(new PointDouble(i + MARGIN_X, j + MARGIN_Y));
-                double val = cache.get(in.getX(), in.getY());
-                matched = false;
-                if (alternateContours && contours > 0) {
-                    for (int k = 0; k <= contours; k++) {
-                        if (val >= min + (k - 0.5 * contourWidth + contourOffset + 0.5) * dz && val <= min + (k + 0.5 * contourWidth + contourOffset + 0.5) * dz) {
-                            matched = true;
-                            break;
+        int width = graphWidth();
+        int height = graphHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (heatmap == null || heatmap.getWidth() != width || heatmap.getHeight() != height) {
+            heatmap = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        int[] pixels = ((DataBufferInt) heatmap.getRaster().getDataBuffer()).getData();
+        double[] xs = pixelXs(width);
+        double[] ys = pixelYs(height);
+        int contourRgb = (usingColors ? CONTOUR_COLOR : Color.BLACK).getRGB();
+        //Tiles write disjoint parts of the raster, which is drawn once all are done
+        forEachTile(width, height, (x0, y0, x1, y1) -> {
+            boolean matched;
+            for (int j = y0; j < y1; j++) {
+                for (int i = x0; i < x1; i++) {
+                    double val = cache.get(xs[i], ys[j]);
+                    matched = false;
+                    if (alternateContours && contours > 0) {
+                        for (int k = 0; k <= contours; k++) {
+                            if (val >= min + (k - 0.5 * contourWidth + contourOffset + 0.5) * dz && val <= min + (k + 0.5 * contourWidth + contourOffset + 0.5) * dz) {
+                                matched = true;
+                                break;
+                            }
                         }
                     }
-                }
-                if (matched) {
-                    if (isUsingColors()) {
-                        g.setColor(CONTOUR_COLOR);
-                    }
-                    else {
-                        g.setColor(Color.BLACK);
+                    int rgb;
+                    if (matched) {
+                        rgb = contourRgb;
                     }
-                }
-                else {
-                    if (isUsingColors()) {
-                        g.setColor(interpolate(LOW_COLOR, HIGH_COLOR, Math.min(Math.max((val - min) / (max - min), 0), 1)));
+                    else if (isUsingColors()) {
+                        double alpha = Math.min(Math.max((val - min) / (max - min), 0), 1);
+                        //Undefined values stay black, as they were drawn before the palette
+                        rgb = Double.isNaN(alpha) ? Color.BLACK.getRGB() : PALETTE[(int) Math.round(alpha * (PALETTE.length - 1))];
                     }
                     else {
-                        g.setColor(Color.WHITE);
+                        rgb = Color.WHITE.getRGB();
                     }
+                    pixels[j * width + i] = rgb;
                 }
-                
-                g.drawRect(i + MARGIN_X, j + MARGIN_Y, 0, 0);
-                /*val = new PointDouble(val.getX(), op.applyAsDouble(val.getX()));
-                val = valueToGraph(val);
-                if (i != 0) {
-                    g.drawLine(MARGIN_X + i - 1, prev, (int) Math.round(val.getX()), (int) Math.round(val.getY()));
-                }
-                prev = (int) Math.round(val.getY());*/
-                
             }
-        }
+        });
+        g.drawImage(heatmap, MARGIN_X, MARGIN_Y, null);
         //Draw contours
-        if (!alternateContours) {
-            for (int k = 0; k < contours; k++) {
-                double target = min + (k + contourOffset + 0.5) * dz;
-                
-                //Map of all points higher/lower then the target
-                ArrayList<ArrayList<Boolean>> data = new ArrayList<>(graphWidth());
-                for (int i = 0; i < graphWidth(); i++) {
-                    data.add(new ArrayList<>(graphHeight()));
-                    for (int j = 0; j < graphHeight(); j++) {
-                        PointDouble in = graphToValue(new PointDouble(i + MARGIN_X, j + MARGIN_Y));
-                        double val = cache.get(in.getX(), in.getY());
-                        data.get(i).add(val > target);
-                    }
-                }
-                
-                //Edge detection filter
-                ArrayList<ArrayList<Boolean>> filteredData = new ArrayList<>(graphWidth());
-                for (int i = 0; i < graphWidth(); i++) {
-                    filteredData.add(new ArrayList<>(graphHeight()));
-                    for (int j = 0; j < graphHeight(); j++) {
-                        boolean tl = data.get(Math.max(Math.min(i - 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j + 1, graphHeight() - 1), 0));
-                        boolean tc = data.get(Math.max(Math.min(i, graphWidth() - 1), 0)).get(Math.max(Math.min(j + 1, graphHeight() - 1), 0));
-                        boolean tr = data.get(Math.max(Math.min(i + 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j + 1, graphHeight() - 1), 0));
-                        
-                        boolean cl = data.get(Math.max(Math.min(i - 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j, graphHeight() - 1), 0));
-                        boolean cc = data.get(Math.max(Math.min(i, graphWidth() - 1), 0)).get(Math.max(Math.min(j, graphHeight() - 1), 0));
-                        boolean ct = data.get(Math.max(Math.min(i + 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j, graphHeight() - 1), 0));
-                        
-                        boolean bl = data.get(Math.max(Math.min(i - 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j - 1, graphHeight() - 1), 0));
-                        boolean bc = data.get(Math.max(Math.min(i, graphWidth() - 1), 0)).get(Math.max(Math.min(j - 1, graphHeight() - 1), 0));
-                        boolean br = data.get(Math.max(Math.min(i + 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j - 1, graphHeight() - 1), 0));
-    
-                        boolean res;
-                        if (contourWidth > 0.5) {
-                            res = (cc && (!tl || !tc || !tr || !cl || !ct || !bl || !bc || !br)) || (!cc && (tl || tc || tr || cl || ct || bl || bc || br));
+        if (!alternateContours && contours > 0 && dz > 0) {
+            double first = min + (contourOffset + 0.5) * dz;
+            int count = (int) Math.ceil(contours);
+            if (contourLines == null || !contourLines.matches(cache, first, dz, count)) {
+                contourLines = new ContourLines(cache, first, dz, count);
+            }
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.clipRect(MARGIN_X, MARGIN_Y, width, height);
+            //Stroke as wide as the edges the pixel filter used to mark
+            g2.setStroke(new BasicStroke(contourWidth > 0.5 ? 3 : contourWidth > 0.25 ? 2 : 1));
+            for (int k = 0; k < count; k++) {
+                g2.setColor(usingColors ? CONTOUR_COLOR : Color.BLACK);
+                Path2D.Double path = new Path2D.Double();
+                //Vertex of the level nearest to the centre of the graph, where its value is displayed
+                double centerDistanceMin = Double.POSITIVE_INFINITY;
+                double displayValueX = 0;
+                double displayValueY = 0;
+                for (double[] polyline : contourLines.levels.get(k)) {
+                    for (int v = 0; v < polyline.length; v += 2) {
+                        double px = graphX(polyline[v]);
+                        double py = graphY(polyline[v + 1]);
+                        if (v == 0) {
+                            path.moveTo(px, py);
                         }
                         else {
-                            if (contourWidth > 0.25) {
-                                res = (cc && (!tc || !cl || !ct || !bc)) || (!cc && (tc || cl || ct || bc));
-                            }
-                            else {
-                                res = cc && (!tc || !cl || !ct || !bc);
-                            }
+                            path.lineTo(px, py);
                         }
-                        filteredData.get(i).add(res);
-                    }
-                }
-                
-                double centerDistanceMin = Double.POSITIVE_INFINITY;
-                int displayValueX = 0;
-                int displayValueY = 0;
-                
-                //Draw contour
-                if (usingColors) {
-                    g.setColor(CONTOUR_COLOR);
-                }
-                else {
-                    g.setColor(Color.BLACK);
-                }
-                for (int i = 0; i < graphHeight(); i++) {
-                    for (int j = 0; j < graphWidth(); j++) {
-                        if (filteredData.get(j).get(i)) {
-                            g.drawRect(j + MARGIN_X, i + MARGIN_Y, 0, 0);
-                            double dist = Math.sqrt(Math.pow(i - graphHeight() / 2.0, 2) + Math.pow(j - graphWidth() / 2.0, 2));
-                            if (displayingValues && dist < centerDistanceMin) {
-                                centerDistanceMin = dist;
-                                displayValueX = j;
-                                displayValueY = i;
-                            }
+                        double dist = Math.hypot(px - (MARGIN_X + width / 2.0), py - (MARGIN_Y + height / 2.0));
+                        if (displayingValues && dist < centerDistanceMin) {
+                            centerDistanceMin = dist;
+                            displayValueX = px;
+                            displayValueY = py;
                         }
                     }
                 }
+                g2.draw(path);
                 //Display contour value text
-                if (displayingValues && displayValueX > 0 && displayValueX < graphWidth() - 1 && displayValueY > 0 && displayValueY < graphHeight() - 1) {
+                if (displayingValues && displayValueX > MARGIN_X && displayValueX < MARGIN_X + width - 1 && displayValueY > MARGIN_Y && displayValueY < MARGIN_Y + height - 1) {
                     if (usingColors) {
-                        g.setColor(VALUE_COLOR);
+                        g2.setColor(VALUE_COLOR);
                     }
                     else {
-                        g.setColor(Color.GRAY);
+                        g2.setColor(Color.GRAY);
                     }
-                    g.setFont(g.getFont().deriveFont(10.0f));
-                    //g.drawString(String.format("%.3f", target), displayValueX + MARGIN_X, displayValueY + MARGIN_Y);
-                    g.drawString(new DecimalFormat("0.0###", DecimalFormatSymbols.getInstance(Locale.ENGLISH)).format(target), displayValueX + MARGIN_X, displayValueY + MARGIN_Y);
+                    g2.setFont(g2.getFont().deriveFont(10.0f));
+                    g2.drawString(new DecimalFormat("0.0###", DecimalFormatSymbols.getInstance(Locale.ENGLISH)).format(first + k * dz), (float) displayValueX, (float) displayValueY);
                 }
             }
+            g2.dispose();
         }
     }
     
@@ -256,67 +246,119 @@ public class ContourGraphDisplay extends JPanel {
         lines.stream().map(l -> new LineDouble(valueToGraph(l.a), valueToGraph(l.b))).forEach(l -> g.drawLine((int)Math.round(l.a.getX()), (int)Math.round(l.a.getY()), (int)Math.round(l.b.getX()), (int)Math.round(l.b.getY())));
     }
     
-    private  void drawBounds(Graphics g, List<BiFunction<Double, Double, Double>> bounds) {
-        for (BiFunction<Double, Double, Double> bound : bounds) {
-            //Map of all points higher/lower then the target
-            ArrayList<ArrayList<Boolean>> data = new ArrayList<>(graphWidth());
-            for (int i = 0; i < graphWidth(); i++) {
-                data.add(new ArrayList<>(graphHeight()));
-                for (int j = 0; j < graphHeight(); j++) {
-                    PointDouble in = graphToValue(new PointDouble(i + MARGIN_X, j + MARGIN_Y));
-                    double val = bound.apply(in.getX(), in.getY());
-                    data.get(i).add(val > 0);
-                }
+    /**Draws the edges of the bounds and constraints into an overlay, rendered in parallel tiles, which is drawn over the graph once*/
+    private void drawBounds(Graphics g) {
+        int width = graphWidth();
+        int height = graphHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        List<DoubleBinaryOperator> all = new ArrayList<>();
+        if (bounds != null) {
+            all.addAll(bounds);
+        }
+        if (constraints != null) {
+            all.addAll(constraints);
+        }
+        if (all.isEmpty()) {
+            return;
+        }
+        if (overlay == null || overlay.getWidth() != width || overlay.getHeight() != height) {
+            overlay = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        int[] pixels = ((DataBufferInt) overlay.getRaster().getDataBuffer()).getData();
+        int rgb = (usingColors ? BOUND_COLOR : Color.BLACK).getRGB();
+        double[] xs = pixelXs(width);
+        double[] ys = pixelYs(height);
+        //Map of all points higher/lower then the target, by row
+        boolean[] data = new boolean[width * height];
+        forEachTile(width, height, (x0, y0, x1, y1) -> {
+            for (int j = y0; j < y1; j++) {
+                Arrays.fill(pixels, j * width + x0, j * width + x1, 0);
             }
-    
-            //Edge detection filter
-            ArrayList<ArrayList<Boolean>> filteredData = new ArrayList<>(graphWidth());
-            for (int i = 0; i < graphWidth(); i++) {
-                filteredData.add(new ArrayList<>(graphHeight()));
-                for (int j = 0; j < graphHeight(); j++) {
-                    boolean tl = data.get(Math.max(Math.min(i - 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j + 1, graphHeight() - 1), 0));
-                    boolean tc = data.get(Math.max(Math.min(i, graphWidth() - 1), 0)).get(Math.max(Math.min(j + 1, graphHeight() - 1), 0));
-                    boolean tr = data.get(Math.max(Math.min(i + 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j + 1, graphHeight() - 1), 0));
-            
-                    boolean cl = data.get(Math.max(Math.min(i - 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j, graphHeight() - 1), 0));
-                    boolean cc = data.get(Math.max(Math.min(i, graphWidth() - 1), 0)).get(Math.max(Math.min(j, graphHeight() - 1), 0));
-                    boolean ct = data.get(Math.max(Math.min(i + 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j, graphHeight() - 1), 0));
-            
-                    boolean bl = data.get(Math.max(Math.min(i - 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j - 1, graphHeight() - 1), 0));
-                    boolean bc = data.get(Math.max(Math.min(i, graphWidth() - 1), 0)).get(Math.max(Math.min(j - 1, graphHeight() - 1), 0));
-                    boolean br = data.get(Math.max(Math.min(i + 1, graphWidth() - 1), 0)).get(Math.max(Math.min(j - 1, graphHeight() - 1), 0));
-            
-                    boolean res;
-                    if (contourWidth > 0.5) {
-                        res = (cc && (!tl || !tc || !tr || !cl || !ct || !bl || !bc || !br)) || (!cc && (tl || tc || tr || cl || ct || bl || bc || br));
-                    } else {
-                        if (contourWidth > 0.25) {
-                            res = (cc && (!tc || !cl || !ct || !bc)) || (!cc && (tc || cl || ct || bc));
-                        } else {
-                            res = cc && (!tc || !cl || !ct || !bc);
-                        }
+        });
+        for (DoubleBinaryOperator bound : all) {
+            forEachTile(width, height, (x0, y0, x1, y1) -> {
+                for (int j = y0; j < y1; j++) {
+                    for (int i = x0; i < x1; i++) {
+                        data[j * width + i] = bound.applyAsDouble(xs[i], ys[j]) > 0;
                     }
-                    filteredData.get(i).add(res);
                 }
-            }
+            });
+            forEachTile(width, height, (x0, y0, x1, y1) -> filterEdges(data, pixels, rgb, width, height, x0, y0, x1, y1));
+        }
+        g.drawImage(overlay, MARGIN_X, MARGIN_Y, null);
+    }
     
-            if (usingColors) {
-                g.setColor(BOUND_COLOR);
-            }
-            else {
-                g.setColor(Color.BLACK);
-            }
-            for (int i = 0; i < graphHeight(); i++) {
-                for (int j = 0; j < graphWidth(); j++) {
-                    if (filteredData.get(j).get(i)) {
-                        g.drawRect(j + MARGIN_X, i + MARGIN_Y, 0, 0);
+    /**Edge detection filter over a tile of the map, painting the pixels where it changes within a distance depending on the contour width*/
+    private void filterEdges(boolean[] data, int[] pixels, int rgb, int width, int height, int x0, int y0, int x1, int y1) {
+        for (int j = y0; j < y1; j++) {
+            int top = Math.min(j + 1, height - 1) * width;
+            int center = j * width;
+            int bottom = Math.max(j - 1, 0) * width;
+            for (int i = x0; i < x1; i++) {
+                int left = Math.max(i - 1, 0);
+                int right = Math.min(i + 1, width - 1);
+                boolean tl = data[top + left];
+                boolean tc = data[top + i];
+                boolean tr = data[top + right];
+                
+                boolean cl = data[center + left];
+                boolean cc = data[center + i];
+                boolean ct = data[center + right];
+                
+                boolean bl = data[bottom + left];
+                boolean bc = data[bottom + i];
+                boolean br = data[bottom + right];
+                
+                boolean res;
+                if (contourWidth > 0.5) {
+                    res = (cc && (!tl || !tc || !tr || !cl || !ct || !bl || !bc || !br)) || (!cc && (tl || tc || tr || cl || ct || bl || bc || br));
+                }
+                else {
+                    if (contourWidth > 0.25) {
+                        res = (cc && (!tc || !cl || !ct || !bc)) || (!cc && (tc || cl || ct || bc));
+                    }
+                    else {
+                        res = cc && (!tc || !cl || !ct || !bc);
                     }
                 }
+                if (res) {
+                    pixels[center + i] = rgb;
+                }
             }
-            
         }
     }
     
+    /**Splits the graph into tiles of TILE_SIZE pixels and renders them in parallel on the pool, returning once all are done*/
+    private void forEachTile(int width, int height, TileRenderer renderer) {
+        int columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        pool.submit(() -> IntStream.range(0, columns * rows).parallel().forEach(tile -> {
+            int x0 = tile % columns * TILE_SIZE;
+            int y0 = tile / columns * TILE_SIZE;
+            renderer.render(x0, y0, Math.min(x0 + TILE_SIZE, width), Math.min(y0 + TILE_SIZE, height));
+        })).join();
+    }
+    
+    /**@return x of every pixel column of the graph*/
+    private double[] pixelXs(int width) {
+        double[] xs = new double[width];
+        for (int i = 0; i < width; i++) {
+            xs[i] = graphToValue(new PointDouble(i + MARGIN_X, MARGIN_Y)).getX();
+        }
+        return xs;
+    }
+    
+    /**@return y of every pixel row of the graph*/
+    private double[] pixelYs(int height) {
+        double[] ys = new double[height];
+        for (int j = 0; j < height; j++) {
+            ys[j] = graphToValue(new PointDouble(MARGIN_X, j + MARGIN_Y)).getY();
+        }
+        return ys;
+    }
+    
     private int graphWidth() {
         return getWidth() - 2 * MARGIN_X;
     }
@@ -375,6 +417,18 @@ public class ContourGraphDisplay extends JPanel {
         return new PointDouble(MARGIN_X + (int)((graphWidth() * EXTRA_AMOUNT) * (1 - valX) + (graphWidth() * (1 - EXTRA_AMOUNT)) * valX), getHeight() - MARGIN_Y - (int)((graphHeight() * EXTRA_AMOUNT) * (1 - valY) + (graphHeight() * (1 - EXTRA_AMOUNT)) * valY));
     }
     
+    /**@return Horizontal pixel position of x, unrounded as {@link #valueToGraph} would give it*/
+    private double graphX(double x) {
+        double valX = (x - lowerX()) / (upperX() - lowerX());
+        return MARGIN_X + (graphWidth() * EXTRA_AMOUNT) * (1 - valX) + (graphWidth() * (1 - EXTRA_AMOUNT)) * valX;
+    }
+    
+    /**@return Vertical pixel position of y, unrounded as {@link #valueToGraph} would give it*/
+    private double graphY(double y) {
+        double valY = (y - lowerY()) / (upperY() - lowerY());
+        return getHeight() - MARGIN_Y - ((graphHeight() * EXTRA_AMOUNT) * (1 - valY) + (graphHeight() * (1 - EXTRA_AMOUNT)) * valY);
+    }
+    
     private PointDouble graphToValue(PointDouble point) {
         double valX = (point.getX() - (MARGIN_X + (graphWidth() * EXTRA_AMOUNT))) / ((MARGIN_X + (graphWidth() * (1 - EXTRA_AMOUNT))) - (MARGIN_X + (graphWidth() * EXTRA_AMOUNT)));
         double valY = (point.getY() - (MARGIN_Y + (graphHeight() * (1 - EXTRA_AMOUNT)))) / ((MARGIN_Y + (graphHeight() * EXTRA_AMOUNT)) - (MARGIN_Y + (graphHeight() * (1 - EXTRA_AMOUNT))));
@@ -397,6 +451,15 @@ public class ContourGraphDisplay extends JPanel {
         this.lines = lines;
     }
     
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+    
+    /**@param pool Pool the function cache is filled and the tiles of the graph are rendered on. The function, bounds, constraints and penalties are evaluated on it, so they have to be thread-safe*/
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+    
     public static double interpolate(double a, double b, double alpha) {
         return b * alpha + a * (1 - alpha);
     }
@@ -453,6 +516,24 @@ public class ContourGraphDisplay extends JPanel {
         }
     }
     
+    public long getSampleBudget() {
+        return sampleBudget;
+    }
+    
+    /**
+     * @param sampleBudget Evaluations the cache may spend on sampling the grid adaptively, 0 to evaluate every vertex of it.
+     * Adaptive sampling displays an interpolation between the samples, features narrower than resolution / 64 cells may not show
+     */
+    public void setSampleBudget(long sampleBudget) {
+        if (sampleBudget < 0) {
+            throw new IllegalArgumentException("Sample budget has to be non-negative");
+        }
+        if (this.sampleBudget != sampleBudget && cache != null) {
+            cache.invalidate();
+        }
+        this.sampleBudget = sampleBudget;
+    }
+    
     public double getContourWidth() {
         return contourWidth;
     }
@@ -485,30 +566,30 @@ public class ContourGraphDisplay extends JPanel {
         this.displayingValues = displayingValues;
     }
     
-    public List<BiFunction<Double, Double, Double>> getFunctionBounds() {
+    public List<DoubleBinaryOperator> getFunctionBounds() {
         return bounds;
     }
     
-    public List<BiFunction<Double, Double, Double>> getFunctionConstraints() {
+    public List<DoubleBinaryOperator> getFunctionConstraints() {
         return constraints;
     }
     
-    public java.util.function.Function<List<Double>, Double> getPenaltyFunction() {
+    public ToDoubleFunction<double[]> getPenaltyFunction() {
         return penaltyFunction;
     }
     
-    public void setPenaltyFunction(java.util.function.Function<List<Double>, Double> penaltyFunction) {
+    public void setPenaltyFunction(ToDoubleFunction<double[]> penaltyFunction) {
         if (!Objects.equals(this.penaltyFunction, penaltyFunction) && cache != null) {
             cache.invalidate();
         }
         this.penaltyFunction = penaltyFunction;
     }
     
-    public java.util.function.Function<List<Double>, Double> getConstraintPenaltyFunction() {
+    public ToDoubleFunction<double[]> getConstraintPenaltyFunction() {
         return constraintPenaltyFunction;
     }
     
-    public void setConstraintPenaltyFunction(java.util.function.Function<List<Double>, Double> constraintPenaltyFunction) {
+    public void setConstraintPenaltyFunction(ToDoubleFunction<double[]> constraintPenaltyFunction) {
         if (!Objects.equals(this.constraintPenaltyFunction, constraintPenaltyFunction) && cache != null) {
             cache.invalidate();
         }
@@ -526,10 +607,223 @@ public class ContourGraphDisplay extends JPanel {
         this.displayPenaltyFunction = displayPenaltyFunction;
     }
     
+    /**
+     * Contour lines of evenly spaced levels over the grid of a cache, extracted by marching squares for all levels in one pass over the cells.
+     * Every cell a level crosses contributes segments between the crossings on its edges, found by linear interpolation; a saddle is resolved
+     * by the mean of the corners. Segments meeting on an edge are then joined into polylines
+     */
+    private static class ContourLines {
+        private final FunctionCache cache;
+        private final double first;
+        private final double step;
+        //Polylines of every level as {x0, y0, x1, y1, ...}, closed ones ending on their first point
+        private final List<List<double[]>> levels;
+        
+        private ContourLines(FunctionCache cache, double first, double step, int count) {
+            this.cache = cache;
+            this.first = first;
+            this.step = step;
+            int n = cache.getResolution();
+            double dx = (cache.getUpperX() - cache.getLowerX()) / n;
+            double dy = (cache.getUpperY() - cache.getLowerY()) / n;
+            Segments[] segments = new Segments[count];
+            for (int k = 0; k < count; k++) {
+                segments[k] = new Segments();
+            }
+            //Horizontal edges from (row, col) to (row, col + 1) are numbered first, vertical ones from (row, col) to (row + 1, col) after them
+            int verticalEdges = (n + 1) * n;
+            for (int row = 0; row < n; row++) {
+                for (int col = 0; col < n; col++) {
+                    double v00 = cache.get(row, col);
+                    double v01 = cache.get(row, col + 1);
+                    double v11 = cache.get(row + 1, col + 1);
+                    double v10 = cache.get(row + 1, col);
+                    double low = Math.min(Math.min(v00, v01), Math.min(v11, v10));
+                    double high = Math.max(Math.max(v00, v01), Math.max(v11, v10));
+                    if (Double.isNaN(low) || Double.isNaN(high)) {
+                        continue;
+                    }
+                    //Levels with low <= target < high, the ones some corner is above and some not, with one more on each side against rounding
+                    int kMin = (int) Math.max(Math.ceil((low - first) / step) - 1, 0);
+                    int kMax = (int) Math.min(Math.ceil((high - first) / step), count - 1);
+                    int bottom = row * n + col;
+                    int top = (row + 1) * n + col;
+                    int left = verticalEdges + row * (n + 1) + col;
+                    int right = left + 1;
+                    double x0 = cache.getLowerX() + col * dx;
+                    double y0 = cache.getLowerY() + row * dy;
+                    for (int k = kMin; k <= kMax; k++) {
+                        double target = first + k * step;
+                        boolean a00 = v00 > target;
+                        boolean a01 = v01 > target;
+                        boolean a11 = v11 > target;
+                        boolean a10 = v10 > target;
+                        Segments level = segments[k];
+                        if (a00 != a01 && a01 != a11 && a11 != a10) {
+                            //Saddle: the lines go around the two corners on the other side than the centre
+                            if ((v00 + v01 + v11 + v10) / 4 > target == a00) {
+                                level.add(bottom, x0 + dx * crossing(v00, v01, target), y0, right, x0 + dx, y0 + dy * crossing(v01, v11, target));
+                                level.add(top, x0 + dx * crossing(v10, v11, target), y0 + dy, left, x0, y0 + dy * crossing(v00, v10, target));
+                            }
+                            else {
+                                level.add(left, x0, y0 + dy * crossing(v00, v10, target), bottom, x0 + dx * crossing(v00, v01, target), y0);
+                                level.add(right, x0 + dx, y0 + dy * crossing(v01, v11, target), top, x0 + dx * crossing(v10, v11, target), y0 + dy);
+                            }
+                            continue;
+                        }
+                        //Two of the edges are crossed
+                        int edge = -1;
+                        double x = 0;
+                        double y = 0;
+                        if (a00 != a01) {
+                            edge = bottom;
+                            x = x0 + dx * crossing(v00, v01, target);
+                            y = y0;
+                        }
+                        if (a01 != a11) {
+                            if (edge < 0) {
+                                edge = right;
+                                x = x0 + dx;
+                                y = y0 + dy * crossing(v01, v11, target);
+                            }
+                            else {
+                                level.add(edge, x, y, right, x0 + dx, y0 + dy * crossing(v01, v11, target));
+                                continue;
+                            }
+                        }
+                        if (a10 != a11) {
+                            if (edge < 0) {
+                                edge = top;
+                                x = x0 + dx * crossing(v10, v11, target);
+                                y = y0 + dy;
+                            }
+                            else {
+                                level.add(edge, x, y, top, x0 + dx * crossing(v10, v11, target), y0 + dy);
+                                continue;
+                            }
+                        }
+                        if (a00 != a10 && edge >= 0) {
+                            level.add(edge, x, y, left, x0, y0 + dy * crossing(v00, v10, target));
+                        }
+                    }
+                }
+            }
+            levels = new ArrayList<>(count);
+            for (Segments level : segments) {
+                levels.add(level.join());
+            }
+        }
+        
+        /**@return Fraction of the way from a to b at which the linear interpolation reaches the target*/
+        private static double crossing(double a, double b, double target) {
+            return (target - a) / (b - a);
+        }
+        
+        private boolean matches(FunctionCache cache, double first, double step, int count) {
+            return this.cache == cache && this.first == first && this.step == step && levels.size() == count;
+        }
+    }
+    
+    /**Segments of one contour level, each between the crossings on two cell edges*/
+    private static class Segments {
+        private int size;
+        private int[] edges = new int[16];
+        private double[] coordinates = new double[32];
+        
+        private void add(int edgeA, double xA, double yA, int edgeB, double xB, double yB) {
+            if (2 * size + 2 > edges.length) {
+                edges = Arrays.copyOf(edges, 2 * edges.length);
+                coordinates = Arrays.copyOf(coordinates, 2 * coordinates.length);
+            }
+            edges[2 * size] = edgeA;
+            edges[2 * size + 1] = edgeB;
+            coordinates[4 * size] = xA;
+            coordinates[4 * size + 1] = yA;
+            coordinates[4 * size + 2] = xB;
+            coordinates[4 * size + 3] = yB;
+            size++;
+        }
+        
+        /**@return Segments chained through their shared edges into polylines, the open ones from one end*/
+        private List<double[]> join() {
+            //End 2 s + e of segment s is linked to the end of the other segment on the same edge, an edge being crossed by at most two
+            int[] partner = new int[2 * size];
+            Arrays.fill(partner, -1);
+            Map<Integer, Integer> ends = new HashMap<>();
+            for (int end = 0; end < 2 * size; end++) {
+                Integer other = ends.remove(edges[end]);
+                if (other != null) {
+                    partner[end] = other;
+                    partner[other] = end;
+                }
+                else {
+                    ends.put(edges[end], end);
+                }
+            }
+            List<double[]> polylines = new ArrayList<>();
+            boolean[] visited = new boolean[size];
+            //Open polylines start at an end without partner, what is left afterwards are closed loops
+            for (int pass = 0; pass < 2; pass++) {
+                for (int end = 0; end < 2 * size; end++) {
+                    if (!visited[end / 2] && (pass == 1 || partner[end] < 0)) {
+                        polylines.add(trace(end, partner, visited));
+                    }
+                }
+            }
+            return polylines;
+        }
+        
+        /**@return Polyline entering the segment of the end through it and following the partners until an open end or the start*/
+        private double[] trace(int start, int[] partner, boolean[] visited) {
+            double[] points = new double[16];
+            int length = 0;
+            points[length++] = coordinates[2 * start];
+            points[length++] = coordinates[2 * start + 1];
+            int end = start;
+            while (end >= 0 && !visited[end / 2]) {
+                visited[end / 2] = true;
+                int exit = end ^ 1;
+                if (length + 2 > points.length) {
+                    points = Arrays.copyOf(points, 2 * points.length);
+                }
+                points[length++] = coordinates[2 * exit];
+                points[length++] = coordinates[2 * exit + 1];
+                end = partner[exit];
+            }
+            return Arrays.copyOf(points, length);
+        }
+    }
+    
+    /**Renders the pixels [x0; x1) x [y0; y1) of the graph*/
+    private interface TileRenderer {
+        void render(int x0, int y0, int x1, int y1);
+    }
+    
+    /**
+     * Dense grid of the displayed values at the (resolution + 1)^2 vertices of the range. With a sample budget only some vertices are
+     * evaluated and the others interpolated, which saves evaluations but not memory: the grid is allocated in full either way
+     */
     private static class FunctionCache {
+        /**Rows of the grid filled by one task*/
+        private static final int BAND_ROWS = 8;
+        /**Vertices evaluated by one task of adaptive sampling*/
+        private static final int CHUNK_SIZE = 256;
+        /**Cells per side of the coarsest nodes of adaptive sampling. Features smaller than them may be missed*/
+        private static final int BASE_CELLS = 64;
+        /**Deviation from the bilinear interpolation of a node, relative to the range of values, above which it is refined*/
+        private static final double ERROR_TOLERANCE = 1e-3;
+        
         private Function function;
-        private ArrayList<ArrayList<Double>> data;
+        private DoubleBinaryOperator evaluator;
+        //Grid by rows of resolution + 1 values each
+        private double[] data;
+        //Hash of the signs of the displayed bounds and constraints at each vertex, null if none are displayed
+        private int[] signs;
+        private int size;
+        private long evaluations;
         private int resolution;
+        private double dx;
+        private double dy;
         private double lowerX;
         private double upperX;
         private double lowerY;
@@ -538,22 +832,23 @@ public class ContourGraphDisplay extends JPanel {
         private double max;
         private boolean valid;
         
-        private java.util.function.Function<List<Double>, Double> penaltyFunction;
-        private List<BiFunction<Double, Double, Double>> bounds;
-        private java.util.function.Function<List<Double>, Double> constraintPenaltyFunction;
-        private List<BiFunction<Double, Double, Double>> constraints;
+        private ToDoubleFunction<double[]> penaltyFunction;
+        private List<DoubleBinaryOperator> bounds;
+        private ToDoubleFunction<double[]> constraintPenaltyFunction;
+        private List<DoubleBinaryOperator> constraints;
         
-        public FunctionCache(Function function, int resolution, double lowerX, double upperX, double lowerY, double upperY, java.util.function.Function<List<Double>, Double> penaltyFunction, List<BiFunction<Double, Double, Double>> bounds, java.util.function.Function<List<Double>, Double> constraintPenaltyFunction, List<BiFunction<Double, Double, Double>> constraints) {
+        public FunctionCache(Function function, int resolution, double lowerX, double upperX, double lowerY, double upperY, ToDoubleFunction<double[]> penaltyFunction, List<DoubleBinaryOperator> bounds, ToDoubleFunction<double[]> constraintPenaltyFunction, List<DoubleBinaryOperator> constraints, ForkJoinPool pool, long sampleBudget) {
             if (resolution < 1 || function == null) {
                 throw new IllegalArgumentException();
             }
             
-            double dx = (upperX - lowerX) / (double)resolution;
-            double dy = (upperY - lowerY) / (double)resolution;
+            dx = (upperX - lowerX) / (double)resolution;
+            dy = (upperY - lowerY) / (double)resolution;
             min = Double.NaN;
             max = Double.NaN;
             
             this.function = function;
+            evaluator = ExpressionCompiler.compile(function);
             this.resolution = resolution;
             this.lowerX = lowerX;
             this.upperX = upperX;
@@ -573,42 +868,285 @@ public class ContourGraphDisplay extends JPanel {
                 this.constraints = new ArrayList<>();
             }
             
-            data = new ArrayList<>();
-            for (int i = 0; i <= resolution; i++) {
-                data.add(new ArrayList<>());
-                for (int j = 0; j <= resolution; j++) {
-                    data.get(i).add(Double.NaN);
+            size = resolution + 1;
+            data = new double[size * size];
+            if (penaltyFunction != null && !this.bounds.isEmpty() || constraintPenaltyFunction != null && !this.constraints.isEmpty()) {
+                signs = new int[size * size];
+            }
+            if (sampleBudget > 0 && resolution > BASE_CELLS) {
+                fillAdaptive(pool, sampleBudget);
+            }
+            else {
+                fillUniform(pool);
+            }
+            
+            //Extremes per band of rows, interpolated values lying between sampled ones
+            int bands = (size + BAND_ROWS - 1) / BAND_ROWS;
+            double[] bandMin = new double[bands];
+            double[] bandMax = new double[bands];
+            pool.submit(() -> IntStream.range(0, bands).parallel().forEach(band -> {
+                double localMin = Double.NaN;
+                double localMax = Double.NaN;
+                for (int k = band * BAND_ROWS * size; k < Math.min((band + 1) * BAND_ROWS, size) * size; k++) {
+                    double val = data[k];
+                    if ((Double.isNaN(localMin) && !Double.isNaN(val)) || val < localMin) {
+                        localMin = val;
+                    }
+                    if ((Double.isNaN(localMax) && !Double.isNaN(val)) || val > localMax) {
+                        localMax = val;
+                    }
+                }
+                bandMin[band] = localMin;
+                bandMax[band] = localMax;
+            })).join();
+            for (int band = 0; band < bands; band++) {
+                if ((Double.isNaN(min) && !Double.isNaN(bandMin[band])) || bandMin[band] < min) {
+                    min = bandMin[band];
+                }
+                if ((Double.isNaN(max) && !Double.isNaN(bandMax[band])) || bandMax[band] > max) {
+                    max = bandMax[band];
+                }
+            }
+        }
+        
+        /**Evaluates every vertex, in bands of rows filled in parallel, each with its own penalty arguments*/
+        private void fillUniform(ForkJoinPool pool) {
+            int bands = (size + BAND_ROWS - 1) / BAND_ROWS;
+            pool.submit(() -> IntStream.range(0, bands).parallel().forEach(band -> {
+                double[] boundValues = new double[bounds.size()];
+                double[] constraintValues = new double[constraints.size()];
+                for (int i = band * BAND_ROWS; i < Math.min((band + 1) * BAND_ROWS, size); i++) {
+                    for (int j = 0; j < size; j++) {
+                        evaluate(i, j, boundValues, constraintValues);
+                    }
+                }
+            })).join();
+            evaluations = (long) size * size;
+        }
+        
+        /**
+         * Samples the grid through a quadtree. The range is split into at most BASE_CELLS cells per side, and each node is sampled at its corners,
+         * the centres of its sides and its own centre. A node is split into the four nodes between those samples if the samples inside it
+         * differ from the bilinear interpolation of its corners by more than ERROR_TOLERANCE of the range of values sampled so far, if a displayed bound or constraint
+         * changes sign among them, or if only some of them are undefined. The nodes of a round are examined and their new samples evaluated in parallel;
+         * once the next round would exceed the budget, only the nodes with the largest errors are split. The remaining vertices are interpolated
+         * from the corners of their leaf, so that the grid and {@link #get(double, double)} follow the bilinear interpolation of the quadtree
+         */
+        private void fillAdaptive(ForkJoinPool pool, long budget) {
+            boolean[] sampled = new boolean[size * size];
+            int step = (resolution + BASE_CELLS - 1) / BASE_CELLS;
+            List<int[]> nodes = new ArrayList<>();
+            for (int r0 = 0; r0 < resolution; r0 += step) {
+                for (int c0 = 0; c0 < resolution; c0 += step) {
+                    nodes.add(new int[]{r0, c0, Math.min(r0 + step, resolution), Math.min(c0 + step, resolution)});
                 }
             }
+            List<Integer> vertices = new ArrayList<>();
+            for (int[] node : nodes) {
+                addSamples(node, sampled, vertices);
+            }
+            evaluate(pool, vertices);
+            //Range of the finite samples so far, widened every round so that the threshold follows what the refinement finds
+            double[] range = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            widen(range, vertices);
             
-            for (int i = 0; i <= resolution; i++) {
-                for (int j = 0; j <= resolution; j++) {
-                    double val = function.calculate(lowerX + dx * j, lowerY + dy * i);
-                    if (penaltyFunction != null) {
-                        List<Double> penaltyArgs = new ArrayList<>();
-                        for (int k = 0; k < bounds.size(); k++) {
-                            penaltyArgs.add(bounds.get(k).apply(lowerX + dx * j, lowerY + dy * i));
-                        }
-                        val += penaltyFunction.apply(penaltyArgs);
+            List<int[]> leaves = new ArrayList<>();
+            while (!nodes.isEmpty()) {
+                double threshold = range[1] > range[0] ? ERROR_TOLERANCE * (range[1] - range[0]) : 0;
+                List<int[]> examined = nodes;
+                double[] errors = new double[examined.size()];
+                pool.submit(() -> IntStream.range(0, examined.size()).parallel().forEach(n -> errors[n] = error(examined.get(n)))).join();
+                Integer[] order = new Integer[examined.size()];
+                int splits = 0;
+                for (int n = 0; n < order.length; n++) {
+                    order[n] = n;
+                    splits += errors[n] > threshold ? 1 : 0;
+                }
+                //A split adds at most 16 samples, the 5 x 5 of its children less its own 9; only a tight budget needs the largest errors first
+                if (evaluations + 16L * splits > budget) {
+                    Arrays.sort(order, (a, b) -> Double.compare(errors[b], errors[a]));
+                }
+                
+                nodes = new ArrayList<>();
+                vertices = new ArrayList<>();
+                for (int n : order) {
+                    int[] node = examined.get(n);
+                    List<int[]> children = errors[n] > threshold ? children(node) : null;
+                    if (children == null || children.size() < 2) {
+                        leaves.add(node);
+                        continue;
+                    }
+                    List<Integer> needed = new ArrayList<>();
+                    for (int[] child : children) {
+                        addSamples(child, sampled, needed);
                     }
-                    if (constraintPenaltyFunction != null) {
-                        List<Double> penaltyArgs = new ArrayList<>();
-                        for (int k = 0; k < constraints.size(); k++) {
-                            penaltyArgs.add(constraints.get(k).apply(lowerX + dx * j, lowerY + dy * i));
+                    if (evaluations + vertices.size() + needed.size() > budget) {
+                        for (int vertex : needed) {
+                            sampled[vertex] = false;
                         }
-                        val += constraintPenaltyFunction.apply(penaltyArgs);
+                        leaves.add(node);
+                        continue;
                     }
-                    set(val, i, j);
-                    if ((Double.isNaN(min) && !Double.isNaN(val)) || val < min) {
-                        min = val;
+                    vertices.addAll(needed);
+                    nodes.addAll(children);
+                }
+                evaluate(pool, vertices);
+                widen(range, vertices);
+            }
+            
+            //Smaller leaves first, so that the vertices on the side of a larger one follow the samples of its smaller neighbours
+            leaves.sort((a, b) -> Long.compare((long) (a[2] - a[0]) * (a[3] - a[1]), (long) (b[2] - b[0]) * (b[3] - b[1])));
+            for (int first = 0; first < leaves.size(); ) {
+                long area = (long) (leaves.get(first)[2] - leaves.get(first)[0]) * (leaves.get(first)[3] - leaves.get(first)[1]);
+                int last = first;
+                while (last < leaves.size() && (long) (leaves.get(last)[2] - leaves.get(last)[0]) * (leaves.get(last)[3] - leaves.get(last)[1]) == area) {
+                    last++;
+                }
+                List<int[]> group = leaves.subList(first, last);
+                pool.submit(() -> group.parallelStream().forEach(leaf -> interpolateLeaf(leaf, sampled))).join();
+                first = last;
+            }
+        }
+        
+        /**Extends the range {low, high} to the finite values at the vertices*/
+        private void widen(double[] range, List<Integer> vertices) {
+            for (int vertex : vertices) {
+                if (Double.isFinite(data[vertex])) {
+                    range[0] = Math.min(range[0], data[vertex]);
+                    range[1] = Math.max(range[1], data[vertex]);
+                }
+            }
+        }
+        
+        /**@return Rows or columns a node {r0, c0, r1, c1} is sampled at along one side*/
+        private static int[] sampleLines(int start, int end) {
+            return end - start >= 2 ? new int[]{start, (start + end) / 2, end} : new int[]{start, end};
+        }
+        
+        /**Adds the samples of the node that are not sampled yet to the vertices and marks them*/
+        private void addSamples(int[] node, boolean[] sampled, List<Integer> vertices) {
+            for (int row : sampleLines(node[0], node[2])) {
+                for (int col : sampleLines(node[1], node[3])) {
+                    if (!sampled[row * size + col]) {
+                        sampled[row * size + col] = true;
+                        vertices.add(row * size + col);
                     }
-                    if ((Double.isNaN(max) && !Double.isNaN(val)) || val > max) {
-                        max = val;
+                }
+            }
+        }
+        
+        /**@return Nodes between the samples of the node, a single one if it is one cell*/
+        private static List<int[]> children(int[] node) {
+            int[] rows = sampleLines(node[0], node[2]);
+            int[] cols = sampleLines(node[1], node[3]);
+            List<int[]> children = new ArrayList<>();
+            for (int i = 0; i + 1 < rows.length; i++) {
+                for (int j = 0; j + 1 < cols.length; j++) {
+                    children.add(new int[]{rows[i], cols[j], rows[i + 1], cols[j + 1]});
+                }
+            }
+            return children;
+        }
+        
+        /**@return Largest deviation of the samples of the node from the bilinear interpolation of its corners, infinite if the samples disagree in sign or definedness*/
+        private double error(int[] node) {
+            int[] rows = sampleLines(node[0], node[2]);
+            int[] cols = sampleLines(node[1], node[3]);
+            double lb = get(node[0], node[1]);
+            double rb = get(node[0], node[3]);
+            double lt = get(node[2], node[1]);
+            double rt = get(node[2], node[3]);
+            int firstSigns = signs != null ? signs[node[0] * size + node[1]] : 0;
+            boolean firstFinite = Double.isFinite(lb);
+            double error = 0;
+            for (int row : rows) {
+                for (int col : cols) {
+                    double val = get(row, col);
+                    if (signs != null && signs[row * size + col] != firstSigns || Double.isFinite(val) != firstFinite) {
+                        return Double.POSITIVE_INFINITY;
+                    }
+                    if (firstFinite) {
+                        double predicted = bilinear(lb, rb, lt, rt, (col - node[1]) / (double) (node[3] - node[1]), (row - node[0]) / (double) (node[2] - node[0]));
+                        error = Math.max(error, Math.abs(val - predicted));
+                    }
+                }
+            }
+            return error;
+        }
+        
+        /**Sets the vertices of the leaf that are neither sampled nor set by a smaller leaf to the bilinear interpolation of its corners*/
+        private void interpolateLeaf(int[] leaf, boolean[] sampled) {
+            double lb = get(leaf[0], leaf[1]);
+            double rb = get(leaf[0], leaf[3]);
+            double lt = get(leaf[2], leaf[1]);
+            double rt = get(leaf[2], leaf[3]);
+            for (int row = leaf[0]; row <= leaf[2]; row++) {
+                for (int col = leaf[1]; col <= leaf[3]; col++) {
+                    if (!sampled[row * size + col]) {
+                        set(bilinear(lb, rb, lt, rt, (col - leaf[1]) / (double) (leaf[3] - leaf[1]), (row - leaf[0]) / (double) (leaf[2] - leaf[0])), row, col);
+                        sampled[row * size + col] = true;
                     }
                 }
             }
         }
         
+        /**@return Bilinear interpolation at (u; v) of the unit square, using only the corners of a side it lies on*/
+        private static double bilinear(double lb, double rb, double lt, double rt, double u, double v) {
+            if (v == 0) {
+                return interpolate(lb, rb, u);
+            }
+            if (v == 1) {
+                return interpolate(lt, rt, u);
+            }
+            if (u == 0) {
+                return interpolate(lb, lt, v);
+            }
+            if (u == 1) {
+                return interpolate(rb, rt, v);
+            }
+            return interpolate(interpolate(lb, rb, u), interpolate(lt, rt, u), v);
+        }
+        
+        /**Evaluates the vertices in parallel, in chunks sharing penalty arguments*/
+        private void evaluate(ForkJoinPool pool, List<Integer> vertices) {
+            int chunks = (vertices.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                double[] boundValues = new double[bounds.size()];
+                double[] constraintValues = new double[constraints.size()];
+                for (int k = chunk * CHUNK_SIZE; k < Math.min((chunk + 1) * CHUNK_SIZE, vertices.size()); k++) {
+                    int vertex = vertices.get(k);
+                    evaluate(vertex / size, vertex % size, boundValues, constraintValues);
+                }
+            })).join();
+            evaluations += vertices.size();
+        }
+        
+        /**Stores the function with the displayed penalties at the vertex, and a hash of the signs of the bounds and constraints if they are displayed*/
+        private void evaluate(int row, int col, double[] boundValues, double[] constraintValues) {
+            double x = lowerX + dx * col;
+            double y = lowerY + dy * row;
+            double val = evaluator.applyAsDouble(x, y);
+            int hash = 0;
+            if (penaltyFunction != null) {
+                for (int k = 0; k < boundValues.length; k++) {
+                    boundValues[k] = bounds.get(k).applyAsDouble(x, y);
+                    hash = 31 * hash + (boundValues[k] >= 0 ? 1 : 0);
+                }
+                val += penaltyFunction.applyAsDouble(boundValues);
+            }
+            if (constraintPenaltyFunction != null) {
+                for (int k = 0; k < constraintValues.length; k++) {
+                    constraintValues[k] = constraints.get(k).applyAsDouble(x, y);
+                    hash = 31 * hash + (constraintValues[k] >= 0 ? 1 : 0);
+                }
+                val += constraintPenaltyFunction.applyAsDouble(constraintValues);
+            }
+            set(val, row, col);
+            if (signs != null) {
+                signs[row * size + col] = hash;
+            }
+        }
+        
         public double get(double x, double y) {
             double lt;
             double rt;
@@ -639,11 +1177,11 @@ public class ContourGraphDisplay extends JPanel {
         }
     
         private double get(int row, int col) {
-            return data.get(row).get(col);
+            return data[row * (resolution + 1) + col];
         }
         
         private void set(double value, int row, int col) {
-            data.get(row).set(col, value);
+            data[row * (resolution + 1) + col] = value;
         }
     
         public Function getFunction() {
@@ -673,6 +1211,11 @@ public class ContourGraphDisplay extends JPanel {
         public double getMin() {
             return min;
         }
+        
+        /**@return Vertices at which the function was evaluated*/
+        public long getEvaluations() {
+            return evaluations;
+        }
     
         public double getMax() {
             return max;
@@ -686,19 +1229,19 @@ public class ContourGraphDisplay extends JPanel {
             this.valid = false;
         }
     
-        public java.util.function.Function<List<Double>, Double> getPenaltyFunction() {
+        public ToDoubleFunction<double[]> getPenaltyFunction() {
             return penaltyFunction;
         }
     
-        public List<BiFunction<Double, Double, Double>> getBounds() {
+        public List<DoubleBinaryOperator> getBounds() {
             return bounds;
         }
     
-        public java.util.function.Function<List<Double>, Double> getConstraintPenaltyFunction() {
+        public ToDoubleFunction<double[]> getConstraintPenaltyFunction() {
             return constraintPenaltyFunction;
         }
     
-        public List<BiFunction<Double, Double, Double>> getConstraints() {
+        public List<DoubleBinaryOperator> getConstraints() {
             return constraints;
         }
     }
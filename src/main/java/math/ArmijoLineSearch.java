@@ -0,0 +1,62 @@
+package math;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Backtracking search: starts from the full step and shrinks it until the value decreases sufficiently,
+ * f(x + t d) <= f(x) + c1 t grad f(x) . d. Searches against the direction if it points uphill.
+ */
+public class ArmijoLineSearch implements LineSearch {
+    private static final int I_MAX = 64;
+    private final double c1;
+    private final double shrink;
+
+    public ArmijoLineSearch() {
+        this(1e-4, 0.5);
+    }
+
+    /**
+     * @param c1 Sufficient decrease constant, in (0, 1)
+     * @param shrink Factor the step is multiplied by after every rejected trial, in (0, 1)
+     */
+    public ArmijoLineSearch(double c1, double shrink) {
+        if (!(c1 > 0 && c1 < 1) || !(shrink > 0 && shrink < 1)) {
+            throw new IllegalArgumentException("Armijo constants have to lie in (0, 1)");
+        }
+        this.c1 = c1;
+        this.shrink = shrink;
+    }
+
+    @Override
+    public double search(DoubleBinaryOperator f, Vector2 point, Vector2 direction, SolveContext context) {
+        Vector2 gradient = new Vector2();
+        double value = SolverUtils.valueAndGradient(f, point.x, point.y, gradient);
+        double slope = gradient.dot(direction);
+        if (slope == 0 || Double.isNaN(slope)) {
+            return 0;
+        }
+        double step = slope > 0 ? -1 : 1;
+        slope = -Math.abs(slope);
+        for (int i = 0; i < I_MAX; i++) {
+            double x = point.x + direction.x * step;
+            double y = point.y + direction.y * step;
+            if (context != null) {
+                context.addPoint(x, y);
+            }
+            if (f.applyAsDouble(x, y) <= value + c1 * Math.abs(step) * slope) {
+                point.set(x, y);
+                return step;
+            }
+            step *= shrink;
+        }
+        return 0;
+    }
+
+    public double getC1() {
+        return c1;
+    }
+
+    public double getShrink() {
+        return shrink;
+    }
+}
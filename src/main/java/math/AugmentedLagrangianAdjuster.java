@@ -0,0 +1,248 @@
+package math;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Method of multipliers for the bounds (g >= 0) and constraints (h = 0). Each level minimizes the augmented Lagrangian
+ * f + sum (max(0, mu - k g)^2 - mu^2) / 2k + sum (lambda h + k h^2 / 2), then moves the multipliers mu and lambda toward
+ * the constraint forces at the solution. The multipliers carry those forces, so k only grows while the violation stalls
+ * and stays moderate, keeping the inner problems well conditioned. Every level starts from the previous solution.
+ */
+public class AugmentedLagrangianAdjuster extends PenaltyAdjuster {
+    private static final int I_MAX = 32;
+    /**k grows when a level does not shrink the violation at least by this factor*/
+    private static final double VIOLATION_DECREASE = 0.25;
+
+    public AugmentedLagrangianAdjuster(Solver solver, List<DoubleBinaryOperator> bounds, List<DoubleBinaryOperator> constraints) {
+        super(solver, null, bounds, constraints, true);
+    }
+
+    @Override
+    public Context solve(DoubleBinaryOperator f, PointDouble... data) {
+        return (Context) super.solve(f, data);
+    }
+
+    @Override
+    protected Context createContext(DoubleBinaryOperator f) {
+        return new Context(f, this);
+    }
+
+    @Override
+    protected PointDouble solveInternal(SolveContext solveContext, PointDouble... data) {
+        Context context = (Context) solveContext;
+        DoubleBinaryOperator function = context.getF();
+        List<DoubleBinaryOperator> bounds = getBounds();
+        List<DoubleBinaryOperator> constraints = getConstraints();
+        context.k = getkStart();
+        context.boundMultipliers = new double[bounds.size()];
+        context.constraintMultipliers = new double[constraints.size()];
+        long deadline = deadline(context);
+        if (!isEnabled()) {
+            SolveContext inner = getSolver().solve(function, context.getTolerance(), deadline, data);
+            context.addTrace(inner);
+            return inner.getResult();
+        }
+
+        PointDouble curr = null;
+        PointDouble prev;
+        SolveContext inner;
+        double violation = Double.POSITIVE_INFINITY;
+        int i = 0;
+
+        while (true) {
+            inner = getSolver().solve(new LagrangianFunction(function, bounds, constraints, context.boundMultipliers, context.constraintMultipliers, context.k), context.getTolerance(), levelDeadline(deadline, I_MAX - i), data);
+            prev = curr;
+            curr = inner.getResult();
+            context.addPoint(curr);
+
+            double prevViolation = violation;
+            violation = updateMultipliers(context, curr);
+            context.addToLog("i = " + i + "; k = " + context.k + "; Solution: " + curr.toString(PRECISION) + "; Violation = " + violation
+                    + "; Multipliers: " + context.getMultipliersString() + cacheStatistics(inner));
+
+            if (getDisplayIteration() == i) {
+                context.addToLog("Log of the iteration " + i + ":");
+                context.addTrace(inner);
+            }
+
+            boolean settled = prev != null && curr.add(prev.scale(-1)).length() <= context.getTolerance();
+            if (i + 1 >= I_MAX || settled && violation < getViolationTolerance() || isOutOfTime(context, deadline, i)) {
+                break;
+            }
+            if (violation > VIOLATION_DECREASE * prevViolation) {
+                context.k *= getkMulti();
+            }
+            data = warmStart(data, curr);
+            i++;
+        }
+
+        if (getDisplayIteration() < 0 || getDisplayIteration() > i) {
+            context.addToLog("Log of the iteration " + i + ":");
+            context.addTrace(inner);
+        }
+
+        return curr;
+    }
+
+    /**
+     * Moves the multipliers to the constraint forces of the augmented Lagrangian at the point
+     * @return Violation before the update: of the constraints, and of the bounds or of their complementarity with the multipliers
+     */
+    private double updateMultipliers(Context context, PointDouble point) {
+        double violation = 0;
+        List<DoubleBinaryOperator> bounds = getBounds();
+        for (int i = 0; i < bounds.size(); i++) {
+            double g = partValue(bounds.get(i), point.getX(), point.getY());
+            double mu = context.boundMultipliers[i];
+            violation = Math.max(violation, Math.abs(Math.min(g, mu / context.k)));
+            context.boundMultipliers[i] = Math.max(0, mu - context.k * g);
+        }
+        List<DoubleBinaryOperator> constraints = getConstraints();
+        for (int i = 0; i < constraints.size(); i++) {
+            double h = partValue(constraints.get(i), point.getX(), point.getY());
+            violation = Math.max(violation, Math.abs(h));
+            context.constraintMultipliers[i] += context.k * h;
+        }
+        return violation;
+    }
+
+    private static double partValue(DoubleBinaryOperator part, double x, double y) {
+        double value = part.applyAsDouble(x, y);
+        return Double.isNaN(value) ? 0 : value;
+    }
+
+    private static double boundTerm(double g, double mu, double k) {
+        double shifted = Math.max(0, mu - k * g);
+        return (shifted * shifted - mu * mu) / (2 * k);
+    }
+
+    private static double constraintTerm(double h, double lambda, double k) {
+        return lambda * h + k * h * h / 2;
+    }
+
+    /**@return Bound terms of the augmented Lagrangian as a penalty function of the bound values, for display. Missing multipliers are 0*/
+    public static PenaltyFunction getBoundPenaltyFunction(double[] multipliers) {
+        return (l, k) -> {
+            double sum = 0;
+            for (int i = 0; i < l.length; i++) {
+                double val = Double.isNaN(l[i]) ? 0 : l[i];
+                sum += boundTerm(val, i < multipliers.length ? multipliers[i] : 0, k);
+            }
+            return Math.min(sum, Double.MAX_VALUE);
+        };
+    }
+
+    /**@return Constraint terms of the augmented Lagrangian as a penalty function of the constraint values, for display. Missing multipliers are 0*/
+    public static PenaltyFunction getConstraintPenaltyFunction(double[] multipliers) {
+        return (l, k) -> {
+            double sum = 0;
+            for (int i = 0; i < l.length; i++) {
+                double val = Double.isNaN(l[i]) ? 0 : l[i];
+                sum += constraintTerm(val, i < multipliers.length ? multipliers[i] : 0, k);
+            }
+            return Math.min(sum, Double.MAX_VALUE);
+        };
+    }
+
+    /**Context of an augmented Lagrangian solve, reporting the multiplier estimates it finished with*/
+    public static class Context extends PenaltyAdjuster.Context {
+        private double[] boundMultipliers = new double[0];
+        private double[] constraintMultipliers = new double[0];
+
+        private Context(DoubleBinaryOperator f, AugmentedLagrangianAdjuster solver) {
+            super(f, solver);
+        }
+
+        /**@return Multiplier of every bound, 0 for the inactive ones*/
+        public double[] getBoundMultipliers() {
+            return boundMultipliers;
+        }
+
+        /**@return Multiplier of every constraint*/
+        public double[] getConstraintMultipliers() {
+            return constraintMultipliers;
+        }
+
+        public String getMultipliersString() {
+            return "bounds = " + toString(boundMultipliers) + "; constraints = " + toString(constraintMultipliers);
+        }
+
+        private static String toString(double[] values) {
+            StringBuilder string = new StringBuilder("[");
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    string.append(", ");
+                }
+                string.append(Double.isFinite(values[i]) ? BigDecimal.valueOf(values[i]).setScale(PRECISION, RoundingMode.HALF_UP).doubleValue() : values[i]);
+            }
+            return string.append("]").toString();
+        }
+    }
+
+    /**Augmented Lagrangian for fixed multipliers and k. Its gradient combines the gradients of the parts through the chain rule*/
+    private static class LagrangianFunction implements DifferentiableFunction {
+        private final DoubleBinaryOperator function;
+        private final List<DoubleBinaryOperator> bounds;
+        private final List<DoubleBinaryOperator> constraints;
+        private final double[] boundMultipliers;
+        private final double[] constraintMultipliers;
+        private final double k;
+        private final ThreadLocal<Vector2> partGradient = ThreadLocal.withInitial(Vector2::new);
+
+        private LagrangianFunction(DoubleBinaryOperator function, List<DoubleBinaryOperator> bounds, List<DoubleBinaryOperator> constraints, double[] boundMultipliers, double[] constraintMultipliers, double k) {
+            this.function = function;
+            this.bounds = bounds;
+            this.constraints = constraints;
+            //Copies, the context updates its multipliers after the level
+            this.boundMultipliers = boundMultipliers.clone();
+            this.constraintMultipliers = constraintMultipliers.clone();
+            this.k = k;
+        }
+
+        @Override
+        public double applyAsDouble(double x, double y) {
+            double sum = function.applyAsDouble(x, y);
+            for (int i = 0; i < bounds.size(); i++) {
+                sum += boundTerm(partValue(bounds.get(i), x, y), boundMultipliers[i], k);
+            }
+            for (int i = 0; i < constraints.size(); i++) {
+                sum += constraintTerm(partValue(constraints.get(i), x, y), constraintMultipliers[i], k);
+            }
+            return sum;
+        }
+
+        @Override
+        public void gradient(double x, double y, Vector2 out) {
+            valueAndGradient(x, y, out);
+        }
+
+        @Override
+        public double valueAndGradient(double x, double y, Vector2 out) {
+            Vector2 partGradient = this.partGradient.get();
+            double sum = SolverUtils.valueAndGradient(function, x, y, out);
+            for (int i = 0; i < bounds.size(); i++) {
+                double g = partValue(bounds.get(i), x, y);
+                sum += boundTerm(g, boundMultipliers[i], k);
+                //d/dg of the bound term is -max(0, mu - k g)
+                double force = Math.max(0, boundMultipliers[i] - k * g);
+                if (force != 0) {
+                    SolverUtils.gradient(bounds.get(i), x, y, partGradient);
+                    out.addScaled(partGradient, -force);
+                }
+            }
+            for (int i = 0; i < constraints.size(); i++) {
+                double h = partValue(constraints.get(i), x, y);
+                sum += constraintTerm(h, constraintMultipliers[i], k);
+                double force = constraintMultipliers[i] + k * h;
+                if (force != 0) {
+                    SolverUtils.gradient(constraints.get(i), x, y, partGradient);
+                    out.addScaled(partGradient, force);
+                }
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package math;
+
+/**
+ * Quasi-Newton method with the BFGS update of the inverse Hessian approximation.
+ * Steps are chosen by a {@link WolfeLineSearch} by default, whose curvature condition keeps the approximation positive definite.
+ */
+public class BFGSSolver extends Solver {
+    private static final int I_MAX = 1024;
+    //Relative to the tolerance of the solve, a superlinear method reaches them in a few more steps
+    private static final double GRADIENT_TOLERANCE = 1e-3;
+    private static final double STEP_TOLERANCE = 1e-6;
+
+    public BFGSSolver() {
+        setLineSearch(new WolfeLineSearch());
+    }
+
+    @Override
+    protected PointDouble solveInternal(SolveContext context, PointDouble... data) {
+        if (data.length < 1) {
+            throw new IllegalArgumentException("No parameters passed to solver");
+        }
+
+        Vector2 curr = new Vector2(data[0]);
+        Vector2 prev = new Vector2(curr);
+        Vector2 grad = new Vector2();
+        Vector2 nextGrad = new Vector2();
+        Vector2 direction = new Vector2();
+        Vector2 s = new Vector2();
+        Vector2 y = new Vector2();
+        Vector2 hy = new Vector2();
+        //Inverse Hessian approximation, symmetric
+        double h11 = 1;
+        double h12 = 0;
+        double h22 = 1;
+        double value = SolverUtils.valueAndGradient(context.getF(), curr.x, curr.y, grad);
+        context.addPoint(curr);
+
+        double gradientTolerance = context.getTolerance() * GRADIENT_TOLERANCE;
+        double stepTolerance = context.getTolerance() * STEP_TOLERANCE;
+        int i = 0;
+        while (i < I_MAX && grad.length() > gradientTolerance) {
+            prev.set(curr);
+            direction.set(-(h11 * grad.x + h12 * grad.y), -(h12 * grad.x + h22 * grad.y));
+            if (direction.dot(grad) >= 0 || direction.isNaN()) {
+                //Lost positive definiteness, restart from steepest descent
+                h11 = 1;
+                h12 = 0;
+                h22 = 1;
+                direction.set(grad).scale(-1);
+            }
+            if (i == 0) {
+                //No curvature information yet, keep the first trial step short
+                direction.scale(Math.min(1, 1 / grad.length()));
+            }
+            findMinOnAxis(context, direction, curr);
+            //Answered by the cache when enabled, the line search has just evaluated this point
+            double nextValue = SolverUtils.valueAndGradient(context.getF(), curr.x, curr.y, nextGrad);
+
+            s.set(curr.x - prev.x, curr.y - prev.y);
+            y.set(nextGrad.x - grad.x, nextGrad.y - grad.y);
+
+            context.addLine(prev, curr);
+            context.addPoint(curr);
+            if (context.isTracing()) {
+                context.addToLog(i + ") Start = " + prev.toString(PRECISION) + "; End = " + curr.toString(PRECISION) + "; Gradient = " + nextGrad.toString(PRECISION) + "; f = " + nextValue);
+            }
+
+            double sy = s.dot(y);
+            if (sy > 0) {
+                if (i == 0) {
+                    //Scale the initial approximation to the curvature seen along the first step
+                    double scale = sy / y.lengthSquared();
+                    h11 = scale;
+                    h22 = scale;
+                }
+                hy.set(h11 * y.x + h12 * y.y, h12 * y.x + h22 * y.y);
+                double a = (sy + y.dot(hy)) / (sy * sy);
+                h11 += a * s.x * s.x - 2 * hy.x * s.x / sy;
+                h12 += a * s.x * s.y - (hy.x * s.y + hy.y * s.x) / sy;
+                h22 += a * s.y * s.y - 2 * hy.y * s.y / sy;
+            }
+
+            grad.set(nextGrad);
+            boolean stalled = curr.distance(prev) < stepTolerance && Math.abs(nextValue - value) < stepTolerance;
+            value = nextValue;
+            i++;
+            if (stalled) {
+                break;
+            }
+        }
+        if (context.isTracing()) {
+            context.addToLog(i + ") Solution = " + curr.toString(PRECISION) + "; Gradient = " + grad.toString(PRECISION) + "; f = " + value);
+        }
+        return curr.toPoint();
+    }
+
+    @Override
+    protected int getLogBatchSize() {
+        return 1;
+    }
+}
@@ -0,0 +1,322 @@
+package math;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Feasibility restoration for bounds g(x, y) >= 0. Each step moves the point the shortest way onto the bounds linearized at it,
+ * in closed form: onto one of their lines or onto the corner of two. The working set, the bounds the last step ended on,
+ * stays in the linearization with the violated ones, so a step does not undo the previous one.
+ * Affine bounds, boxes included, are recognised from their expressions when the projection is built. They cost no evaluations
+ * and are met after one step. Other bounds are linearized with their exact gradients when they are differentiable and converge quadratically.
+ * With a {@link LinearRegion}, its rows take part in every step, its constraints as lines the step has to stay on, and the inset
+ * moves only along them, so a point of the region stays in it.
+ * A bound that is undefined at a point counts as violated there. A step that ends where one is undefined is halved back, and not taken if that does not help.
+ * Holds scratch buffers, so one projection serves one thread.
+ */
+public class BoundsProjection {
+    private static final int I_MAX = 16;
+    /**Violation small enough to count as on the bound*/
+    private static final double FEASIBILITY_TOLERANCE = 1e-12;
+    private static final double DIFFERENCE_STEP = 1e-7;
+    private static final int INSET_HALVINGS = 8;
+    private static final int STEP_HALVINGS = 8;
+
+    private final List<DoubleBinaryOperator> bounds;
+    private final LinearRegion region;
+    //g = a x + b y + c for the affine bounds, followed by the rows of the region
+    private final boolean[] affine;
+    private final boolean[] equality;
+    private final double[] a;
+    private final double[] b;
+    private final double[] c;
+    //Scratch of a projection
+    private final double[] values;
+    private final double[] gradientX;
+    private final double[] gradientY;
+    private final boolean[] working;
+    private final boolean[] linearized;
+    private final Vector2 gradient = new Vector2();
+    private double stepX;
+    private double stepY;
+    private long evaluations;
+
+    public BoundsProjection(List<DoubleBinaryOperator> bounds) {
+        this(bounds, null);
+    }
+
+    /**@param region Affine bounds and constraints the restored point has to keep meeting, null if there are none*/
+    public BoundsProjection(List<DoubleBinaryOperator> bounds, LinearRegion region) {
+        if (bounds == null) {
+            throw new IllegalArgumentException("Bounds are required");
+        }
+        this.bounds = bounds;
+        this.region = region;
+        int n = bounds.size() + (region != null ? region.getRows() : 0);
+        affine = new boolean[n];
+        equality = new boolean[n];
+        a = new double[n];
+        b = new double[n];
+        c = new double[n];
+        values = new double[n];
+        gradientX = new double[n];
+        gradientY = new double[n];
+        working = new boolean[n];
+        linearized = new boolean[n];
+        for (int i = 0; i < bounds.size(); i++) {
+            fitAffine(i);
+        }
+        for (int i = bounds.size(); i < n; i++) {
+            double[] row = region.getRow(i - bounds.size());
+            affine[i] = true;
+            equality[i] = region.isEquality(i - bounds.size());
+            a[i] = row[0];
+            b[i] = row[1];
+            c[i] = row[2];
+        }
+    }
+
+    private void fitAffine(int i) {
+        double[] coefficients = ExpressionCompiler.affine(bounds.get(i));
+        affine[i] = coefficients != null;
+        if (affine[i]) {
+            a[i] = coefficients[0];
+            b[i] = coefficients[1];
+            c[i] = coefficients[2];
+        }
+    }
+
+    /**
+     * @param inset Distance the restored point is moved further inside, along the normals of the bounds it ended on. Halved while it leaves the region
+     * @return The point itself if it meets all bounds, otherwise the restored point, or where I_MAX steps got to
+     */
+    public PointDouble project(PointDouble point, double inset) {
+        double x = point.getX();
+        double y = point.getY();
+        if (isFeasible(x, y)) {
+            return point;
+        }
+        Arrays.fill(working, false);
+        int i = 0;
+        boolean feasible;
+        do {
+            boolean defined = isDefined();
+            if (!step(x, y)) {
+                break;
+            }
+            //Undefined bounds can not be linearized, so a step from a defined point does not stop where one is. Halving does not shorten an overflowed step
+            defined &= Double.isFinite(x + stepX) && Double.isFinite(y + stepY);
+            feasible = isFeasible(x + stepX, y + stepY);
+            for (int j = 0; j < STEP_HALVINGS && defined && !feasible && !isDefined(); j++) {
+                stepX /= 2;
+                stepY /= 2;
+                feasible = isFeasible(x + stepX, y + stepY);
+            }
+            if (defined && !isDefined()) {
+                break;
+            }
+            x += stepX;
+            y += stepY;
+        } while (!feasible && ++i < I_MAX);
+        if (region != null && !isFeasible(x, y)) {
+            //A step of the working set alone may have left the region
+            Vector2 projected = new Vector2();
+            region.project(x, y, projected);
+            x = projected.x;
+            y = projected.y;
+        }
+
+        //Inward along the sum of the normals of the working set, within the lines of the constraints
+        double normalX = 0;
+        double normalY = 0;
+        for (int j = 0; j < values.length; j++) {
+            if (working[j] && !equality[j]) {
+                double length = Math.hypot(gradientX[j], gradientY[j]);
+                normalX += gradientX[j] / length;
+                normalY += gradientY[j] / length;
+            }
+        }
+        int line = -1;
+        for (int j = 0; j < values.length; j++) {
+            if (!equality[j]) {
+                continue;
+            }
+            if (line >= 0 && Math.abs(a[line] * b[j] - b[line] * a[j]) > FEASIBILITY_TOLERANCE) {
+                //Two crossing constraints leave no direction to move along
+                normalX = 0;
+                normalY = 0;
+                break;
+            }
+            line = j;
+            double dot = normalX * a[j] + normalY * b[j];
+            normalX -= dot * a[j];
+            normalY -= dot * b[j];
+        }
+        double normalLength = Math.hypot(normalX, normalY);
+        if (inset > 0 && normalLength > 0) {
+            for (int j = 0; j < INSET_HALVINGS; j++, inset /= 2) {
+                double insetX = x + normalX / normalLength * inset;
+                double insetY = y + normalY / normalLength * inset;
+                if (isFeasible(insetX, insetY)) {
+                    return new PointDouble(insetX, insetY);
+                }
+            }
+        }
+        return new PointDouble(x, y);
+    }
+
+    /**Fills the values of the bounds at the point, an undefined one being violated*/
+    private boolean isFeasible(double x, double y) {
+        boolean feasible = true;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = affine[i] ? a[i] * x + b[i] * y + c[i] : value(i, x, y);
+            feasible &= slack(i) >= -FEASIBILITY_TOLERANCE;
+        }
+        return feasible;
+    }
+
+    /**@return Whether all bounds are defined at the point last filled*/
+    private boolean isDefined() {
+        for (double value : values) {
+            if (Double.isNaN(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**@return Value of a bound, minus the distance from the line of a constraint*/
+    private double slack(int i) {
+        return equality[i] ? -Math.abs(values[i]) : values[i];
+    }
+
+    private double value(int i, double x, double y) {
+        evaluations++;
+        return bounds.get(i).applyAsDouble(x, y);
+    }
+
+    /**
+     * Finds the shortest step onto the bounds linearized at the current point, over the violated bounds and the working set.
+     * The optimum of this small QP lies on one line or on the corner of two, so it is found by trying each.
+     * @return Whether a step was found, written into stepX and stepY, with the bounds it ends on as the new working set
+     */
+    private boolean step(double x, double y) {
+        int worst = -1;
+        for (int i = 0; i < values.length; i++) {
+            //An undefined bound has no line to step onto
+            linearized[i] = !Double.isNaN(values[i]) && (slack(i) < -FEASIBILITY_TOLERANCE || working[i] || equality[i]);
+            if (!linearized[i]) {
+                continue;
+            }
+            linearize(i, x, y);
+            if (slack(i) < -FEASIBILITY_TOLERANCE && (worst < 0 || slack(i) < slack(worst)) && (gradientX[i] != 0 || gradientY[i] != 0)) {
+                worst = i;
+            }
+        }
+        if (worst < 0) {
+            return false;
+        }
+
+        double best = Double.POSITIVE_INFINITY;
+        int bestI = -1;
+        int bestJ = -1;
+        for (int i = 0; i < values.length; i++) {
+            if (!linearized[i]) {
+                continue;
+            }
+            double squared = gradientX[i] * gradientX[i] + gradientY[i] * gradientY[i];
+            if (squared == 0) {
+                continue;
+            }
+            double t = -values[i] / squared;
+            double dx = t * gradientX[i];
+            double dy = t * gradientY[i];
+            if (dx * dx + dy * dy < best && satisfiesLinearized(dx, dy)) {
+                best = dx * dx + dy * dy;
+                bestI = i;
+                bestJ = -1;
+                stepX = dx;
+                stepY = dy;
+            }
+            for (int j = i + 1; j < values.length; j++) {
+                if (!linearized[j]) {
+                    continue;
+                }
+                double determinant = gradientX[i] * gradientY[j] - gradientY[i] * gradientX[j];
+                if (Math.abs(determinant) <= FEASIBILITY_TOLERANCE * squared) {
+                    continue;
+                }
+                dx = (-values[i] * gradientY[j] + values[j] * gradientY[i]) / determinant;
+                dy = (-values[j] * gradientX[i] + values[i] * gradientX[j]) / determinant;
+                if (dx * dx + dy * dy < best && satisfiesLinearized(dx, dy)) {
+                    best = dx * dx + dy * dy;
+                    bestI = i;
+                    bestJ = j;
+                    stepX = dx;
+                    stepY = dy;
+                }
+            }
+        }
+
+        if (bestI < 0) {
+            //The linearized bounds contradict each other, restore the worst one alone
+            bestI = worst;
+            bestJ = -1;
+            double t = -values[worst] / (gradientX[worst] * gradientX[worst] + gradientY[worst] * gradientY[worst]);
+            stepX = t * gradientX[worst];
+            stepY = t * gradientY[worst];
+        }
+        Arrays.fill(working, false);
+        working[bestI] = true;
+        if (bestJ >= 0) {
+            working[bestJ] = true;
+        }
+        return true;
+    }
+
+    private boolean satisfiesLinearized(double dx, double dy) {
+        for (int i = 0; i < values.length; i++) {
+            if (!linearized[i]) {
+                continue;
+            }
+            double value = values[i] + gradientX[i] * dx + gradientY[i] * dy;
+            if ((equality[i] ? -Math.abs(value) : value) < -FEASIBILITY_TOLERANCE * (1 + Math.abs(values[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void linearize(int i, double x, double y) {
+        if (affine[i]) {
+            gradientX[i] = a[i];
+            gradientY[i] = b[i];
+            return;
+        }
+        DoubleBinaryOperator bound = bounds.get(i);
+        if (bound instanceof DifferentiableFunction) {
+            ((DifferentiableFunction) bound).gradient(x, y, gradient);
+            evaluations++;
+        }
+        else {
+            double hx = DIFFERENCE_STEP * Math.max(1, Math.abs(x));
+            double hy = DIFFERENCE_STEP * Math.max(1, Math.abs(y));
+            gradient.set((bound.applyAsDouble(x + hx, y) - bound.applyAsDouble(x - hx, y)) / (2 * hx),
+                    (bound.applyAsDouble(x, y + hy) - bound.applyAsDouble(x, y - hy)) / (2 * hy));
+            evaluations += 4;
+        }
+        gradientX[i] = gradient.x;
+        gradientY[i] = gradient.y;
+    }
+
+    /**@return Whether the bound was recognised as affine in x and y, which only compiled expressions are*/
+    public boolean isAffine(int i) {
+        return affine[i];
+    }
+
+    /**@return Evaluations of the bounds and their gradients so far*/
+    public long getEvaluations() {
+        return evaluations;
+    }
+}
@@ -0,0 +1,130 @@
+package math;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Brent's minimization: parabolic interpolation through the three best points, falling back to golden section steps
+ * whenever the parabola is unreliable. Converges superlinearly on smooth functions, never slower than golden section.
+ */
+public class BrentSolver extends Solver1D {
+    private static final double RATIO = (3 - Math.sqrt(5)) / 2;
+    /**Square root of the machine epsilon, the best relative precision of a minimizer*/
+    private static final double RELATIVE_TOLERANCE = 1.5e-8;
+    private static final int I_MAX = 100;
+
+    @Override
+    protected PointDouble solveInternal(double lower, double upper) {
+        double x = Math.min(lower, upper) + RATIO * Math.abs(upper - lower);
+        double fx = getF().applyAsDouble(x);
+        return minimize(lower, upper, x, fx, x, fx, x, fx, 0);
+    }
+
+    /**Starts the parabola from the known bracket, so the first step already interpolates through three points*/
+    @Override
+    protected PointDouble solveInternal(double lower, double upper, double x, double fx, double fLower, double fUpper) {
+        if (fLower <= fUpper) {
+            return minimize(lower, upper, x, fx, lower, fLower, upper, fUpper, Math.abs(upper - lower));
+        }
+        return minimize(lower, upper, x, fx, upper, fUpper, lower, fLower, Math.abs(upper - lower));
+    }
+
+    /**
+     * @param x Best point so far
+     * @param w Second best point
+     * @param v Previous value of w
+     * @param e Step before last, a parabolic step is only taken if it is less than half of it
+     */
+    private PointDouble minimize(double lower, double upper, double x, double fx, double w, double fw, double v, double fv, double e) {
+        DoubleUnaryOperator f = getF();
+        double a = Math.min(lower, upper);
+        double b = Math.max(lower, upper);
+        double d = 0;
+
+        for (int i = 0; i < I_MAX; i++) {
+            double middle = (a + b) / 2;
+            double tolerance = RELATIVE_TOLERANCE * Math.abs(x) + EPSILON / 4;
+            if (Math.abs(x - middle) <= 2 * tolerance - (b - a) / 2) {
+                break;
+            }
+
+            boolean parabolic = false;
+            if (Math.abs(e) > tolerance) {
+                double r = (x - w) * (fx - fv);
+                double q = (x - v) * (fx - fw);
+                double p = (x - v) * q - (x - w) * r;
+                q = 2 * (q - r);
+                if (q > 0) {
+                    p = -p;
+                }
+                q = Math.abs(q);
+                //Accept the parabola only if it steps inside the interval and less than half the step before last
+                if (Math.abs(p) < Math.abs(0.5 * q * e) && p > q * (a - x) && p < q * (b - x)) {
+                    e = d;
+                    d = p / q;
+                    double u = x + d;
+                    if (u - a < 2 * tolerance || b - u < 2 * tolerance) {
+                        d = Math.copySign(tolerance, middle - x);
+                    }
+                    parabolic = true;
+                }
+            }
+            if (!parabolic) {
+                e = x >= middle ? a - x : b - x;
+                d = RATIO * e;
+            }
+
+            double u = Math.abs(d) >= tolerance ? x + d : x + Math.copySign(tolerance, d);
+            double fu = f.applyAsDouble(u);
+
+            if (isTracing()) {
+                addToLog(i + ":");
+                addToLog("a = " + a);
+                addToLog("b = " + b);
+                addToLog("x = " + x);
+                addToLog("u = " + u + (parabolic ? " (parabolic)" : " (golden)"));
+                addToLog("f(u) = " + fu);
+                addPoint(new PointDouble(u, fu));
+            }
+
+            if (fu <= fx) {
+                if (u >= x) {
+                    a = x;
+                }
+                else {
+                    b = x;
+                }
+                v = w;
+                fv = fw;
+                w = x;
+                fw = fx;
+                x = u;
+                fx = fu;
+            }
+            else {
+                if (u < x) {
+                    a = u;
+                }
+                else {
+                    b = u;
+                }
+                if (fu <= fw || w == x) {
+                    v = w;
+                    fv = fw;
+                    w = u;
+                    fw = fu;
+                }
+                else if (fu <= fv || v == x || v == w) {
+                    v = u;
+                    fv = fu;
+                }
+            }
+        }
+
+        return new PointDouble(x, fx);
+    }
+
+    @Override
+    protected int getLogBatchSize() {
+        return 6;
+    }
+}
@@ -5,47 +5,49 @@ public class ChainGradientSolver extends Solver {
     private double DESC_RATE = 1;
     
     @Override
-    protected PointDouble solveInternal(PointDouble... data) {
+    protected PointDouble solveInternal(SolveContext context, PointDouble... data) {
         if (data.length < 1) {
             throw new IllegalArgumentException("No parameters passed to solver");
         }
         
-        PointDouble curr = data[0];
-        PointDouble prev = curr;
-        PointDouble grad = gradient(curr);
-        PointDouble s = grad.scale(-DESC_RATE);
-        PointDouble prevS;
-        PointDouble prevGrad;
+        Vector2 curr = new Vector2(data[0]);
+        Vector2 prev = new Vector2(curr);
+        Vector2 grad = new Vector2();
+        Vector2 s = new Vector2();
+        Vector2 prevGrad = new Vector2();
         int i = 0;
         double delta;
-        double beta;
+        double beta = 1;
         do {
-            prev = curr;
-            prevGrad = grad;
-            prevS = s;
-            grad = gradient(prev);
-            beta = grad.lengthSquared() / prevGrad.lengthSquared();
+            prev.set(curr);
+            prevGrad.set(grad);
+            gradient(context, prev, grad);
             if (i > 0) {
-                s = grad.scale(-DESC_RATE).add(prevS.scale(beta));
+                beta = grad.lengthSquared() / prevGrad.lengthSquared();
+                s.scale(beta).addScaled(grad, -DESC_RATE);
             }
             else {
-                s = grad.scale(-DESC_RATE);
+                s.set(grad).scale(-DESC_RATE);
             }
-            curr = findMinOnAxis(s, prev);
+            findMinOnAxis(context, s, curr);
             
-            addLine(prev, curr);
-            addPoint(prev);
-            addPoint(curr);
-            addToLog(i + ") Start = " + prev.toString(PRECISION) + "; End = " + curr.toString(PRECISION) + "; Gradient = " + grad.toString(PRECISION) + "; Beta = " + beta);
-            delta = curr.add(prev.scale(-1)).length();
+            context.addLine(prev, curr);
+            context.addPoint(prev);
+            context.addPoint(curr);
+            if (context.isTracing()) {
+                context.addToLog(i + ") Start = " + prev.toString(PRECISION) + "; End = " + curr.toString(PRECISION) + "; Gradient = " + grad.toString(PRECISION) + "; Beta = " + beta);
+            }
+            delta = curr.distance(prev);
             
             i++;
-        } while (i < I_MAX && delta > EPSILON);
-        addLine(prev, curr);
-        addPoint(prev);
-        addPoint(curr);
-        addToLog(i + ") Start = " + prev.toString(PRECISION) + "; End = " + curr.toString(PRECISION) + "; Gradient = " + grad.toString(PRECISION) + "; Beta = " + beta);
-        return curr;
+        } while (i < I_MAX && delta > context.getTolerance());
+        context.addLine(prev, curr);
+        context.addPoint(prev);
+        context.addPoint(curr);
+        if (context.isTracing()) {
+            context.addToLog(i + ") Start = " + prev.toString(PRECISION) + "; End = " + curr.toString(PRECISION) + "; Gradient = " + grad.toString(PRECISION) + "; Beta = " + beta);
+        }
+        return curr.toPoint();
     }
     
     @Override
@@ -0,0 +1,350 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Expression tree flattened into a postfix stack program.
+ * Evaluation walks a plain array of operations, so no tree is interpreted and nothing is allocated per call.
+ * The same program can be run over hyper-dual numbers, which gives the value, gradient and Hessian in one pass,
+ * including for piecewise operations such as if, min and max.
+ */
+public class CompiledFunction implements DifferentiableFunction {
+    /**Slots of one hyper-dual number: value, d/dx, d/dy, d2/dx2, d2/dxdy, d2/dy2*/
+    private static final int DUAL = 6;
+
+    private final ExpressionNode expression;
+    private final ExpressionNode.Type[] ops;
+    private final double[] constants;
+    private final int maxDepth;
+    private final ThreadLocal<double[]> stack;
+    private final ThreadLocal<double[]> dualStack;
+
+    public CompiledFunction(ExpressionNode expression) {
+        this.expression = expression;
+        List<ExpressionNode.Type> ops = new ArrayList<>();
+        List<Double> constants = new ArrayList<>();
+        this.maxDepth = emit(expression, ops, constants, 0);
+        this.ops = ops.toArray(new ExpressionNode.Type[0]);
+        this.constants = new double[constants.size()];
+        for (int i = 0; i < this.constants.length; i++) {
+            this.constants[i] = constants.get(i);
+        }
+        int depth = maxDepth;
+        this.stack = ThreadLocal.withInitial(() -> new double[depth]);
+        this.dualStack = ThreadLocal.withInitial(() -> new double[depth * DUAL]);
+    }
+
+    /**@return Maximum stack depth reached by the subtree, given the depth before it is evaluated*/
+    private static int emit(ExpressionNode node, List<ExpressionNode.Type> ops, List<Double> constants, int depth) {
+        int max = depth + 1;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            max = Math.max(max, emit(node.getChild(i), ops, constants, depth + i));
+        }
+        if (node.isConstant()) {
+            constants.add(node.getValue());
+        }
+        ops.add(node.getType());
+        return max;
+    }
+
+    @Override
+    public double applyAsDouble(double x, double y) {
+        double[] stack = this.stack.get();
+        int top = -1;
+        int constant = 0;
+        for (ExpressionNode.Type op : ops) {
+            switch (op) {
+                case CONSTANT:
+                    stack[++top] = constants[constant++];
+                    break;
+                case X:
+                    stack[++top] = x;
+                    break;
+                case Y:
+                    stack[++top] = y;
+                    break;
+                case ADD:
+                    top--;
+                    stack[top] += stack[top + 1];
+                    break;
+                case SUBTRACT:
+                    top--;
+                    stack[top] -= stack[top + 1];
+                    break;
+                case MULTIPLY:
+                    top--;
+                    stack[top] *= stack[top + 1];
+                    break;
+                case DIVIDE:
+                    top--;
+                    //Like mXparser, division by zero is undefined
+                    stack[top] = stack[top + 1] == 0 ? Double.NaN : stack[top] / stack[top + 1];
+                    break;
+                case IF:
+                    top -= 2;
+                    //Like mXparser, an undefined condition leaves the result undefined
+                    if (!Double.isNaN(stack[top])) {
+                        stack[top] = stack[top] != 0 ? stack[top + 1] : stack[top + 2];
+                    }
+                    break;
+                default:
+                    if (op.getArity() == 2) {
+                        top--;
+                        stack[top] = ExpressionNode.apply(op, stack[top], stack[top + 1]);
+                    }
+                    else {
+                        stack[top] = ExpressionNode.apply(op, stack[top], 0);
+                    }
+            }
+        }
+        return stack[0];
+    }
+
+    @Override
+    public void gradient(double x, double y, Vector2 out) {
+        double[] result = evaluateDual(x, y);
+        out.set(result[1], result[2]);
+    }
+    
+    @Override
+    public double valueAndGradient(double x, double y, Vector2 gradient) {
+        double[] result = evaluateDual(x, y);
+        gradient.set(result[1], result[2]);
+        return result[0];
+    }
+    
+    @Override
+    public void hessian(double x, double y, double[] out) {
+        double[] result = evaluateDual(x, y);
+        out[0] = result[3];
+        out[1] = result[4];
+        out[2] = result[5];
+    }
+    
+    /**Writes value, df/dx, df/dy, d2f/dx2, d2f/dxdy and d2f/dy2 into the first six elements of out, in one pass*/
+    public void evaluate(double x, double y, double[] out) {
+        System.arraycopy(evaluateDual(x, y), 0, out, 0, DUAL);
+    }
+    
+    /**@return Thread's dual stack, with the result in its first {@link #DUAL} slots*/
+    private double[] evaluateDual(double x, double y) {
+        double[] s = this.dualStack.get();
+        int top = -DUAL;
+        int constant = 0;
+        for (ExpressionNode.Type op : ops) {
+            switch (op) {
+                case CONSTANT:
+                    top += DUAL;
+                    set(s, top, constants[constant++], 0, 0);
+                    break;
+                case X:
+                    top += DUAL;
+                    set(s, top, x, 1, 0);
+                    break;
+                case Y:
+                    top += DUAL;
+                    set(s, top, y, 0, 1);
+                    break;
+                case ADD:
+                case SUBTRACT:
+                    top -= DUAL;
+                    double sign = op == ExpressionNode.Type.ADD ? 1 : -1;
+                    for (int i = 0; i < DUAL; i++) {
+                        s[top + i] += sign * s[top + DUAL + i];
+                    }
+                    break;
+                case MULTIPLY:
+                    top -= DUAL;
+                    multiply(s, top, top + DUAL);
+                    break;
+                case DIVIDE:
+                    top -= DUAL;
+                    double v = s[top + DUAL];
+                    if (v == 0) {
+                        Arrays.fill(s, top, top + DUAL, Double.NaN);
+                        break;
+                    }
+                    chain(s, top + DUAL, 1 / v, -1 / (v * v), 2 / (v * v * v));
+                    multiply(s, top, top + DUAL);
+                    break;
+                case POWER:
+                    top -= DUAL;
+                    power(s, top, top + DUAL);
+                    break;
+                case MIN:
+                case MAX:
+                    top -= DUAL;
+                    boolean first = op == ExpressionNode.Type.MIN ? s[top] <= s[top + DUAL] : s[top] >= s[top + DUAL];
+                    if (!first) {
+                        System.arraycopy(s, top + DUAL, s, top, DUAL);
+                    }
+                    break;
+                case IF:
+                    top -= 2 * DUAL;
+                    if (Double.isNaN(s[top])) {
+                        Arrays.fill(s, top, top + DUAL, Double.NaN);
+                    }
+                    else {
+                        System.arraycopy(s, s[top] != 0 ? top + DUAL : top + 2 * DUAL, s, top, DUAL);
+                    }
+                    break;
+                default:
+                    if (op.getArity() == 2) {
+                        //Comparisons and logical operations are piecewise constant
+                        top -= DUAL;
+                        set(s, top, ExpressionNode.apply(op, s[top], s[top + DUAL]), 0, 0);
+                    }
+                    else {
+                        unary(op, s, top);
+                    }
+            }
+        }
+        return s;
+    }
+    
+    private static void set(double[] s, int i, double value, double dx, double dy) {
+        s[i] = value;
+        s[i + 1] = dx;
+        s[i + 2] = dy;
+        s[i + 3] = 0;
+        s[i + 4] = 0;
+        s[i + 5] = 0;
+    }
+    
+    /**Replaces the number at a with a * b*/
+    private static void multiply(double[] s, int a, int b) {
+        double u = s[a], ux = s[a + 1], uy = s[a + 2], uxx = s[a + 3], uxy = s[a + 4], uyy = s[a + 5];
+        double v = s[b], vx = s[b + 1], vy = s[b + 2], vxx = s[b + 3], vxy = s[b + 4], vyy = s[b + 5];
+        s[a] = u * v;
+        s[a + 1] = ux * v + u * vx;
+        s[a + 2] = uy * v + u * vy;
+        s[a + 3] = uxx * v + 2 * ux * vx + u * vxx;
+        s[a + 4] = uxy * v + ux * vy + uy * vx + u * vxy;
+        s[a + 5] = uyy * v + 2 * uy * vy + u * vyy;
+    }
+    
+    /**Replaces the number u at i with g(u), given g(u), g'(u) and g''(u)*/
+    private static void chain(double[] s, int i, double g, double d1, double d2) {
+        double ux = s[i + 1], uy = s[i + 2];
+        s[i] = g;
+        s[i + 1] = d1 * ux;
+        s[i + 2] = d1 * uy;
+        s[i + 3] = d2 * ux * ux + d1 * s[i + 3];
+        s[i + 4] = d2 * ux * uy + d1 * s[i + 4];
+        s[i + 5] = d2 * uy * uy + d1 * s[i + 5];
+    }
+    
+    /**Replaces the number at a with a ^ b*/
+    private static void power(double[] s, int a, int b) {
+        double u = s[a];
+        double c = s[b];
+        double value = ExpressionNode.power(u, c);
+        boolean constantExponent = s[b + 1] == 0 && s[b + 2] == 0 && s[b + 3] == 0 && s[b + 4] == 0 && s[b + 5] == 0;
+        if (constantExponent) {
+            if (u < 0 && ExpressionNode.oddRoot(c) != 0) {
+                //Odd root of a negative base, u ^ (c - 1) is u ^ c / u
+                chain(s, a, value, c * value / u, c * (c - 1) * value / (u * u));
+                return;
+            }
+            chain(s, a, value, c == 0 ? 0 : c * Math.pow(u, c - 1), c == 0 || c == 1 ? 0 : c * (c - 1) * Math.pow(u, c - 2));
+            return;
+        }
+        //u ^ v = exp(v * ln(u))
+        chain(s, a, Math.log(u), 1 / u, -1 / (u * u));
+        multiply(s, a, b);
+        chain(s, a, value, value, value);
+    }
+    
+    private static void unary(ExpressionNode.Type op, double[] s, int i) {
+        double u = s[i];
+        switch (op) {
+            case NEGATE:
+                for (int j = 0; j < DUAL; j++) {
+                    s[i + j] = -s[i + j];
+                }
+                break;
+            case SIN:
+                chain(s, i, Math.sin(u), Math.cos(u), -Math.sin(u));
+                break;
+            case COS:
+                chain(s, i, Math.cos(u), -Math.sin(u), -Math.cos(u));
+                break;
+            case TAN: {
+                double tan = Math.tan(u);
+                double sec2 = 1 + tan * tan;
+                chain(s, i, tan, sec2, 2 * tan * sec2);
+                break;
+            }
+            case COT: {
+                double cot = ExpressionNode.cot(u);
+                double csc2 = 1 + cot * cot;
+                chain(s, i, cot, -csc2, 2 * cot * csc2);
+                break;
+            }
+            case ASIN:
+            case ACOS: {
+                double sign = op == ExpressionNode.Type.ASIN ? 1 : -1;
+                double root = Math.sqrt(1 - u * u);
+                chain(s, i, op == ExpressionNode.Type.ASIN ? Math.asin(u) : Math.acos(u), sign / root, sign * u / (root * root * root));
+                break;
+            }
+            case ATAN: {
+                double d = 1 / (1 + u * u);
+                chain(s, i, Math.atan(u), d, -2 * u * d * d);
+                break;
+            }
+            case SINH:
+                chain(s, i, Math.sinh(u), Math.cosh(u), Math.sinh(u));
+                break;
+            case COSH:
+                chain(s, i, Math.cosh(u), Math.sinh(u), Math.cosh(u));
+                break;
+            case TANH: {
+                double tanh = Math.tanh(u);
+                double sech2 = 1 - tanh * tanh;
+                chain(s, i, tanh, sech2, -2 * tanh * sech2);
+                break;
+            }
+            case EXP: {
+                double exp = Math.exp(u);
+                chain(s, i, exp, exp, exp);
+                break;
+            }
+            case LN:
+                chain(s, i, Math.log(u), 1 / u, -1 / (u * u));
+                break;
+            case LOG10:
+                chain(s, i, Math.log10(u), 1 / (u * Math.log(10)), -1 / (u * u * Math.log(10)));
+                break;
+            case LOG2:
+                chain(s, i, Math.log(u) / Math.log(2), 1 / (u * Math.log(2)), -1 / (u * u * Math.log(2)));
+                break;
+            case SQRT: {
+                double root = Math.sqrt(u);
+                chain(s, i, root, 0.5 / root, -0.25 / (root * u));
+                break;
+            }
+            case ABS:
+                chain(s, i, Math.abs(u), Math.signum(u), 0);
+                break;
+            default:
+                //Piecewise constant operations
+                set(s, i, ExpressionNode.apply(op, u, 0), 0, 0);
+        }
+    }
+    
+    public ExpressionNode getExpression() {
+        return expression;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+}
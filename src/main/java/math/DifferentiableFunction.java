@@ -0,0 +1,34 @@
+package math;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**Objective that can provide its own derivatives, so solvers do not have to fall back to finite differences*/
+public interface DifferentiableFunction extends DoubleBinaryOperator {
+    double HESSIAN_STEP = 1e-5;
+
+    /**Writes (df/dx; df/dy) at the point into out*/
+    void gradient(double x, double y, Vector2 out);
+
+    /**@return Value at the point, with the gradient written into gradient. Implementations may compute both in one pass*/
+    default double valueAndGradient(double x, double y, Vector2 gradient) {
+        gradient(x, y, gradient);
+        return applyAsDouble(x, y);
+    }
+
+    /**
+     * Writes (d2f/dx2, d2f/dxdy, d2f/dy2) at the point into the first three elements of out.
+     * By default uses central differences of the gradient.
+     */
+    default void hessian(double x, double y, double[] out) {
+        Vector2 plus = new Vector2();
+        Vector2 minus = new Vector2();
+        gradient(x + HESSIAN_STEP, y, plus);
+        gradient(x - HESSIAN_STEP, y, minus);
+        out[0] = (plus.x - minus.x) / (2 * HESSIAN_STEP);
+        double dxy = (plus.y - minus.y) / (2 * HESSIAN_STEP);
+        gradient(x, y + HESSIAN_STEP, plus);
+        gradient(x, y - HESSIAN_STEP, minus);
+        out[1] = (dxy + (plus.x - minus.x) / (2 * HESSIAN_STEP)) / 2;
+        out[2] = (plus.y - minus.y) / (2 * HESSIAN_STEP);
+    }
+}
@@ -0,0 +1,79 @@
+package math;
+
+import java.util.Random;
+
+/**
+ * Differential evolution, DE/rand/1/bin: each member competes with a candidate built from three other random members a, b and c
+ * as a + F (b - c), of which every coordinate is taken with the crossover probability and at least one always, the rest
+ * coming from the member. The candidate replaces the member if it is not worse.
+ */
+public class DifferentialEvolutionSolver extends PopulationSolver {
+    private double differentialWeight = 0.7;
+    private double crossover = 0.9;
+
+    @Override
+    protected void propose(Population population, Random random) {
+        int size = population.size;
+        for (int i = 0; i < size; i++) {
+            int a = other(random, size, i, -1, -1);
+            int b = other(random, size, i, a, -1);
+            int c = other(random, size, i, a, b);
+            double mutantX = population.x[a] + differentialWeight * (population.x[b] - population.x[c]);
+            double mutantY = population.y[a] + differentialWeight * (population.y[b] - population.y[c]);
+            //A coordinate outside the range goes halfway from the member to the violated side
+            if (mutantX < population.lowerX || mutantX > population.upperX) {
+                mutantX = (population.x[i] + population.clampX(mutantX)) / 2;
+            }
+            if (mutantY < population.lowerY || mutantY > population.upperY) {
+                mutantY = (population.y[i] + population.clampY(mutantY)) / 2;
+            }
+            boolean forceX = random.nextBoolean();
+            population.trialX[i] = forceX || random.nextDouble() < crossover ? mutantX : population.x[i];
+            population.trialY[i] = !forceX || random.nextDouble() < crossover ? mutantY : population.y[i];
+        }
+    }
+
+    /**@return Random member other than the excluded ones*/
+    private static int other(Random random, int size, int i, int a, int b) {
+        int j;
+        do {
+            j = random.nextInt(size);
+        } while (j == i || j == a || j == b);
+        return j;
+    }
+
+    @Override
+    protected void accept(Population population) {
+        for (int i = 0; i < population.size; i++) {
+            if (population.trialValue[i] <= population.value[i]) {
+                population.x[i] = population.trialX[i];
+                population.y[i] = population.trialY[i];
+                population.value[i] = population.trialValue[i];
+            }
+        }
+    }
+
+    public double getDifferentialWeight() {
+        return differentialWeight;
+    }
+
+    /**@param differentialWeight Factor F of the difference of two members added to a third one*/
+    public void setDifferentialWeight(double differentialWeight) {
+        if (!(differentialWeight > 0 && differentialWeight <= 2)) {
+            throw new IllegalArgumentException("Differential weight has to be in (0; 2]");
+        }
+        this.differentialWeight = differentialWeight;
+    }
+
+    public double getCrossover() {
+        return crossover;
+    }
+
+    /**@param crossover Probability of a coordinate of the candidate to come from the mutant rather than the member*/
+    public void setCrossover(double crossover) {
+        if (!(crossover >= 0 && crossover <= 1)) {
+            throw new IllegalArgumentException("Crossover probability has to be in [0; 1]");
+        }
+        this.crossover = crossover;
+    }
+}
@@ -0,0 +1,60 @@
+package math;
+
+import math.ExpressionNode.Type;
+
+/**Compiled expression together with its compiled symbolic first and second partial derivatives*/
+public class DifferentiatedFunction implements DifferentiableFunction {
+    private final CompiledFunction function;
+    private final CompiledFunction dx;
+    private final CompiledFunction dy;
+    private final CompiledFunction dxx;
+    private final CompiledFunction dxy;
+    private final CompiledFunction dyy;
+
+    /**@throws IllegalArgumentException If the expression can not be differentiated symbolically*/
+    public DifferentiatedFunction(ExpressionNode expression) {
+        ExpressionNode simplified = expression.simplify();
+        ExpressionNode dx = SymbolicDifferentiator.derivative(simplified, Type.X);
+        ExpressionNode dy = SymbolicDifferentiator.derivative(simplified, Type.Y);
+        this.function = new CompiledFunction(simplified);
+        this.dx = new CompiledFunction(dx);
+        this.dy = new CompiledFunction(dy);
+        this.dxx = new CompiledFunction(SymbolicDifferentiator.derivative(dx, Type.X));
+        this.dxy = new CompiledFunction(SymbolicDifferentiator.derivative(dx, Type.Y));
+        this.dyy = new CompiledFunction(SymbolicDifferentiator.derivative(dy, Type.Y));
+    }
+
+    @Override
+    public double applyAsDouble(double x, double y) {
+        return function.applyAsDouble(x, y);
+    }
+
+    @Override
+    public void gradient(double x, double y, Vector2 out) {
+        out.set(dx.applyAsDouble(x, y), dy.applyAsDouble(x, y));
+    }
+
+    @Override
+    public void hessian(double x, double y, double[] out) {
+        out[0] = dxx.applyAsDouble(x, y);
+        out[1] = dxy.applyAsDouble(x, y);
+        out[2] = dyy.applyAsDouble(x, y);
+    }
+
+    public CompiledFunction getFunction() {
+        return function;
+    }
+
+    public CompiledFunction getDx() {
+        return dx;
+    }
+
+    public CompiledFunction getDy() {
+        return dy;
+    }
+
+    @Override
+    public String toString() {
+        return function.toString();
+    }
+}
@@ -0,0 +1,277 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * DIRECT (dividing rectangles) global search over the x/y range. Every rectangle is evaluated at its centre; each iteration
+ * trisects the potentially optimal ones, those on the lower right convex hull of (size, value), which are the best for some
+ * Lipschitz constant. Rectangles are queued by value in one heap per size, as trisection only produces a few sizes,
+ * so the hull is built from the heads of the heaps. Start points are not used.
+ * Stops on the evaluation budget, the time budget, or once every potentially optimal rectangle is below the tolerance.
+ * If the objective is restricted to a linear box by {@link LinearRegion}, the search covers only its part of the range.
+ */
+public class DirectSolver extends Solver {
+    /**Least improvement over the best value, relative to it, a rectangle has to promise to be divided*/
+    private static final double IMPROVEMENT = 1e-4;
+    /**Trisections of a rectangle after which its centre no longer moves in double precision*/
+    private static final int MAX_LEVEL = 60;
+
+    private long budget = 2000;
+    private long timeBudget = 0;
+    private double lowerX = -1;
+    private double upperX = 1;
+    private double lowerY = -1;
+    private double upperY = 1;
+
+    @Override
+    protected PointDouble solveInternal(SolveContext context, PointDouble... data) {
+        long deadline = timeBudget > 0 ? Math.min(context.getDeadline(), System.nanoTime() + timeBudget * 1_000_000) : context.getDeadline();
+        Search search = new Search(context);
+        search.add(0.5, 0.5, 0, 0, search.evaluate(0.5, 0.5));
+
+        int iteration = 0;
+        String reason = null;
+        while (reason == null) {
+            List<Rectangle> selected = search.selectPotentiallyOptimal();
+            boolean large = false;
+            for (Rectangle rectangle : selected) {
+                large |= search.diameter(rectangle.kx, rectangle.ky) > context.getTolerance() && rectangle.kx + rectangle.ky < MAX_LEVEL;
+            }
+            if (!large) {
+                reason = "tolerance";
+                break;
+            }
+            for (int i = 0; i < selected.size(); i++) {
+                Rectangle rectangle = selected.get(i);
+                if (context.getEvaluations() + 4 > budget) {
+                    reason = "evaluation budget";
+                }
+                else if (System.nanoTime() > deadline) {
+                    reason = "time budget";
+                }
+                if (reason != null || rectangle.kx + rectangle.ky >= MAX_LEVEL) {
+                    search.add(rectangle);
+                }
+                else {
+                    search.divide(rectangle);
+                }
+            }
+            if (context.isTracing()) {
+                context.addToLog("Iteration " + iteration + ": divided " + selected.size() + " of " + search.size + " rectangles; Best: "
+                        + search.point(search.bestU, search.bestV).toString(PRECISION) + "; f = " + search.best);
+            }
+            iteration++;
+        }
+        context.addToLog("Stopped on the " + reason + " after " + context.getEvaluations() + " evaluations");
+        return search.point(search.bestU, search.bestV);
+    }
+
+    @Override
+    protected int getLogBatchSize() {
+        return 1;
+    }
+
+    @Override
+    public boolean isLocal() {
+        return false;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**@param budget Evaluations a solve may use*/
+    public void setBudget(long budget) {
+        if (budget < 1) {
+            throw new IllegalArgumentException("Budget has to be positive");
+        }
+        this.budget = budget;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**@param timeBudget Wall-clock milliseconds after which a solve returns its best point, 0 for no limit*/
+    public void setTimeBudget(long timeBudget) {
+        if (timeBudget < 0) {
+            throw new IllegalArgumentException("Time budget has to be non-negative");
+        }
+        this.timeBudget = timeBudget;
+    }
+
+    public void setBounds(double lowerX, double upperX, double lowerY, double upperY) {
+        if (!(lowerX < upperX) || !(lowerY < upperY)) {
+            throw new IllegalArgumentException("Lower bounds of the range have to be below the upper ones");
+        }
+        this.lowerX = lowerX;
+        this.upperX = upperX;
+        this.lowerY = lowerY;
+        this.upperY = upperY;
+    }
+
+    /**Rectangle of the unit square with its centre at (u; v) and sides 3^-kx and 3^-ky*/
+    private static class Rectangle {
+        private final double u;
+        private final double v;
+        private final int kx;
+        private final int ky;
+        private final double value;
+
+        private Rectangle(double u, double v, int kx, int ky, double value) {
+            this.u = u;
+            this.v = v;
+            this.kx = kx;
+            this.ky = ky;
+            this.value = value;
+        }
+    }
+
+    /**Rectangles of one solve, over the unit square mapped onto the searched part of the range*/
+    private class Search {
+        private final SolveContext context;
+        private final DoubleBinaryOperator f;
+        private final double x0;
+        private final double y0;
+        private final double width;
+        private final double height;
+        //Heap of the rectangles with kx + ky = level, as trisection keeps |kx - ky| <= 1 this is their size
+        private final List<PriorityQueue<Rectangle>> levels = new ArrayList<>();
+        private int size;
+        private double best = Double.POSITIVE_INFINITY;
+        private double bestU = 0.5;
+        private double bestV = 0.5;
+
+        private Search(SolveContext context) {
+            this.context = context;
+            this.f = context.getF();
+            double[] range = LinearRegion.searchRange(context.getObjective(), lowerX, upperX, lowerY, upperY);
+            this.x0 = range[0];
+            this.y0 = range[2];
+            this.width = range[1] - range[0];
+            this.height = range[3] - range[2];
+        }
+
+        private PointDouble point(double u, double v) {
+            return new PointDouble(x0 + u * width, y0 + v * height);
+        }
+
+        private double evaluate(double u, double v) {
+            double value = f.applyAsDouble(x0 + u * width, y0 + v * height);
+            if (Double.isNaN(value)) {
+                value = Double.POSITIVE_INFINITY;
+            }
+            if (value < best) {
+                best = value;
+                bestU = u;
+                bestV = v;
+                context.addPoint(point(u, v));
+            }
+            return value;
+        }
+
+        private double diameter(int kx, int ky) {
+            return Math.hypot(width * Math.pow(3, -kx), height * Math.pow(3, -ky)) / 2;
+        }
+
+        /**@return Half the diagonal of the rectangles of the level in the unit square, by which the hull compares them*/
+        private double normalizedDiameter(int level) {
+            return Math.hypot(Math.pow(3, -(level - level / 2)), Math.pow(3, -(level / 2))) / 2;
+        }
+
+        private void add(double u, double v, int kx, int ky, double value) {
+            add(new Rectangle(u, v, kx, ky, value));
+        }
+
+        private void add(Rectangle rectangle) {
+            int level = rectangle.kx + rectangle.ky;
+            while (levels.size() <= level) {
+                levels.add(new PriorityQueue<>((a, b) -> Double.compare(a.value, b.value)));
+            }
+            levels.get(level).add(rectangle);
+            size++;
+        }
+
+        /**@return Best rectangle of every size on the lower right convex hull of (diameter, value), removed from the heaps*/
+        private List<Rectangle> selectPotentiallyOptimal() {
+            //Sizes by increasing diameter, that is by decreasing level
+            List<Integer> candidates = new ArrayList<>();
+            int start = -1;
+            for (int level = levels.size() - 1; level >= 0; level--) {
+                Rectangle head = levels.get(level).peek();
+                if (head == null) {
+                    continue;
+                }
+                if (start < 0 || head.value <= levels.get(candidates.get(start)).peek().value) {
+                    start = candidates.size();
+                }
+                candidates.add(level);
+            }
+
+            List<Rectangle> selected = new ArrayList<>();
+            int current = start;
+            while (current >= 0) {
+                int level = candidates.get(current);
+                double d = normalizedDiameter(level);
+                double value = levels.get(level).peek().value;
+                //Next hull point: least slope to the larger sizes, the largest of them on ties
+                int next = -1;
+                double slope = Double.POSITIVE_INFINITY;
+                for (int j = current + 1; j < candidates.size(); j++) {
+                    int other = candidates.get(j);
+                    double s = (levels.get(other).peek().value - value) / (normalizedDiameter(other) - d);
+                    if (s <= slope) {
+                        slope = s;
+                        next = j;
+                    }
+                }
+                //The largest rectangle is always divided, the others only if some Lipschitz constant promises enough improvement
+                if (next < 0 || value - slope * d <= best - IMPROVEMENT * Math.abs(best)) {
+                    selected.add(levels.get(level).poll());
+                    size--;
+                }
+                current = next;
+            }
+            return selected;
+        }
+
+        /**Trisects the rectangle along its longer side, or along both sides of a square, the side with the better samples first*/
+        private void divide(Rectangle r) {
+            double du = Math.pow(3, -r.kx) / 3;
+            double dv = Math.pow(3, -r.ky) / 3;
+            if (r.kx < r.ky) {
+                add(r.u - du, r.v, r.kx + 1, r.ky, evaluate(r.u - du, r.v));
+                add(r.u + du, r.v, r.kx + 1, r.ky, evaluate(r.u + du, r.v));
+                add(r.u, r.v, r.kx + 1, r.ky, r.value);
+                return;
+            }
+            if (r.kx > r.ky) {
+                add(r.u, r.v - dv, r.kx, r.ky + 1, evaluate(r.u, r.v - dv));
+                add(r.u, r.v + dv, r.kx, r.ky + 1, evaluate(r.u, r.v + dv));
+                add(r.u, r.v, r.kx, r.ky + 1, r.value);
+                return;
+            }
+            double left = evaluate(r.u - du, r.v);
+            double right = evaluate(r.u + du, r.v);
+            double bottom = evaluate(r.u, r.v - dv);
+            double top = evaluate(r.u, r.v + dv);
+            //The side divided first keeps its samples in the larger rectangles
+            if (Math.min(left, right) <= Math.min(bottom, top)) {
+                add(r.u - du, r.v, r.kx + 1, r.ky, left);
+                add(r.u + du, r.v, r.kx + 1, r.ky, right);
+                add(r.u, r.v - dv, r.kx + 1, r.ky + 1, bottom);
+                add(r.u, r.v + dv, r.kx + 1, r.ky + 1, top);
+            }
+            else {
+                add(r.u, r.v - dv, r.kx, r.ky + 1, bottom);
+                add(r.u, r.v + dv, r.kx, r.ky + 1, top);
+                add(r.u - du, r.v, r.kx + 1, r.ky + 1, left);
+                add(r.u + du, r.v, r.kx + 1, r.ky + 1, right);
+            }
+            add(r.u, r.v, r.kx + 1, r.ky + 1, r.value);
+        }
+    }
+}
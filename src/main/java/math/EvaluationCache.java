@@ -0,0 +1,228 @@
+package math;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Memoizes values and gradients of an objective, keyed on the exact bit patterns of (x, y).
+ * Open addressing over primitive arrays with a bounded probe window; when the window is full an entry is evicted
+ * with the clock (second chance) policy, so the cache never grows past its capacity. The arrays start small and double
+ * while they are half full, so a short solve does not pay for the whole capacity. Not thread-safe.
+ */
+public class EvaluationCache implements DifferentiableFunction {
+    private static final int PROBE_WINDOW = 8;
+    private static final int INITIAL_SIZE = 64;
+    private static final byte USED = 1;
+    private static final byte HAS_VALUE = 2;
+    private static final byte HAS_GRADIENT = 4;
+    private static final byte REFERENCED = 8;
+
+    private final DoubleBinaryOperator f;
+    private final int capacity;
+    private int mask;
+    private long[] keysX;
+    private long[] keysY;
+    private double[] values;
+    private double[] gradientsX;
+    private double[] gradientsY;
+    private byte[] flags;
+    private int used;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**@param capacity Maximum amount of cached points, rounded up to a power of two*/
+    public EvaluationCache(DoubleBinaryOperator f, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity has to be positive");
+        }
+        this.f = f;
+        this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        allocate(Math.min(this.capacity, INITIAL_SIZE));
+    }
+
+    private void allocate(int size) {
+        mask = size - 1;
+        keysX = new long[size];
+        keysY = new long[size];
+        values = new double[size];
+        gradientsX = new double[size];
+        gradientsY = new double[size];
+        flags = new byte[size];
+        used = 0;
+    }
+
+    /**Doubles the arrays and hashes the entries into them again. An entry whose window is already full is dropped*/
+    private void grow() {
+        long[] oldX = keysX;
+        long[] oldY = keysY;
+        double[] oldValues = values;
+        double[] oldGradientsX = gradientsX;
+        double[] oldGradientsY = gradientsY;
+        byte[] oldFlags = flags;
+        allocate(oldFlags.length * 2);
+        for (int i = 0; i < oldFlags.length; i++) {
+            if (oldFlags[i] == 0) {
+                continue;
+            }
+            int home = hash(oldX[i], oldY[i]) & mask;
+            for (int j = 0; j < PROBE_WINDOW; j++) {
+                int slot = (home + j) & mask;
+                if (flags[slot] == 0) {
+                    keysX[slot] = oldX[i];
+                    keysY[slot] = oldY[i];
+                    values[slot] = oldValues[i];
+                    gradientsX[slot] = oldGradientsX[i];
+                    gradientsY[slot] = oldGradientsY[i];
+                    flags[slot] = oldFlags[i];
+                    used++;
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public double applyAsDouble(double x, double y) {
+        int slot = slot(x, y);
+        if ((flags[slot] & HAS_VALUE) != 0) {
+            hits++;
+            return values[slot];
+        }
+        misses++;
+        return evaluate(slot, x, y);
+    }
+
+    /**@return Value at the point, cached or evaluated, without counting a lookup. Serves the lookups a gradient makes*/
+    private double value(double x, double y) {
+        int slot = slot(x, y);
+        return (flags[slot] & HAS_VALUE) != 0 ? values[slot] : evaluate(slot, x, y);
+    }
+
+    private double evaluate(int slot, double x, double y) {
+        double value = f.applyAsDouble(x, y);
+        values[slot] = value;
+        flags[slot] |= HAS_VALUE;
+        return value;
+    }
+
+    @Override
+    public void gradient(double x, double y, Vector2 out) {
+        valueAndGradient(x, y, out);
+    }
+
+    @Override
+    public double valueAndGradient(double x, double y, Vector2 gradient) {
+        int slot = slot(x, y);
+        if ((flags[slot] & HAS_GRADIENT) != 0) {
+            hits++;
+            gradient.set(gradientsX[slot], gradientsY[slot]);
+            return (flags[slot] & HAS_VALUE) != 0 ? values[slot] : value(x, y);
+        }
+        misses++;
+        double value;
+        if (f instanceof DifferentiableFunction) {
+            value = ((DifferentiableFunction) f).valueAndGradient(x, y, gradient);
+        }
+        else {
+            //Finite differences through the cache, so the centre value is shared. The gradient counts as one lookup
+            value = value(x, y);
+            gradient.set((value(x + SolverUtils.EPSILON, y) - value) / SolverUtils.EPSILON, (value(x, y + SolverUtils.EPSILON) - value) / SolverUtils.EPSILON);
+            slot = slot(x, y);
+        }
+        values[slot] = value;
+        gradientsX[slot] = gradient.x;
+        gradientsY[slot] = gradient.y;
+        flags[slot] |= HAS_VALUE | HAS_GRADIENT;
+        return value;
+    }
+
+    @Override
+    public void hessian(double x, double y, double[] out) {
+        if (f instanceof DifferentiableFunction) {
+            ((DifferentiableFunction) f).hessian(x, y, out);
+        }
+        else {
+            DifferentiableFunction.super.hessian(x, y, out);
+        }
+    }
+
+    /**@return Slot holding the point, claiming one (and evicting if needed) if it is not cached yet*/
+    private int slot(double x, double y) {
+        if (used >= flags.length / 2 && flags.length < capacity) {
+            grow();
+        }
+        long bitsX = Double.doubleToRawLongBits(x);
+        long bitsY = Double.doubleToRawLongBits(y);
+        int home = hash(bitsX, bitsY) & mask;
+        for (int i = 0; i < PROBE_WINDOW; i++) {
+            int slot = (home + i) & mask;
+            if (flags[slot] == 0) {
+                used++;
+                return claim(slot, bitsX, bitsY);
+            }
+            if (keysX[slot] == bitsX && keysY[slot] == bitsY) {
+                flags[slot] |= REFERENCED;
+                return slot;
+            }
+        }
+        //Window is full, give every referenced entry a second chance
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < PROBE_WINDOW; i++) {
+                int slot = (home + i) & mask;
+                if ((flags[slot] & REFERENCED) == 0) {
+                    evictions++;
+                    return claim(slot, bitsX, bitsY);
+                }
+                flags[slot] &= ~REFERENCED;
+            }
+        }
+        evictions++;
+        return claim(home, bitsX, bitsY);
+    }
+
+    private int claim(int slot, long bitsX, long bitsY) {
+        keysX[slot] = bitsX;
+        keysY[slot] = bitsY;
+        flags[slot] = USED | REFERENCED;
+        return slot;
+    }
+
+    private static int hash(long x, long y) {
+        long h = x * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(y, 29) * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    public DoubleBinaryOperator getFunction() {
+        return f;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**@return Share of lookups answered from the cache, NaN if there were none*/
+    public double getHitRate() {
+        return (double) hits / (hits + misses);
+    }
+
+    @Override
+    public String toString() {
+        return "hits = " + hits + "; misses = " + misses + "; evictions = " + evictions + "; hit rate = " + getHitRate();
+    }
+}
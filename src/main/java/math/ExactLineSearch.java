@@ -0,0 +1,114 @@
+package math;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Minimizes along the direction: brackets the minimum with doubling steps, then refines the bracket with a 1D solver.
+ * The three bracket values are handed to the 1D solver, so solvers such as {@link BrentSolver} do not evaluate them again.
+ * Works without derivatives and on non-smooth functions.
+ */
+public class ExactLineSearch implements LineSearch {
+    private static final int I_MAX = 32;
+    private final Supplier<Solver1D> lineSolver;
+
+    /**Refines with golden section*/
+    public ExactLineSearch() {
+        this(GoldenRatioSolver::new);
+    }
+
+    /**@param lineSolver Creates the 1D solver used on the bracket*/
+    public ExactLineSearch(Supplier<Solver1D> lineSolver) {
+        if (lineSolver == null) {
+            throw new IllegalArgumentException("Line solver is required");
+        }
+        this.lineSolver = lineSolver;
+    }
+
+    @Override
+    public double search(DoubleBinaryOperator f, Vector2 point, Vector2 direction, SolveContext context) {
+        double axisX = Math.min(Math.max(direction.x, -Double.MAX_VALUE), Double.MAX_VALUE);
+        double axisY = Math.min(Math.max(direction.y, -Double.MAX_VALUE), Double.MAX_VALUE);
+        if (Double.isNaN(axisX) || Double.isNaN(axisY)) {
+            return 0;
+        }
+        double startX = point.x;
+        double startY = point.y;
+
+        int i = 1;
+        double power = 2;
+        double prevX;
+        double prevY;
+        double prevValue;
+        double currX = startX;
+        double currY = startY;
+        double nextX;
+        double nextY;
+        trace(context, currX, currY);
+        double currValue = f.applyAsDouble(currX, currY);
+        double nextValue;
+
+        do {
+            for (int sign = 1; sign >= -1; sign -= 2) {
+                //Forward steps of 2^i, backward steps of 2^(i - 1)
+                double step = sign > 0 ? power : -power / 2;
+                nextX = currX + axisX * step;
+                nextY = currY + axisY * step;
+                trace(context, nextX, nextY);
+                nextValue = f.applyAsDouble(nextX, nextY);
+                if (currValue > nextValue) {
+                    do {
+                        prevX = currX;
+                        prevY = currY;
+                        prevValue = currValue;
+                        currX = nextX;
+                        currY = nextY;
+                        currValue = nextValue;
+                        nextX = currX + sign * axisX * power;
+                        nextY = currY + sign * axisY * power;
+                        i++;
+                        power *= 2;
+                        trace(context, nextX, nextY);
+                        nextValue = f.applyAsDouble(nextX, nextY);
+                    } while (currValue > nextValue);
+                    refine(f, point, context, prevX, prevY, prevValue, currX, currY, currValue, nextX, nextY, nextValue);
+                    return ((point.x - startX) * direction.x + (point.y - startY) * direction.y) / direction.lengthSquared();
+                }
+            }
+            axisX *= 0.5;
+            axisY *= 0.5;
+        } while (Math.sqrt(axisX * axisX + axisY * axisY) > Solver.EPSILON && i < I_MAX);
+        return 0;
+    }
+
+    /**Minimizes over the segment from min to max, which has mid below both ends, and writes the minimum into point*/
+    private void refine(DoubleBinaryOperator f, Vector2 point, SolveContext context,
+                        double minX, double minY, double minValue, double midX, double midY, double midValue, double maxX, double maxY, double maxValue) {
+        double mid = Math.abs(maxX - minX) >= Math.abs(maxY - minY) ? (midX - minX) / (maxX - minX) : (midY - minY) / (maxY - minY);
+        Solver1D solver;
+        if (context != null) {
+            context.lineStart.set(minX, minY);
+            context.lineEnd.set(maxX, maxY);
+            context.lineFunction = f;
+            solver = context.lineSolver(lineSolver);
+        }
+        else {
+            solver = lineSolver.get();
+            solver.setTracing(false);
+            solver.setF(a -> f.applyAsDouble(minX * (1 - a) + maxX * a, minY * (1 - a) + maxY * a));
+        }
+        double a = solver.solve(0, 1, mid, midValue, minValue, maxValue).getX();
+        point.set(maxX * a + minX * (1 - a), maxY * a + minY * (1 - a));
+        trace(context, point.x, point.y);
+    }
+
+    private static void trace(SolveContext context, double x, double y) {
+        if (context != null) {
+            context.addPoint(x, y);
+        }
+    }
+
+    public Supplier<Solver1D> getLineSolver() {
+        return lineSolver;
+    }
+}
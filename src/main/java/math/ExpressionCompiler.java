@@ -0,0 +1,72 @@
+package math;
+
+import org.mariuszgromada.math.mxparser.Function;
+
+import java.util.function.DoubleBinaryOperator;
+
+public abstract class ExpressionCompiler {
+
+    /**
+     * Compiles a two-parameter mXparser function into a stack program
+     * @return Compiled evaluator with exact derivatives, or a wrapper around {@link Function#calculate} if the expression uses unsupported syntax.
+     * The wrapper locks the function, since mXparser keeps evaluation state in it
+     */
+    public static DoubleBinaryOperator compile(Function function) {
+        ExpressionNode expression = tryParse(function);
+        if (expression == null) {
+            return (x, y) -> {
+                synchronized (function) {
+                    return function.calculate(x, y);
+                }
+            };
+        }
+        return compile(expression);
+    }
+
+    /**
+     * @return {@link DifferentiatedFunction} if the expression can be differentiated symbolically,
+     * otherwise a {@link CompiledFunction}, which takes its derivatives by forward-mode automatic differentiation
+     */
+    public static DoubleBinaryOperator compile(ExpressionNode expression) {
+        try {
+            return new DifferentiatedFunction(expression);
+        }
+        catch (IllegalArgumentException e) {
+            return new CompiledFunction(expression.simplify());
+        }
+    }
+
+    public static DoubleBinaryOperator compile(String expression, String xName, String yName) {
+        return compile(ExpressionParser.parse(expression, xName, yName));
+    }
+
+    /**@return Expression tree of the function, null if it can not be parsed*/
+    public static ExpressionNode tryParse(Function function) {
+        if (function == null || function.getParametersNumber() != 2) {
+            return null;
+        }
+        try {
+            return ExpressionParser.parse(function.getFunctionExpressionString(), function.getParameterName(0), function.getParameterName(1));
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**@return Expression tree behind a compiled function, null for any other operator*/
+    public static ExpressionNode expressionOf(DoubleBinaryOperator function) {
+        if (function instanceof DifferentiatedFunction) {
+            return ((DifferentiatedFunction) function).getFunction().getExpression();
+        }
+        if (function instanceof CompiledFunction) {
+            return ((CompiledFunction) function).getExpression();
+        }
+        return null;
+    }
+
+    /**@return Coefficients {a, b, c} of a compiled function that is a x + b y + c, null if it is not affine or not compiled*/
+    public static double[] affine(DoubleBinaryOperator function) {
+        ExpressionNode expression = expressionOf(function);
+        return expression == null ? null : expression.affine();
+    }
+}
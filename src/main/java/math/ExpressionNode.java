@@ -0,0 +1,423 @@
+package math;
+
+/**Node of a parsed two-variable expression tree*/
+public class ExpressionNode {
+    public enum Type {
+        CONSTANT(0), X(0), Y(0),
+        ADD(2), SUBTRACT(2), MULTIPLY(2), DIVIDE(2), POWER(2), NEGATE(1),
+        SIN(1), COS(1), TAN(1), COT(1), ASIN(1), ACOS(1), ATAN(1), SINH(1), COSH(1), TANH(1),
+        EXP(1), LN(1), LOG10(1), LOG2(1), SQRT(1), ABS(1), SIGN(1), FLOOR(1), CEIL(1),
+        MIN(2), MAX(2), IF(3),
+        LESS(2), GREATER(2), LESS_EQUAL(2), GREATER_EQUAL(2), EQUAL(2), NOT_EQUAL(2), AND(2), OR(2), NOT(1);
+
+        private final int arity;
+
+        Type(int arity) {
+            this.arity = arity;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+    }
+
+    private final Type type;
+    private final double value;
+    private final ExpressionNode[] children;
+
+    private ExpressionNode(Type type, double value, ExpressionNode... children) {
+        if (children.length != type.getArity()) {
+            throw new IllegalArgumentException("Operation " + type + " expects " + type.getArity() + " arguments");
+        }
+        this.type = type;
+        this.value = value;
+        this.children = children;
+    }
+
+    public static ExpressionNode constant(double value) {
+        return new ExpressionNode(Type.CONSTANT, value);
+    }
+
+    public static ExpressionNode x() {
+        return new ExpressionNode(Type.X, 0);
+    }
+
+    public static ExpressionNode y() {
+        return new ExpressionNode(Type.Y, 0);
+    }
+
+    public static ExpressionNode of(Type type, ExpressionNode... children) {
+        if (type == Type.CONSTANT) {
+            throw new IllegalArgumentException("Use constant() for constant nodes");
+        }
+        return new ExpressionNode(type, 0, children);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public int getChildCount() {
+        return children.length;
+    }
+
+    public ExpressionNode getChild(int i) {
+        return children[i];
+    }
+
+    public boolean isConstant() {
+        return type == Type.CONSTANT;
+    }
+
+    public boolean isConstant(double value) {
+        return type == Type.CONSTANT && this.value == value;
+    }
+
+    /**@return Whether the tree references the given variable, X or Y*/
+    public boolean dependsOn(Type variable) {
+        if (type == variable) {
+            return true;
+        }
+        for (ExpressionNode child : children) {
+            if (child.dependsOn(variable)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**@return Coefficients {a, b, c} of the tree as a x + b y + c, or null if it is not affine in x and y or its coefficients are not finite*/
+    public double[] affine() {
+        double[] coefficients = affineCoefficients();
+        if (coefficients == null) {
+            return null;
+        }
+        for (double coefficient : coefficients) {
+            if (!Double.isFinite(coefficient)) {
+                return null;
+            }
+        }
+        return coefficients;
+    }
+
+    private double[] affineCoefficients() {
+        if (!dependsOn(Type.X) && !dependsOn(Type.Y)) {
+            return new double[]{0, 0, evaluate(0, 0)};
+        }
+        double[] a;
+        double[] b;
+        switch (type) {
+            case X:
+                return new double[]{1, 0, 0};
+            case Y:
+                return new double[]{0, 1, 0};
+            case NEGATE:
+                a = children[0].affineCoefficients();
+                return a == null ? null : scale(a, -1);
+            case ADD:
+            case SUBTRACT:
+                a = children[0].affineCoefficients();
+                b = children[1].affineCoefficients();
+                if (a == null || b == null) {
+                    return null;
+                }
+                double sign = type == Type.ADD ? 1 : -1;
+                return new double[]{a[0] + sign * b[0], a[1] + sign * b[1], a[2] + sign * b[2]};
+            case MULTIPLY:
+                a = children[0].affineCoefficients();
+                b = children[1].affineCoefficients();
+                if (a == null || b == null) {
+                    return null;
+                }
+                if (a[0] == 0 && a[1] == 0) {
+                    return scale(b, a[2]);
+                }
+                return b[0] == 0 && b[1] == 0 ? scale(a, b[2]) : null;
+            case DIVIDE:
+                a = children[0].affineCoefficients();
+                return a == null || children[1].dependsOn(Type.X) || children[1].dependsOn(Type.Y) ? null : scale(a, 1 / children[1].evaluate(0, 0));
+            case POWER:
+                //u ^ 0 is 1 and u ^ 1 is u, other powers of a variable are not affine
+                if (children[1].dependsOn(Type.X) || children[1].dependsOn(Type.Y)) {
+                    return null;
+                }
+                double exponent = children[1].evaluate(0, 0);
+                if (exponent == 0) {
+                    return new double[]{0, 0, 1};
+                }
+                return exponent == 1 ? children[0].affineCoefficients() : null;
+            default:
+                return null;
+        }
+    }
+
+    private static double[] scale(double[] coefficients, double factor) {
+        return new double[]{coefficients[0] * factor, coefficients[1] * factor, coefficients[2] * factor};
+    }
+
+    /**@return Equivalent tree with constants folded and trivial operations removed*/
+    public ExpressionNode simplify() {
+        if (children.length == 0) {
+            return this;
+        }
+        ExpressionNode[] args = new ExpressionNode[children.length];
+        boolean constant = true;
+        for (int i = 0; i < children.length; i++) {
+            args[i] = children[i].simplify();
+            constant &= args[i].isConstant();
+        }
+        ExpressionNode node = of(type, args);
+        if (constant) {
+            return constant(node.evaluate(0, 0));
+        }
+        ExpressionNode a = args[0];
+        ExpressionNode b = args.length > 1 ? args[1] : null;
+        switch (type) {
+            case ADD:
+                if (a.isConstant(0)) {
+                    return b;
+                }
+                if (b.isConstant(0)) {
+                    return a;
+                }
+                if (b.type == Type.NEGATE) {
+                    return of(Type.SUBTRACT, a, b.children[0]);
+                }
+                break;
+            case SUBTRACT:
+                if (b.isConstant(0)) {
+                    return a;
+                }
+                if (a.isConstant(0)) {
+                    return of(Type.NEGATE, b).simplify();
+                }
+                if (b.type == Type.NEGATE) {
+                    return of(Type.ADD, a, b.children[0]);
+                }
+                break;
+            case MULTIPLY:
+                if (a.isConstant(0) || b.isConstant(0)) {
+                    return constant(0);
+                }
+                if (a.isConstant(1)) {
+                    return b;
+                }
+                if (b.isConstant(1)) {
+                    return a;
+                }
+                if (a.isConstant(-1)) {
+                    return of(Type.NEGATE, b).simplify();
+                }
+                if (b.isConstant(-1)) {
+                    return of(Type.NEGATE, a).simplify();
+                }
+                //Keep constants on the left so that nested products fold
+                if (b.isConstant()) {
+                    return of(Type.MULTIPLY, b, a).simplify();
+                }
+                if (a.isConstant() && b.type == Type.MULTIPLY && b.children[0].isConstant()) {
+                    return of(Type.MULTIPLY, constant(a.value * b.children[0].value), b.children[1]).simplify();
+                }
+                break;
+            case DIVIDE:
+                if (a.isConstant(0)) {
+                    return constant(0);
+                }
+                if (b.isConstant(1)) {
+                    return a;
+                }
+                break;
+            case POWER:
+                if (b.isConstant(0)) {
+                    return constant(1);
+                }
+                if (b.isConstant(1)) {
+                    return a;
+                }
+                break;
+            case NEGATE:
+                if (a.type == Type.NEGATE) {
+                    return a.children[0];
+                }
+                break;
+            default:
+                break;
+        }
+        return node;
+    }
+
+    /**@return Evaluates the tree directly, without compilation*/
+    public double evaluate(double x, double y) {
+        switch (type) {
+            case CONSTANT:
+                return value;
+            case X:
+                return x;
+            case Y:
+                return y;
+            case IF: {
+                double condition = children[0].evaluate(x, y);
+                if (Double.isNaN(condition)) {
+                    return Double.NaN;
+                }
+                return condition != 0 ? children[1].evaluate(x, y) : children[2].evaluate(x, y);
+            }
+            default:
+                double a = children.length > 0 ? children[0].evaluate(x, y) : 0;
+                double b = children.length > 1 ? children[1].evaluate(x, y) : 0;
+                return apply(type, a, b);
+        }
+    }
+
+    /**Applies a unary or binary operation to already evaluated arguments*/
+    public static double apply(Type type, double a, double b) {
+        switch (type) {
+            case ADD:
+                return a + b;
+            case SUBTRACT:
+                return a - b;
+            case MULTIPLY:
+                return a * b;
+            case DIVIDE:
+                return b == 0 ? Double.NaN : a / b;
+            case POWER:
+                return power(a, b);
+            case NEGATE:
+                return -a;
+            case SIN:
+                return Math.sin(a);
+            case COS:
+                return Math.cos(a);
+            case TAN:
+                return Math.tan(a);
+            case COT:
+                return cot(a);
+            case ASIN:
+                return Math.asin(a);
+            case ACOS:
+                return Math.acos(a);
+            case ATAN:
+                return Math.atan(a);
+            case SINH:
+                return Math.sinh(a);
+            case COSH:
+                return Math.cosh(a);
+            case TANH:
+                return Math.tanh(a);
+            case EXP:
+                return Math.exp(a);
+            case LN:
+                return Math.log(a);
+            case LOG10:
+                return Math.log10(a);
+            case LOG2:
+                return Math.log(a) / Math.log(2);
+            case SQRT:
+                return Math.sqrt(a);
+            case ABS:
+                return Math.abs(a);
+            case SIGN:
+                return Math.signum(a);
+            case FLOOR:
+                return Math.floor(a);
+            case CEIL:
+                return Math.ceil(a);
+            case MIN:
+                return Math.min(a, b);
+            case MAX:
+                return Math.max(a, b);
+            case LESS:
+                return Double.isNaN(a) || Double.isNaN(b) ? Double.NaN : a < b - epsilon(a, b) ? 1 : 0;
+            case GREATER:
+                return Double.isNaN(a) || Double.isNaN(b) ? Double.NaN : a > b + epsilon(a, b) ? 1 : 0;
+            case LESS_EQUAL:
+                return Double.isNaN(a) || Double.isNaN(b) ? Double.NaN : a <= b + epsilon(a, b) ? 1 : 0;
+            case GREATER_EQUAL:
+                return Double.isNaN(a) || Double.isNaN(b) ? Double.NaN : a >= b - epsilon(a, b) ? 1 : 0;
+            case EQUAL:
+                return Double.isNaN(a) || Double.isNaN(b) ? Double.NaN : Math.abs(a - b) <= epsilon(a, b) ? 1 : 0;
+            case NOT_EQUAL:
+                return Double.isNaN(a) || Double.isNaN(b) ? Double.NaN : Math.abs(a - b) > epsilon(a, b) ? 1 : 0;
+            case AND:
+                //Three-valued, an undefined operand decides nothing
+                return a == 0 || b == 0 ? 0 : Double.isNaN(a) || Double.isNaN(b) ? Double.NaN : 1;
+            case OR:
+                return !Double.isNaN(a) && a != 0 || !Double.isNaN(b) && b != 0 ? 1 : Double.isNaN(a) || Double.isNaN(b) ? Double.NaN : 0;
+            case NOT:
+                return Double.isNaN(a) ? Double.NaN : a == 0 ? 1 : 0;
+            default:
+                throw new IllegalArgumentException("Operation " + type + " can not be applied directly");
+        }
+    }
+
+    /**
+     * @return a ^ b as mXparser takes it: a negative base with an exponent of magnitude below 1 whose reciprocal is an odd integer
+     * has the real odd root, so x ^ (1/3) is -2 at -8. Other non-integer powers of negative bases are NaN
+     */
+    public static double power(double a, double b) {
+        if (a >= 0 || oddRoot(b) == 0) {
+            return Math.pow(a, b);
+        }
+        double n = 1 / Math.abs(b);
+        return -Math.pow(-a, b > 0 ? 1 / n : -1 / n);
+    }
+
+    /**@return The odd integer n if the exponent is 1/n or -1/n to the tolerance mXparser uses, 0 otherwise*/
+    public static int oddRoot(double exponent) {
+        double abs = Math.abs(exponent);
+        if (!(abs > 0 && abs < 1)) {
+            return 0;
+        }
+        double n = 1 / abs;
+        double rounded = Math.round(n);
+        return Math.abs(n - rounded) <= 1e-14 && rounded % 2 == 1 ? (int) rounded : 0;
+    }
+
+    /**@return Cotangent, NaN where the tangent is exactly 0 as in mXparser*/
+    public static double cot(double a) {
+        double tan = Math.tan(a);
+        return tan == 0 ? Double.NaN : 1 / tan;
+    }
+
+    /**@return Tolerance of the comparisons of mXparser, none against an infinity*/
+    private static double epsilon(double a, double b) {
+        return Double.isInfinite(a) || Double.isInfinite(b) ? 0 : Math.max(1e-14, Math.ulp(b));
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case CONSTANT:
+                return Double.toString(value);
+            case X:
+                return "x";
+            case Y:
+                return "y";
+            case ADD:
+                return "(" + children[0] + " + " + children[1] + ")";
+            case SUBTRACT:
+                return "(" + children[0] + " - " + children[1] + ")";
+            case MULTIPLY:
+                return "(" + children[0] + " * " + children[1] + ")";
+            case DIVIDE:
+                return "(" + children[0] + " / " + children[1] + ")";
+            case POWER:
+                return "(" + children[0] + " ^ " + children[1] + ")";
+            case NEGATE:
+                return "(-" + children[0] + ")";
+            default:
+                StringBuilder string = new StringBuilder(type.name().toLowerCase()).append("(");
+                for (int i = 0; i < children.length; i++) {
+                    if (i > 0) {
+                        string.append(", ");
+                    }
+                    string.append(children[i]);
+                }
+                return string.append(")").toString();
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive descent parser for the subset of the mXparser syntax used by objective, bound and constraint functions.
+ * Throws {@link IllegalArgumentException} on anything it does not understand, so the caller can fall back to mXparser.
+ */
+public class ExpressionParser {
+    private final String text;
+    private final String xName;
+    private final String yName;
+    private int pos;
+
+    public ExpressionParser(String text, String xName, String yName) {
+        this.text = text;
+        this.xName = xName;
+        this.yName = yName;
+    }
+
+    public static ExpressionNode parse(String text, String xName, String yName) {
+        return new ExpressionParser(text, xName, yName).parse();
+    }
+
+    public ExpressionNode parse() {
+        pos = 0;
+        ExpressionNode node = parseOr();
+        skipSpaces();
+        if (pos < text.length()) {
+            throw error("Unexpected symbol '" + text.charAt(pos) + "'");
+        }
+        return node;
+    }
+
+    private ExpressionNode parseOr() {
+        ExpressionNode node = parseAnd();
+        while (true) {
+            if (accept("||") || accept("|")) {
+                node = ExpressionNode.of(ExpressionNode.Type.OR, node, parseAnd());
+            }
+            else {
+                return node;
+            }
+        }
+    }
+
+    private ExpressionNode parseAnd() {
+        ExpressionNode node = parseComparison();
+        while (true) {
+            if (accept("&&") || accept("&")) {
+                node = ExpressionNode.of(ExpressionNode.Type.AND, node, parseComparison());
+            }
+            else {
+                return node;
+            }
+        }
+    }
+
+    private ExpressionNode parseComparison() {
+        ExpressionNode node = parseAdditive();
+        while (true) {
+            ExpressionNode.Type type;
+            if (accept("<=")) {
+                type = ExpressionNode.Type.LESS_EQUAL;
+            }
+            else if (accept(">=")) {
+                type = ExpressionNode.Type.GREATER_EQUAL;
+            }
+            else if (accept("<>") || accept("~=") || accept("!=")) {
+                type = ExpressionNode.Type.NOT_EQUAL;
+            }
+            else if (accept("==") || accept("=")) {
+                type = ExpressionNode.Type.EQUAL;
+            }
+            else if (accept("<")) {
+                type = ExpressionNode.Type.LESS;
+            }
+            else if (accept(">")) {
+                type = ExpressionNode.Type.GREATER;
+            }
+            else {
+                return node;
+            }
+            node = ExpressionNode.of(type, node, parseAdditive());
+        }
+    }
+
+    private ExpressionNode parseAdditive() {
+        ExpressionNode node = parseTerm();
+        while (true) {
+            if (accept("+")) {
+                rejectSign();
+                node = ExpressionNode.of(ExpressionNode.Type.ADD, node, parseTerm());
+            }
+            else if (accept("-")) {
+                rejectSign();
+                node = ExpressionNode.of(ExpressionNode.Type.SUBTRACT, node, parseTerm());
+            }
+            else {
+                return node;
+            }
+        }
+    }
+
+    private ExpressionNode parseTerm() {
+        ExpressionNode node = parseUnary();
+        while (true) {
+            if (accept("*")) {
+                node = ExpressionNode.of(ExpressionNode.Type.MULTIPLY, node, parseUnary());
+            }
+            else if (accept("/")) {
+                node = ExpressionNode.of(ExpressionNode.Type.DIVIDE, node, parseUnary());
+            }
+            else {
+                return node;
+            }
+        }
+    }
+
+    private ExpressionNode parseUnary() {
+        if (accept("-")) {
+            rejectSign();
+            return ExpressionNode.of(ExpressionNode.Type.NEGATE, parseUnary());
+        }
+        if (accept("+")) {
+            rejectSign();
+            return parseUnary();
+        }
+        if (peek("~") && !peek("~=")) {
+            accept("~");
+            if (peek("~")) {
+                throw error("Negation can not follow a negation");
+            }
+            return ExpressionNode.of(ExpressionNode.Type.NOT, parseUnary());
+        }
+        return parsePower();
+    }
+
+    /**mXparser rejects a sign or a negation right after a sign, as in x - -y or --x*/
+    private void rejectSign() {
+        if (peek("+") || peek("-") || peek("~") && !peek("~=")) {
+            throw error("Sign can not follow a sign");
+        }
+    }
+
+    private ExpressionNode parsePower() {
+        ExpressionNode node = parsePrimary();
+        if (accept("^")) {
+            //Right associative, exponent may carry its own sign
+            return ExpressionNode.of(ExpressionNode.Type.POWER, node, parseUnary());
+        }
+        return node;
+    }
+
+    private ExpressionNode parsePrimary() {
+        skipSpaces();
+        if (pos >= text.length()) {
+            throw error("Unexpected end of expression");
+        }
+        char c = text.charAt(pos);
+        if (accept("(")) {
+            ExpressionNode node = parseOr();
+            expect(")");
+            return node;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            return ExpressionNode.constant(parseNumber());
+        }
+        if (Character.isLetter(c) || c == '_') {
+            String name = parseIdentifier();
+            if (accept("(")) {
+                List<ExpressionNode> args = new ArrayList<>();
+                if (!accept(")")) {
+                    do {
+                        args.add(parseOr());
+                    } while (accept(","));
+                    expect(")");
+                }
+                return function(name, args);
+            }
+            if (name.equals(xName)) {
+                return ExpressionNode.x();
+            }
+            if (name.equals(yName)) {
+                return ExpressionNode.y();
+            }
+            switch (name) {
+                case "pi":
+                    return ExpressionNode.constant(Math.PI);
+                case "e":
+                    return ExpressionNode.constant(Math.E);
+                default:
+                    throw error("Unknown identifier '" + name + "'");
+            }
+        }
+        throw error("Unexpected symbol '" + c + "'");
+    }
+
+    private ExpressionNode function(String name, List<ExpressionNode> args) {
+        ExpressionNode.Type type;
+        switch (name) {
+            case "min":
+            case "max":
+                if (args.isEmpty()) {
+                    throw error("Function " + name + " expects arguments");
+                }
+                ExpressionNode node = args.get(0);
+                for (int i = 1; i < args.size(); i++) {
+                    node = ExpressionNode.of(name.equals("min") ? ExpressionNode.Type.MIN : ExpressionNode.Type.MAX, node, args.get(i));
+                }
+                return node;
+            case "log":
+                //mXparser log(a, b) is the logarithm of b with base a
+                checkArgs(name, args, 2);
+                return ExpressionNode.of(ExpressionNode.Type.DIVIDE, ExpressionNode.of(ExpressionNode.Type.LN, args.get(1)), ExpressionNode.of(ExpressionNode.Type.LN, args.get(0)));
+            case "if":
+                type = ExpressionNode.Type.IF;
+                break;
+            case "sin":
+                type = ExpressionNode.Type.SIN;
+                break;
+            case "cos":
+                type = ExpressionNode.Type.COS;
+                break;
+            case "tan":
+            case "tg":
+                type = ExpressionNode.Type.TAN;
+                break;
+            case "ctan":
+            case "ctg":
+            case "cot":
+                type = ExpressionNode.Type.COT;
+                break;
+            case "asin":
+            case "arcsin":
+                type = ExpressionNode.Type.ASIN;
+                break;
+            case "acos":
+            case "arccos":
+                type = ExpressionNode.Type.ACOS;
+                break;
+            case "atan":
+            case "arctan":
+            case "arctg":
+                type = ExpressionNode.Type.ATAN;
+                break;
+            case "sinh":
+                type = ExpressionNode.Type.SINH;
+                break;
+            case "cosh":
+                type = ExpressionNode.Type.COSH;
+                break;
+            case "tanh":
+            case "tgh":
+                type = ExpressionNode.Type.TANH;
+                break;
+            case "exp":
+                type = ExpressionNode.Type.EXP;
+                break;
+            case "ln":
+                type = ExpressionNode.Type.LN;
+                break;
+            case "log10":
+                type = ExpressionNode.Type.LOG10;
+                break;
+            case "log2":
+                type = ExpressionNode.Type.LOG2;
+                break;
+            case "sqrt":
+                type = ExpressionNode.Type.SQRT;
+                break;
+            case "abs":
+                type = ExpressionNode.Type.ABS;
+                break;
+            case "sgn":
+                type = ExpressionNode.Type.SIGN;
+                break;
+            case "floor":
+                type = ExpressionNode.Type.FLOOR;
+                break;
+            case "ceil":
+                type = ExpressionNode.Type.CEIL;
+                break;
+            default:
+                throw error("Unsupported function '" + name + "'");
+        }
+        checkArgs(name, args, type.getArity());
+        return ExpressionNode.of(type, args.toArray(new ExpressionNode[0]));
+    }
+
+    private void checkArgs(String name, List<ExpressionNode> args, int count) {
+        if (args.size() != count) {
+            throw error("Function " + name + " expects " + count + " arguments");
+        }
+    }
+
+    private double parseNumber() {
+        int start = pos;
+        while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+            pos++;
+        }
+        //Like mXparser, a decimal point has to be followed by a digit
+        if (text.charAt(pos - 1) == '.') {
+            throw error("Invalid number '" + text.substring(start, pos) + "'");
+        }
+        //Exponent part, only when actually followed by digits so that "2e" stays a product with the constant
+        if (pos < text.length() && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+            int exp = pos + 1;
+            if (exp < text.length() && (text.charAt(exp) == '+' || text.charAt(exp) == '-')) {
+                exp++;
+            }
+            if (exp < text.length() && Character.isDigit(text.charAt(exp))) {
+                pos = exp;
+                while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                    pos++;
+                }
+            }
+        }
+        if (pos < text.length() && (Character.isLetter(text.charAt(pos)) || text.charAt(pos) == '_')) {
+            throw error("Implied multiplication is not supported");
+        }
+        try {
+            return Double.parseDouble(text.substring(start, pos));
+        }
+        catch (NumberFormatException e) {
+            throw error("Invalid number '" + text.substring(start, pos) + "'");
+        }
+    }
+
+    private String parseIdentifier() {
+        int start = pos;
+        while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+            pos++;
+        }
+        return text.substring(start, pos);
+    }
+
+    private void skipSpaces() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean peek(String token) {
+        skipSpaces();
+        return text.startsWith(token, pos);
+    }
+
+    private boolean accept(String token) {
+        if (peek(token)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos + " in \"" + text + "\"");
+    }
+}
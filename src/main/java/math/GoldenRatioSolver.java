@@ -1,13 +1,13 @@
 package math;
 
-import java.util.function.Function;
+import java.util.function.DoubleUnaryOperator;
 
 public class GoldenRatioSolver extends Solver1D {
     private static final Double RATIO = (3 - Math.sqrt(5)) / 2;
     
     @Override
     public PointDouble solveInternal(double lower, double upper) {
-        Function<Double, Double> f = getF();
+        DoubleUnaryOperator f = getF();
         double a = lower;
         double b = upper;
         double x1;
@@ -21,18 +21,20 @@ public class GoldenRatioSolver extends Solver1D {
         //First iteration
         x1 = a + RATIO * (b - a);
         x2 = b - RATIO * (b - a);
-        y1 = f.apply(x1);
-        y2 = f.apply(x2);
+        y1 = f.applyAsDouble(x1);
+        y2 = f.applyAsDouble(x2);
     
-        addToLog("0:");
-        addToLog("a = " + a);
-        addToLog("b = " + b);
-        addToLog("x1 = " + x1);
-        addToLog("x2 = " + x2);
-        addToLog("y1 = " + y1);
-        addToLog("y2 = " + y2);
-        addPoint(new PointDouble(x1, y1));
-        addPoint(new PointDouble(x2, y2));
+        if (isTracing()) {
+            addToLog("0:");
+            addToLog("a = " + a);
+            addToLog("b = " + b);
+            addToLog("x1 = " + x1);
+            addToLog("x2 = " + x2);
+            addToLog("y1 = " + y1);
+            addToLog("y2 = " + y2);
+            addPoint(new PointDouble(x1, y1));
+            addPoint(new PointDouble(x2, y2));
+        }
     
         if (y1 > y2) {
             a = x1;
@@ -50,22 +52,24 @@ public class GoldenRatioSolver extends Solver1D {
         for (int i = 1; i < lim ; i++) {
             if (upperCalculated) {
                 x1 = a + RATIO * (b - a);
-                y1 = f.apply(x1);
+                y1 = f.applyAsDouble(x1);
             }
             else {
                 x2 = b - RATIO * (b - a);
-                y2 = f.apply(x2);
+                y2 = f.applyAsDouble(x2);
             }
             
-            addToLog(i + ":");
-            addToLog("a = " + a);
-            addToLog("b = " + b);
-            addToLog("x1 = " + x1);
-            addToLog("x2 = " + x2);
-            addToLog("y1 = " + y1);
-            addToLog("y2 = " + y2);
-            addPoint(new PointDouble(x1, y1));
-            addPoint(new PointDouble(x2, y2));
+            if (isTracing()) {
+                addToLog(i + ":");
+                addToLog("a = " + a);
+                addToLog("b = " + b);
+                addToLog("x1 = " + x1);
+                addToLog("x2 = " + x2);
+                addToLog("y1 = " + y1);
+                addToLog("y2 = " + y2);
+                addPoint(new PointDouble(x1, y1));
+                addPoint(new PointDouble(x2, y2));
+            }
     
             if (y1 > y2) {
                 a = x1;
@@ -81,7 +85,7 @@ public class GoldenRatioSolver extends Solver1D {
             }
         }
     
-        return new PointDouble((b + a) / 2, f.apply((b + a) / 2));
+        return new PointDouble((b + a) / 2, f.applyAsDouble((b + a) / 2));
     }
     
     @Override
@@ -5,32 +5,36 @@ public class GradientSolver extends Solver {
     private double DESC_RATE = 1;
     
     @Override
-    protected PointDouble solveInternal(PointDouble... data) {
+    protected PointDouble solveInternal(SolveContext context, PointDouble... data) {
         if (data.length < 1) {
             throw new IllegalArgumentException("No parameters passed to solver");
         }
     
-        PointDouble curr = data[0];
-        PointDouble prev = curr;
+        Vector2 curr = new Vector2(data[0]);
+        Vector2 prev = new Vector2(curr);
+        Vector2 gradient = new Vector2();
         int i = 0;
-        PointDouble gradient = gradient(curr);
         do {
-            prev = curr;
-            gradient = gradient(prev);
-            curr = prev.add(gradient.scale(-DESC_RATE));
+            prev.set(curr);
+            gradient(context, prev, gradient);
+            curr.addScaled(gradient, -DESC_RATE);
             
-            addLine(prev, curr);
-            addPoint(prev);
-            addPoint(curr);
-            addToLog(i + ") Point = " + prev.toString(PRECISION) + "; End = " + curr.toString(PRECISION) + "; Gradient = " + gradient.toString(PRECISION));
+            context.addLine(prev, curr);
+            context.addPoint(prev);
+            context.addPoint(curr);
+            if (context.isTracing()) {
+                context.addToLog(i + ") Point = " + prev.toString(PRECISION) + "; End = " + curr.toString(PRECISION) + "; Gradient = " + gradient.toString(PRECISION));
+            }
     
             i++;
-        } while (i < I_MAX && curr.add(prev.scale(-1)).length() > EPSILON);
-        addLine(prev, curr);
-        addPoint(prev);
-        addPoint(curr);
-        addToLog(i + ") Point = " + prev.toString(PRECISION) + "; End = " + curr.toString(PRECISION) + "; Gradient = " + gradient.toString(PRECISION));
-        return curr;
+        } while (i < I_MAX && curr.distance(prev) > context.getTolerance());
+        context.addLine(prev, curr);
+        context.addPoint(prev);
+        context.addPoint(curr);
+        if (context.isTracing()) {
+            context.addToLog(i + ") Point = " + prev.toString(PRECISION) + "; End = " + curr.toString(PRECISION) + "; Gradient = " + gradient.toString(PRECISION));
+        }
+        return curr.toPoint();
     }
     
     @Override
@@ -0,0 +1,431 @@
+package math;
+
+import math.ExpressionNode.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Expression tree evaluated in interval arithmetic: over a box of x and y it gives an interval holding every value the expression takes there.
+ * Each operation rounds its ends outward by an ulp, which covers the rounding of the operation and of the library functions,
+ * so the enclosure is rigorous. Points where the expression is undefined are left out, and an interval with NaN ends
+ * means it is undefined on the whole box. Like {@link CompiledFunction} it runs a postfix program over a stack of its thread.
+ */
+public class IntervalFunction {
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private final ExpressionNode expression;
+    private final Type[] ops;
+    private final double[] constants;
+    private final ThreadLocal<double[]> stack;
+
+    public IntervalFunction(ExpressionNode expression) {
+        this.expression = expression.simplify();
+        List<Type> ops = new ArrayList<>();
+        List<Double> constants = new ArrayList<>();
+        int depth = emit(this.expression, ops, constants, 0);
+        this.ops = ops.toArray(new Type[0]);
+        this.constants = new double[constants.size()];
+        for (int i = 0; i < this.constants.length; i++) {
+            this.constants[i] = constants.get(i);
+        }
+        this.stack = ThreadLocal.withInitial(() -> new double[2 * depth]);
+    }
+
+    private static int emit(ExpressionNode node, List<Type> ops, List<Double> constants, int depth) {
+        int max = depth + 1;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            max = Math.max(max, emit(node.getChild(i), ops, constants, depth + i));
+        }
+        if (node.isConstant()) {
+            constants.add(node.getValue());
+        }
+        ops.add(node.getType());
+        return max;
+    }
+
+    /**Writes the enclosure of the values over [xLo, xHi] x [yLo, yHi] into out[0] and out[1]*/
+    public void evaluate(double xLo, double xHi, double yLo, double yHi, double[] out) {
+        double[] s = stack.get();
+        int top = -2;
+        int constant = 0;
+        for (Type op : ops) {
+            switch (op) {
+                case CONSTANT:
+                    top += 2;
+                    s[top] = constants[constant];
+                    s[top + 1] = constants[constant++];
+                    break;
+                case X:
+                    top += 2;
+                    s[top] = xLo;
+                    s[top + 1] = xHi;
+                    break;
+                case Y:
+                    top += 2;
+                    s[top] = yLo;
+                    s[top + 1] = yHi;
+                    break;
+                case IF: {
+                    top -= 4;
+                    double a = s[top];
+                    double b = s[top + 1];
+                    if (isEmpty(a, b)) {
+                        break;
+                    }
+                    if (a > 0 || b < 0) {
+                        s[top] = s[top + 2];
+                        s[top + 1] = s[top + 3];
+                    }
+                    else if (a == 0 && b == 0) {
+                        s[top] = s[top + 4];
+                        s[top + 1] = s[top + 5];
+                    }
+                    else {
+                        hull(s, top, s[top + 2], s[top + 3], s[top + 4], s[top + 5]);
+                    }
+                    break;
+                }
+                default:
+                    if (op.getArity() == 2) {
+                        top -= 2;
+                        if (isEmpty(s[top], s[top + 1]) || isEmpty(s[top + 2], s[top + 3])) {
+                            set(s, top, Double.NaN, Double.NaN);
+                        }
+                        else {
+                            binary(op, s, top, s[top], s[top + 1], s[top + 2], s[top + 3]);
+                        }
+                    }
+                    else if (!isEmpty(s[top], s[top + 1])) {
+                        unary(op, s, top, s[top], s[top + 1]);
+                    }
+            }
+        }
+        out[0] = s[0];
+        out[1] = s[1];
+    }
+
+    private static boolean isEmpty(double lo, double hi) {
+        return Double.isNaN(lo) || Double.isNaN(hi);
+    }
+
+    /**Stores [lo, hi] as is, for exact results*/
+    private static void set(double[] s, int i, double lo, double hi) {
+        s[i] = lo;
+        s[i + 1] = hi;
+    }
+
+    /**Stores [lo, hi] rounded outward. A NaN end of a non-empty result stands for an unbounded one*/
+    private static void round(double[] s, int i, double lo, double hi) {
+        s[i] = Double.isNaN(lo) ? Double.NEGATIVE_INFINITY : Math.nextDown(lo);
+        s[i + 1] = Double.isNaN(hi) ? Double.POSITIVE_INFINITY : Math.nextUp(hi);
+    }
+
+    /**Stores the hull of two intervals, skipping an empty one*/
+    private static void hull(double[] s, int i, double a, double b, double c, double d) {
+        if (isEmpty(a, b)) {
+            set(s, i, c, d);
+        }
+        else if (isEmpty(c, d)) {
+            set(s, i, a, b);
+        }
+        else {
+            set(s, i, Math.min(a, c), Math.max(b, d));
+        }
+    }
+
+    private static double multiply(double a, double b) {
+        return a == 0 || b == 0 ? 0 : a * b;
+    }
+
+    private static void multiply(double[] s, int i, double a, double b, double c, double d) {
+        double p1 = multiply(a, c);
+        double p2 = multiply(a, d);
+        double p3 = multiply(b, c);
+        double p4 = multiply(b, d);
+        round(s, i, Math.min(Math.min(p1, p2), Math.min(p3, p4)), Math.max(Math.max(p1, p2), Math.max(p3, p4)));
+    }
+
+    private static void divide(double[] s, int i, double a, double b, double c, double d) {
+        if (c == 0 && d == 0) {
+            set(s, i, Double.NaN, Double.NaN);
+        }
+        else if (c < 0 && d > 0) {
+            if (a == 0 && b == 0) {
+                set(s, i, 0, 0);
+            }
+            else {
+                set(s, i, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            }
+        }
+        else {
+            //Reciprocal of the divisor, rounded outward before the product
+            double lo = d == 0 ? Double.NEGATIVE_INFINITY : Math.nextDown(1 / d);
+            double hi = c == 0 ? Double.POSITIVE_INFINITY : Math.nextUp(1 / c);
+            multiply(s, i, a, b, lo, hi);
+        }
+    }
+
+    private static void binary(Type op, double[] s, int i, double a, double b, double c, double d) {
+        switch (op) {
+            case ADD:
+                round(s, i, a + c, b + d);
+                break;
+            case SUBTRACT:
+                round(s, i, a - d, b - c);
+                break;
+            case MULTIPLY:
+                multiply(s, i, a, b, c, d);
+                break;
+            case DIVIDE:
+                divide(s, i, a, b, c, d);
+                break;
+            case POWER:
+                power(s, i, a, b, c, d);
+                break;
+            case MIN:
+                set(s, i, Math.min(a, c), Math.min(b, d));
+                break;
+            case MAX:
+                set(s, i, Math.max(a, c), Math.max(b, d));
+                break;
+            case LESS:
+                truth(s, i, b < c, a >= d);
+                break;
+            case GREATER:
+                truth(s, i, a > d, b <= c);
+                break;
+            case LESS_EQUAL:
+                truth(s, i, b <= c, a > d);
+                break;
+            case GREATER_EQUAL:
+                truth(s, i, a >= d, b < c);
+                break;
+            case EQUAL:
+                truth(s, i, a == b && c == d && a == c, b < c || d < a);
+                break;
+            case NOT_EQUAL:
+                truth(s, i, b < c || d < a, a == b && c == d && a == c);
+                break;
+            case AND:
+                truth(s, i, isTrue(a, b) && isTrue(c, d), isFalse(a, b) || isFalse(c, d));
+                break;
+            case OR:
+                truth(s, i, isTrue(a, b) || isTrue(c, d), isFalse(a, b) && isFalse(c, d));
+                break;
+            default:
+                throw new IllegalArgumentException("Operation " + op + " is not binary");
+        }
+    }
+
+    private static boolean isTrue(double lo, double hi) {
+        return lo > 0 || hi < 0;
+    }
+
+    private static boolean isFalse(double lo, double hi) {
+        return lo == 0 && hi == 0;
+    }
+
+    /**Stores 1 if the comparison holds on the whole box, 0 if it fails on the whole box, [0, 1] otherwise*/
+    private static void truth(double[] s, int i, boolean always, boolean never) {
+        set(s, i, always ? 1 : 0, never ? 0 : 1);
+    }
+
+    private static void power(double[] s, int i, double a, double b, double c, double d) {
+        if (c == d && c == Math.rint(c) && Math.abs(c) <= 1 << 30) {
+            int n = (int) c;
+            if (n == 0) {
+                set(s, i, 1, 1);
+                return;
+            }
+            double lo;
+            double hi;
+            int m = Math.abs(n);
+            if (a >= 0 || m % 2 == 1) {
+                lo = Math.pow(a, m);
+                hi = Math.pow(b, m);
+            }
+            else if (b <= 0) {
+                lo = Math.pow(b, m);
+                hi = Math.pow(a, m);
+            }
+            else {
+                lo = 0;
+                hi = Math.max(Math.pow(a, m), Math.pow(b, m));
+            }
+            if (n > 0) {
+                round(s, i, lo, hi);
+            }
+            else {
+                divide(s, i, 1, 1, lo == 0 ? 0 : Math.nextDown(lo), Math.nextUp(hi));
+            }
+            return;
+        }
+        if (a < 0 && c == d && ExpressionNode.oddRoot(c) != 0) {
+            //Odd roots of negative bases are real and increasing, their reciprocals decreasing apart from the pole at 0
+            double lo = ExpressionNode.power(a, Math.abs(c));
+            double hi = ExpressionNode.power(b, Math.abs(c));
+            if (c > 0) {
+                round(s, i, lo, hi);
+            }
+            else {
+                divide(s, i, 1, 1, lo == 0 ? 0 : Math.nextDown(lo), hi == 0 ? 0 : Math.nextUp(hi));
+            }
+            return;
+        }
+        if (a < 0 && c != d) {
+            //Negative bases have values at the integer exponents of the interval
+            set(s, i, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            return;
+        }
+        //Other powers are only defined for non-negative bases, where they are exp(v ln u)
+        if (b < 0) {
+            set(s, i, Double.NaN, Double.NaN);
+            return;
+        }
+        a = Math.max(a, 0);
+        double p1 = Math.pow(a, c);
+        double p2 = Math.pow(a, d);
+        double p3 = Math.pow(b, c);
+        double p4 = Math.pow(b, d);
+        round(s, i, Math.min(Math.min(p1, p2), Math.min(p3, p4)), Math.max(Math.max(p1, p2), Math.max(p3, p4)));
+    }
+
+    /**@return Whether phase + 2 k pi lies in [a, b] for some integer k*/
+    private static boolean containsPeriodic(double a, double b, double phase) {
+        double k = Math.ceil((a - phase) / TWO_PI - 1e-9);
+        return phase + k * TWO_PI <= b + 1e-9 * (1 + Math.abs(b));
+    }
+
+    private static void unary(Type op, double[] s, int i, double a, double b) {
+        switch (op) {
+            case NEGATE:
+                set(s, i, -b, -a);
+                break;
+            case SIN:
+            case COS: {
+                //Far from 0 the multiples of pi are too coarse to locate the extrema
+                if (b - a >= TWO_PI || Math.max(Math.abs(a), Math.abs(b)) > 1e6) {
+                    set(s, i, -1, 1);
+                    break;
+                }
+                boolean sin = op == Type.SIN;
+                double fa = sin ? Math.sin(a) : Math.cos(a);
+                double fb = sin ? Math.sin(b) : Math.cos(b);
+                double hi = containsPeriodic(a, b, sin ? Math.PI / 2 : 0) ? 1 : Math.min(1, Math.nextUp(Math.max(fa, fb)));
+                double lo = containsPeriodic(a, b, sin ? -Math.PI / 2 : Math.PI) ? -1 : Math.max(-1, Math.nextDown(Math.min(fa, fb)));
+                set(s, i, lo, hi);
+                break;
+            }
+            case TAN:
+                if (b - a >= Math.PI || containsPeriodic(a, b, Math.PI / 2) || containsPeriodic(a, b, -Math.PI / 2)) {
+                    set(s, i, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+                }
+                else {
+                    round(s, i, Math.tan(a), Math.tan(b));
+                }
+                break;
+            case COT:
+                if (b - a >= Math.PI || containsPeriodic(a, b, 0) || containsPeriodic(a, b, Math.PI)) {
+                    set(s, i, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+                }
+                else {
+                    round(s, i, 1 / Math.tan(b), 1 / Math.tan(a));
+                }
+                break;
+            case ASIN:
+            case ACOS:
+                if (b < -1 || a > 1) {
+                    set(s, i, Double.NaN, Double.NaN);
+                }
+                else if (op == Type.ASIN) {
+                    round(s, i, Math.asin(Math.max(a, -1)), Math.asin(Math.min(b, 1)));
+                }
+                else {
+                    round(s, i, Math.acos(Math.min(b, 1)), Math.acos(Math.max(a, -1)));
+                }
+                break;
+            case ATAN:
+                round(s, i, Math.atan(a), Math.atan(b));
+                break;
+            case SINH:
+                round(s, i, Math.sinh(a), Math.sinh(b));
+                break;
+            case COSH:
+                round(s, i, a <= 0 && b >= 0 ? 1 : Math.min(Math.cosh(a), Math.cosh(b)), Math.max(Math.cosh(a), Math.cosh(b)));
+                break;
+            case TANH:
+                round(s, i, Math.tanh(a), Math.tanh(b));
+                break;
+            case EXP:
+                round(s, i, Math.exp(a), Math.exp(b));
+                break;
+            case LN:
+            case LOG10:
+            case LOG2:
+                if (b < 0) {
+                    set(s, i, Double.NaN, Double.NaN);
+                }
+                else {
+                    round(s, i, a <= 0 ? Double.NEGATIVE_INFINITY : log(op, a), log(op, b));
+                }
+                break;
+            case SQRT:
+                if (b < 0) {
+                    set(s, i, Double.NaN, Double.NaN);
+                }
+                else {
+                    round(s, i, a <= 0 ? 0 : Math.sqrt(a), Math.sqrt(b));
+                    s[i] = Math.max(s[i], 0);
+                }
+                break;
+            case ABS:
+                if (a >= 0) {
+                    set(s, i, a, b);
+                }
+                else if (b <= 0) {
+                    set(s, i, -b, -a);
+                }
+                else {
+                    set(s, i, 0, Math.max(-a, b));
+                }
+                break;
+            case SIGN:
+                set(s, i, Math.signum(a), Math.signum(b));
+                break;
+            case FLOOR:
+                set(s, i, Math.floor(a), Math.floor(b));
+                break;
+            case CEIL:
+                set(s, i, Math.ceil(a), Math.ceil(b));
+                break;
+            case NOT:
+                truth(s, i, isFalse(a, b), isTrue(a, b));
+                break;
+            default:
+                throw new IllegalArgumentException("Operation " + op + " is not unary");
+        }
+    }
+
+    private static double log(Type op, double value) {
+        switch (op) {
+            case LOG10:
+                return Math.log10(value);
+            case LOG2:
+                //Two roundings, widened by one more ulp than the others
+                double log2 = Math.log(value) / Math.log(2);
+                return value < 1 ? Math.nextDown(log2) : Math.nextUp(log2);
+            default:
+                return Math.log(value);
+        }
+    }
+
+    public ExpressionNode getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+}
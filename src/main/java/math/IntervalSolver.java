@@ -0,0 +1,311 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Interval branch and bound over the x/y range. The objective, the bounds (g >= 0) and the constraints (h = 0) are evaluated
+ * in interval arithmetic over boxes, so a box is discarded for certain when one of its bounds is negative on all of it,
+ * a constraint misses 0, or its objective enclosure lies above the best feasible value found. Other boxes are bisected
+ * along their longer side until they are smaller than the tolerance or their objective enclosure is narrower than it.
+ * The boxes of a round are examined in parallel on a fork/join pool, whose work stealing balances their uneven cost;
+ * splitting round by round rather than depth first finds good points early, and lets the box budget go to the lowest bounds.
+ * The global minimum over the range lies between {@link Context#getLowerBound()} and {@link Context#getUpperBound()}.
+ * A point counts as feasible when its bounds are certainly non-negative and its constraints within the tolerance of 0,
+ * so with constraints the enclosure is that of the problem with |h| <= tolerance.
+ * All functions have to be compiled expressions. Start points are not used.
+ */
+public class IntervalSolver extends Solver {
+    private List<DoubleBinaryOperator> bounds = new ArrayList<>();
+    private List<DoubleBinaryOperator> constraints = new ArrayList<>();
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private long budget = 1_000_000;
+    private double lowerX = -1;
+    private double upperX = 1;
+    private double lowerY = -1;
+    private double upperY = 1;
+
+    @Override
+    public Context solve(DoubleBinaryOperator f, PointDouble... data) {
+        return (Context) super.solve(f, data);
+    }
+
+    @Override
+    protected Context createContext(DoubleBinaryOperator f) {
+        return new Context(f, this);
+    }
+
+    @Override
+    protected PointDouble solveInternal(SolveContext solveContext, PointDouble... data) {
+        Context context = (Context) solveContext;
+        Search search = new Search(context);
+        //Boxes to examine, each with the lower bound of the objective over the box it was split from
+        List<double[]> frontier = new ArrayList<>();
+        frontier.add(new double[]{lowerX, upperX, lowerY, upperY, Double.NEGATIVE_INFINITY});
+        int round = 0;
+        while (!frontier.isEmpty()) {
+            double upperBound = search.upperBound;
+            frontier.removeIf(box -> box[4] > upperBound);
+            long left = budget - search.boxes.get();
+            if (frontier.size() > left) {
+                //The most promising boxes use up the budget, the others stay as they are
+                frontier.sort((a, b) -> Double.compare(a[4], b[4]));
+                List<double[]> rest = frontier.subList((int) left, frontier.size());
+                search.remaining.addAll(rest);
+                rest.clear();
+            }
+            List<double[]> boxes = frontier;
+            pool.submit(() -> boxes.parallelStream().forEach(search::examine)).join();
+            frontier = new ArrayList<>(search.split);
+            search.split.clear();
+            if (context.isTracing()) {
+                context.addToLog("Round " + round + ": " + boxes.size() + " boxes examined, " + frontier.size() + " to examine; f <= " + search.upperBound);
+            }
+            round++;
+        }
+
+        context.boxes = search.boxes.get();
+        context.evaluations = search.evaluations.get();
+        context.upperBound = search.upperBound;
+        double[] lowest = null;
+        for (double[] box : search.remaining) {
+            //Boxes stored before a better point was found may have been discarded since
+            if (box[4] > context.upperBound) {
+                continue;
+            }
+            context.remainingBoxes++;
+            if (lowest == null || box[4] < lowest[4]) {
+                lowest = box;
+            }
+            context.addLine(new PointDouble(box[0], box[2]), new PointDouble(box[1], box[3]));
+        }
+        context.lowerBound = Math.min(lowest != null ? lowest[4] : Double.POSITIVE_INFINITY, context.upperBound);
+        context.addToLog("Boxes: " + context.boxes + "; Remaining: " + context.remainingBoxes + "; Enclosure of the minimum: ["
+                + context.lowerBound + ", " + context.upperBound + "]" + (context.boxes >= budget ? "; Box budget exhausted" : ""));
+        if (search.best != null) {
+            context.addPoint(search.best);
+            return search.best;
+        }
+        if (lowest == null) {
+            throw new IllegalArgumentException("The range has no feasible point");
+        }
+        //Constraints may hold only between the centres of the boxes, the centre of the most promising one is the best guess
+        context.addToLog("No feasible point was certified, returning the centre of the box with the lowest bound");
+        PointDouble centre = new PointDouble((lowest[0] + lowest[1]) / 2, (lowest[2] + lowest[3]) / 2);
+        context.addPoint(centre);
+        return centre;
+    }
+
+    @Override
+    protected int getLogBatchSize() {
+        return 1;
+    }
+
+    @Override
+    public boolean isLocal() {
+        return false;
+    }
+
+    private static IntervalFunction intervalFunction(DoubleBinaryOperator function) {
+        ExpressionNode expression = ExpressionCompiler.expressionOf(function);
+        if (expression == null) {
+            throw new IllegalArgumentException("Interval branch and bound needs compiled expressions");
+        }
+        return new IntervalFunction(expression);
+    }
+
+    public List<DoubleBinaryOperator> getBounds() {
+        return bounds;
+    }
+
+    public List<DoubleBinaryOperator> getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * @param bounds Functions that have to be non-negative
+     * @param constraints Functions that have to be 0
+     */
+    public void setConstraints(List<DoubleBinaryOperator> bounds, List<DoubleBinaryOperator> constraints) {
+        this.bounds = bounds != null ? bounds : new ArrayList<>();
+        this.constraints = constraints != null ? constraints : new ArrayList<>();
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**@param budget Boxes a solve may examine. Once they are used up, the boxes left widen the enclosure instead of being split*/
+    public void setBudget(long budget) {
+        if (budget < 1) {
+            throw new IllegalArgumentException("Budget has to be positive");
+        }
+        this.budget = budget;
+    }
+
+    public void setBounds(double lowerX, double upperX, double lowerY, double upperY) {
+        if (!(lowerX < upperX) || !(lowerY < upperY)) {
+            throw new IllegalArgumentException("Lower bounds of the range have to be below the upper ones");
+        }
+        this.lowerX = lowerX;
+        this.upperX = upperX;
+        this.lowerY = lowerY;
+        this.upperY = upperY;
+    }
+
+    /**Context of a branch and bound solve, with the enclosure of the global minimum*/
+    public static class Context extends SolveContext {
+        private double lowerBound = Double.NEGATIVE_INFINITY;
+        private double upperBound = Double.POSITIVE_INFINITY;
+        private long boxes;
+        private long remainingBoxes;
+        private long evaluations;
+
+        private Context(DoubleBinaryOperator f, IntervalSolver solver) {
+            super(f, solver);
+        }
+
+        /**@return Certified lower bound of the minimum over the range*/
+        public double getLowerBound() {
+            return lowerBound;
+        }
+
+        /**@return Value of the objective at the result, certified to be at least the minimum*/
+        public double getUpperBound() {
+            return upperBound;
+        }
+
+        /**@return Boxes examined*/
+        public long getBoxes() {
+            return boxes;
+        }
+
+        /**@return Boxes that could not be discarded, they cover every minimizer*/
+        public long getRemainingBoxes() {
+            return remainingBoxes;
+        }
+
+        /**@return Interval evaluations of the objective over boxes and points*/
+        @Override
+        public long getEvaluations() {
+            return super.getEvaluations() + evaluations;
+        }
+    }
+
+    /**State shared by the tasks of one solve*/
+    private class Search {
+        private final IntervalFunction objective;
+        private final IntervalFunction[] boundFunctions;
+        private final IntervalFunction[] constraintFunctions;
+        private final double tolerance;
+        private final AtomicLong boxes = new AtomicLong();
+        private final AtomicLong evaluations = new AtomicLong();
+        //{xLo, xHi, yLo, yHi, lower bound of the objective} of the boxes that are left and of the halves for the next round
+        private final ConcurrentLinkedQueue<double[]> remaining = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<double[]> split = new ConcurrentLinkedQueue<>();
+        private volatile double upperBound = Double.POSITIVE_INFINITY;
+        private PointDouble best;
+
+        private Search(Context context) {
+            objective = intervalFunction(context.getObjective());
+            boundFunctions = new IntervalFunction[bounds.size()];
+            for (int i = 0; i < boundFunctions.length; i++) {
+                boundFunctions[i] = intervalFunction(bounds.get(i));
+            }
+            constraintFunctions = new IntervalFunction[constraints.size()];
+            for (int i = 0; i < constraintFunctions.length; i++) {
+                constraintFunctions[i] = intervalFunction(constraints.get(i));
+            }
+            tolerance = context.getTolerance();
+        }
+
+        /**@return -1 if the box certainly violates a bound or a constraint, 1 if all of it is feasible, 0 if it is undecided*/
+        private int feasibility(double xLo, double xHi, double yLo, double yHi, double[] enclosure) {
+            int result = 1;
+            for (IntervalFunction bound : boundFunctions) {
+                bound.evaluate(xLo, xHi, yLo, yHi, enclosure);
+                if (enclosure[1] < 0 || Double.isNaN(enclosure[0])) {
+                    return -1;
+                }
+                if (!(enclosure[0] >= 0)) {
+                    result = 0;
+                }
+            }
+            for (IntervalFunction constraint : constraintFunctions) {
+                constraint.evaluate(xLo, xHi, yLo, yHi, enclosure);
+                if (enclosure[0] > tolerance || enclosure[1] < -tolerance || Double.isNaN(enclosure[0])) {
+                    return -1;
+                }
+                if (!(enclosure[0] >= -tolerance && enclosure[1] <= tolerance)) {
+                    result = 0;
+                }
+            }
+            return result;
+        }
+
+        /**Takes the centre of the box as the best point if it is feasible and certainly better*/
+        private void tryCentre(double x, double y, double[] enclosure) {
+            if (feasibility(x, x, y, y, enclosure) < 1) {
+                return;
+            }
+            objective.evaluate(x, x, y, y, enclosure);
+            evaluations.incrementAndGet();
+            if (enclosure[1] < upperBound) {
+                synchronized (this) {
+                    if (enclosure[1] < upperBound) {
+                        upperBound = enclosure[1];
+                        best = new PointDouble(x, y);
+                    }
+                }
+            }
+        }
+
+        /**Discards the box, keeps it as small enough, or adds its halves along the longer side to the next round*/
+        private void examine(double[] box) {
+            double xLo = box[0];
+            double xHi = box[1];
+            double yLo = box[2];
+            double yHi = box[3];
+            boxes.incrementAndGet();
+            double[] enclosure = new double[2];
+            int feasibility = feasibility(xLo, xHi, yLo, yHi, enclosure);
+            if (feasibility < 0) {
+                return;
+            }
+            objective.evaluate(xLo, xHi, yLo, yHi, enclosure);
+            evaluations.incrementAndGet();
+            double lower = Double.isNaN(enclosure[0]) ? Double.POSITIVE_INFINITY : enclosure[0];
+            double upper = enclosure[1];
+            if (lower > upperBound) {
+                return;
+            }
+            double xMid = (xLo + xHi) / 2;
+            double yMid = (yLo + yHi) / 2;
+            tryCentre(xMid, yMid, enclosure);
+
+            if (Math.max(xHi - xLo, yHi - yLo) <= tolerance || feasibility > 0 && upper - lower <= tolerance) {
+                remaining.add(new double[]{xLo, xHi, yLo, yHi, lower});
+            }
+            else if (xHi - xLo >= yHi - yLo) {
+                split.add(new double[]{xLo, xMid, yLo, yHi, lower});
+                split.add(new double[]{xMid, xHi, yLo, yHi, lower});
+            }
+            else {
+                split.add(new double[]{xLo, xHi, yLo, yMid, lower});
+                split.add(new double[]{xLo, xHi, yMid, yHi, lower});
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package math;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**Strategy choosing a step along a search direction. Implementations are immutable, so one instance can be shared by solvers and threads*/
+public interface LineSearch {
+    /**
+     * Moves the point along the direction to the accepted step, in place. The direction is left unchanged
+     * @param context Solve the search belongs to, which receives its trace and lends it scratch; null for an untraced search
+     * @return Accepted step in units of the direction, 0 if the point did not move
+     */
+    double search(DoubleBinaryOperator f, Vector2 point, Vector2 direction, SolveContext context);
+}
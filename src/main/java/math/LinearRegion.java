@@ -0,0 +1,305 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Region of affine bounds a x + b y + c >= 0 and affine constraints a x + b y + c = 0, with the exact Euclidean projection onto it.
+ * A box, every bound along an axis and no constraints, is projected by clamping. Otherwise the projection solves the QP
+ * min |p - point|^2 over the region through its active sets: in two dimensions the optimum is the point itself, its foot on one line
+ * or the corner of two, so it is the nearest of those that lies in the region.
+ * A region is immutable, so it can be shared between threads.
+ */
+public class LinearRegion {
+    /**Distance outside a line that still counts as on it, relative to the size of the point*/
+    private static final double TOLERANCE = 1e-9;
+    /**Active set of a projection that found no point*/
+    private static final int EMPTY = -1;
+
+    //Rows with (a; b) of unit length
+    private final double[] a;
+    private final double[] b;
+    private final double[] c;
+    private final boolean[] equality;
+    private final boolean box;
+    private double minX = Double.NEGATIVE_INFINITY;
+    private double maxX = Double.POSITIVE_INFINITY;
+    private double minY = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.POSITIVE_INFINITY;
+
+    /**
+     * @param bounds Coefficients {a, b, c} of the bounds a x + b y + c >= 0
+     * @param constraints Coefficients {a, b, c} of the constraints a x + b y + c = 0
+     * @throws IllegalArgumentException If the region is empty
+     */
+    public LinearRegion(List<double[]> bounds, List<double[]> constraints) {
+        List<double[]> rows = new ArrayList<>();
+        List<Boolean> equalities = new ArrayList<>();
+        for (int i = 0; i < bounds.size() + constraints.size(); i++) {
+            boolean isEquality = i >= bounds.size();
+            double[] row = isEquality ? constraints.get(i - bounds.size()) : bounds.get(i);
+            double length = Math.hypot(row[0], row[1]);
+            if (length == 0) {
+                //Constant rows hold everywhere or nowhere
+                if (isEquality ? row[2] != 0 : row[2] < 0) {
+                    throw new IllegalArgumentException("The linear bounds and constraints have no common point");
+                }
+                continue;
+            }
+            rows.add(new double[]{row[0] / length, row[1] / length, row[2] / length});
+            equalities.add(isEquality);
+        }
+        int n = rows.size();
+        a = new double[n];
+        b = new double[n];
+        c = new double[n];
+        equality = new boolean[n];
+        boolean box = true;
+        for (int i = 0; i < n; i++) {
+            a[i] = rows.get(i)[0];
+            b[i] = rows.get(i)[1];
+            c[i] = rows.get(i)[2];
+            equality[i] = equalities.get(i);
+            box &= !equality[i] && (a[i] == 0 || b[i] == 0);
+        }
+        this.box = box;
+
+        if (box) {
+            for (int i = 0; i < n; i++) {
+                //x + c >= 0, -x + c >= 0 and the same for y
+                if (b[i] == 0 && a[i] > 0) {
+                    minX = Math.max(minX, -c[i]);
+                }
+                else if (b[i] == 0) {
+                    maxX = Math.min(maxX, c[i]);
+                }
+                else if (b[i] > 0) {
+                    minY = Math.max(minY, -c[i]);
+                }
+                else {
+                    maxY = Math.min(maxY, c[i]);
+                }
+            }
+        }
+        if (box ? minX > maxX || minY > maxY : !project(0, 0, new Vector2())) {
+            throw new IllegalArgumentException("The linear bounds and constraints have no common point");
+        }
+    }
+
+    /**
+     * @return Region of the bounds and constraints that {@link ExpressionCompiler#affine} recognises, null if there are none.
+     * The others are added to nonlinearBounds and nonlinearConstraints
+     */
+    public static LinearRegion of(List<DoubleBinaryOperator> bounds, List<DoubleBinaryOperator> constraints, List<DoubleBinaryOperator> nonlinearBounds, List<DoubleBinaryOperator> nonlinearConstraints) {
+        List<double[]> linearBounds = split(bounds, nonlinearBounds);
+        List<double[]> linearConstraints = split(constraints, nonlinearConstraints);
+        if (linearBounds.isEmpty() && linearConstraints.isEmpty()) {
+            return null;
+        }
+        return new LinearRegion(linearBounds, linearConstraints);
+    }
+
+    private static List<double[]> split(List<DoubleBinaryOperator> parts, List<DoubleBinaryOperator> nonlinear) {
+        List<double[]> linear = new ArrayList<>();
+        for (DoubleBinaryOperator part : parts) {
+            double[] coefficients = ExpressionCompiler.affine(part);
+            if (coefficients != null) {
+                linear.add(coefficients);
+            }
+            else {
+                nonlinear.add(part);
+            }
+        }
+        return linear;
+    }
+
+    /**
+     * Writes the nearest point of the region into out
+     * @return Whether the region has a point, always true once constructed
+     */
+    public boolean project(double x, double y, Vector2 out) {
+        return projectActive(x, y, out) != EMPTY;
+    }
+
+    /**
+     * Writes the nearest point of the region into out
+     * @return Active set of the point: the clamped coordinates of a box as bits 1 and 2,
+     * otherwise the first row it lies on plus 1 and the second one plus 1 shifted by 16, {@link #EMPTY} if there is no point
+     */
+    private int projectActive(double x, double y, Vector2 out) {
+        if (box) {
+            double clampedX = Math.min(Math.max(x, minX), maxX);
+            double clampedY = Math.min(Math.max(y, minY), maxY);
+            out.set(clampedX, clampedY);
+            return (clampedX != x ? 1 : 0) | (clampedY != y ? 2 : 0);
+        }
+        if (contains(x, y)) {
+            out.set(x, y);
+            return 0;
+        }
+
+        double best = Double.POSITIVE_INFINITY;
+        int first = -1;
+        int second = -1;
+        for (int i = 0; i < a.length; i++) {
+            double distance = a[i] * x + b[i] * y + c[i];
+            double footX = x - distance * a[i];
+            double footY = y - distance * b[i];
+            if (distance * distance < best && contains(footX, footY)) {
+                best = distance * distance;
+                first = i;
+                second = -1;
+                out.set(footX, footY);
+            }
+            for (int j = i + 1; j < a.length; j++) {
+                double determinant = a[i] * b[j] - b[i] * a[j];
+                if (Math.abs(determinant) <= TOLERANCE) {
+                    continue;
+                }
+                double cornerX = (-c[i] * b[j] + c[j] * b[i]) / determinant;
+                double cornerY = (-a[i] * c[j] + a[j] * c[i]) / determinant;
+                double squared = (cornerX - x) * (cornerX - x) + (cornerY - y) * (cornerY - y);
+                if (squared < best && contains(cornerX, cornerY)) {
+                    best = squared;
+                    first = i;
+                    second = j;
+                    out.set(cornerX, cornerY);
+                }
+            }
+        }
+        return first < 0 ? EMPTY : first + 1 | second + 1 << 16;
+    }
+
+    private boolean contains(double x, double y) {
+        double tolerance = TOLERANCE * (1 + Math.max(Math.abs(x), Math.abs(y)));
+        for (int i = 0; i < a.length; i++) {
+            double value = a[i] * x + b[i] * y + c[i];
+            if (equality[i] ? Math.abs(value) > tolerance : value < -tolerance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**Projects v onto the directions a projection with the active set could move along, which is the derivative of the projection applied to v*/
+    private void tangent(int active, Vector2 v) {
+        int first = (active & 0xFFFF) - 1;
+        int second = (active >>> 16) - 1;
+        if (box) {
+            v.set((active & 1) != 0 ? 0 : v.x, (active & 2) != 0 ? 0 : v.y);
+        }
+        else if (second >= 0) {
+            v.set(0, 0);
+        }
+        else if (first >= 0) {
+            double dot = v.x * a[first] + v.y * b[first];
+            v.set(v.x - dot * a[first], v.y - dot * b[first]);
+        }
+    }
+
+    /**@return Rows of the region, bounds and constraints with a non-zero gradient*/
+    int getRows() {
+        return a.length;
+    }
+
+    /**@return {a, b, c} of the row, (a; b) of unit length*/
+    double[] getRow(int i) {
+        return new double[]{a[i], b[i], c[i]};
+    }
+
+    /**@return Whether the row is a constraint rather than a bound*/
+    boolean isEquality(int i) {
+        return equality[i];
+    }
+
+    public boolean isBox() {
+        return box;
+    }
+
+    /**@return Lower x of a box, infinite if it has none, or if the region is not a box*/
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    /**@return Region a function from {@link #restrict} is restricted to, null for any other function*/
+    public static LinearRegion restrictionOf(DoubleBinaryOperator function) {
+        return function instanceof RestrictedFunction ? ((RestrictedFunction) function).region : null;
+    }
+
+    /**
+     * @return {lowerX, upperX, lowerY, upperY} of the range, narrowed to the box the function is restricted to by {@link #restrict}
+     * if it is one and overlaps the range. Global solvers then search only the feasible part
+     */
+    public static double[] searchRange(DoubleBinaryOperator function, double lowerX, double upperX, double lowerY, double upperY) {
+        LinearRegion region = restrictionOf(function);
+        if (region != null && region.isBox()) {
+            double minX = Math.max(lowerX, region.minX);
+            double maxX = Math.min(upperX, region.maxX);
+            double minY = Math.max(lowerY, region.minY);
+            double maxY = Math.min(upperY, region.maxY);
+            if (minX < maxX && minY < maxY) {
+                return new double[]{minX, maxX, minY, maxY};
+            }
+        }
+        return new double[]{lowerX, upperX, lowerY, upperY};
+    }
+
+    /**
+     * @return f(P(x)) + |x - P(x)|^2, P being the projection onto the region. Its minima are the minima of f over the region,
+     * so unconstrained solvers can minimize it and project their result
+     */
+    public DifferentiableFunction restrict(DoubleBinaryOperator function) {
+        return new RestrictedFunction(function, this);
+    }
+
+    private static class RestrictedFunction implements DifferentiableFunction {
+        private final DoubleBinaryOperator function;
+        private final LinearRegion region;
+        private final ThreadLocal<Vector2> projected = ThreadLocal.withInitial(Vector2::new);
+
+        private RestrictedFunction(DoubleBinaryOperator function, LinearRegion region) {
+            this.function = function;
+            this.region = region;
+        }
+
+        @Override
+        public double applyAsDouble(double x, double y) {
+            Vector2 projected = this.projected.get();
+            region.projectActive(x, y, projected);
+            double dx = x - projected.x;
+            double dy = y - projected.y;
+            return function.applyAsDouble(projected.x, projected.y) + dx * dx + dy * dy;
+        }
+
+        @Override
+        public void gradient(double x, double y, Vector2 out) {
+            valueAndGradient(x, y, out);
+        }
+
+        @Override
+        public double valueAndGradient(double x, double y, Vector2 out) {
+            Vector2 projected = this.projected.get();
+            int active = region.projectActive(x, y, projected);
+            double dx = x - projected.x;
+            double dy = y - projected.y;
+            double value = SolverUtils.valueAndGradient(function, projected.x, projected.y, out);
+            //x - P(x) is normal to the active lines, so the distance term keeps its plain gradient
+            region.tangent(active, out);
+            out.add(2 * dx, 2 * dy);
+            return value + dx * dx + dy * dy;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Runs one independent solve per start point on a fork/join pool and returns the best result.
+ * All starts share the configured inner solver (penalty wrappers included), each solve getting its own context.
+ * Results are compared with the score function, or the objective if there is none, evaluated after all runs have finished.
+ */
+public class MultiStartSolver extends Solver {
+    public enum Sampling {
+        RANDOM, SOBOL
+    }
+
+    private final Solver solver;
+    private DoubleBinaryOperator score;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int sampledStarts = 0;
+    private Sampling sampling = Sampling.SOBOL;
+    private long seed = 0;
+    private double lowerX = -1;
+    private double upperX = 1;
+    private double lowerY = -1;
+    private double upperY = 1;
+
+    public MultiStartSolver(Solver solver) {
+        if (solver == null) {
+            throw new IllegalArgumentException("Inner solver is required");
+        }
+        this.solver = solver;
+    }
+
+    @Override
+    public Context solve(DoubleBinaryOperator f, PointDouble... data) {
+        return (Context) super.solve(f, data);
+    }
+
+    @Override
+    protected Context createContext(DoubleBinaryOperator f) {
+        return new Context(f, this);
+    }
+
+    @Override
+    protected PointDouble solveInternal(SolveContext solveContext, PointDouble... data) {
+        Context context = (Context) solveContext;
+        //Counter and cache of the context are not thread-safe, runs get the bare objective
+        DoubleBinaryOperator objective = context.getObjective();
+        DoubleBinaryOperator score = this.score != null ? this.score : context.getF();
+        List<PointDouble> starts = new ArrayList<>(Arrays.asList(data));
+        starts.addAll(sampleStarts());
+        if (starts.isEmpty()) {
+            throw new IllegalArgumentException("No start points");
+        }
+
+        List<ForkJoinTask<Run>> tasks = new ArrayList<>(starts.size());
+        for (PointDouble start : starts) {
+            tasks.add(pool.submit(() -> new Run(start, solver.solve(objective, context.getTolerance(), new PointDouble(start.getX(), start.getY())))));
+        }
+        List<Run> runs = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<Run> task : tasks) {
+            runs.add(task.join());
+        }
+
+        Run best = null;
+        for (int i = 0; i < runs.size(); i++) {
+            Run run = runs.get(i);
+            PointDouble result = run.getResult();
+            run.value = score.applyAsDouble(result.getX(), result.getY());
+            if (best == null || run.value < best.value || Double.isNaN(best.value)) {
+                best = run;
+            }
+            run.context.getPoints().forEach(context::addPoint);
+            run.context.getLines().forEach(context::addLine);
+            context.addToLog("Start " + i + ": " + run.start.toString(PRECISION) + "; Solution: " + result.toString(PRECISION) + "; f = " + run.value);
+        }
+        context.addToLog("Best solution: start " + runs.indexOf(best) + ":");
+        best.context.getSolutionLog().forEach(context::addToLog);
+        context.runs = runs;
+        context.best = best;
+        return best.getResult();
+    }
+
+    /**@return Configured amount of random or Sobol points inside the x/y range*/
+    public List<PointDouble> sampleStarts() {
+        List<PointDouble> points = new ArrayList<>(sampledStarts);
+        if (sampling == Sampling.RANDOM) {
+            Random random = new Random(seed);
+            for (int i = 0; i < sampledStarts; i++) {
+                points.add(scale(random.nextDouble(), random.nextDouble()));
+            }
+            return points;
+        }
+        //First two Sobol dimensions in Gray code order, skipping the corner point at index 0
+        int x = 0;
+        int y = 0;
+        int[] directionsY = new int[32];
+        directionsY[0] = 1 << 31;
+        for (int i = 1; i < 32; i++) {
+            directionsY[i] = directionsY[i - 1] ^ (directionsY[i - 1] >>> 1);
+        }
+        for (int i = 1; i <= sampledStarts; i++) {
+            int bit = Integer.numberOfTrailingZeros(~(i - 1));
+            x ^= 1 << (31 - bit);
+            y ^= directionsY[bit];
+            points.add(scale(Integer.toUnsignedLong(x) / 0x1p32, Integer.toUnsignedLong(y) / 0x1p32));
+        }
+        return points;
+    }
+
+    private PointDouble scale(double u, double v) {
+        return new PointDouble(lowerX + (upperX - lowerX) * u, lowerY + (upperY - lowerY) * v);
+    }
+
+    @Override
+    protected int getLogBatchSize() {
+        return 1;
+    }
+
+    public Solver getSolver() {
+        return solver;
+    }
+
+    public DoubleBinaryOperator getScore() {
+        return score;
+    }
+
+    /**@param score Function the results of the runs are ranked by, null to rank by the objective*/
+    public void setScore(DoubleBinaryOperator score) {
+        this.score = score;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public int getSampledStarts() {
+        return sampledStarts;
+    }
+
+    /**@param sampledStarts Amount of start points sampled inside the x/y range, in addition to the given ones*/
+    public void setSampledStarts(int sampledStarts) {
+        if (sampledStarts < 0) {
+            throw new IllegalArgumentException("Amount of start points has to be non-negative");
+        }
+        this.sampledStarts = sampledStarts;
+    }
+
+    public Sampling getSampling() {
+        return sampling;
+    }
+
+    public void setSampling(Sampling sampling) {
+        this.sampling = sampling;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setBounds(double lowerX, double upperX, double lowerY, double upperY) {
+        this.lowerX = lowerX;
+        this.upperX = upperX;
+        this.lowerY = lowerY;
+        this.upperY = upperY;
+    }
+
+    /**Context of a multi-start solve, holding every run*/
+    public static class Context extends SolveContext {
+        private List<Run> runs = new ArrayList<>();
+        private Run best;
+
+        private Context(DoubleBinaryOperator f, MultiStartSolver solver) {
+            super(f, solver);
+        }
+
+        /**@return Result of every start, in start order*/
+        public List<Run> getRuns() {
+            return runs;
+        }
+
+        /**@return Run that produced the result*/
+        public Run getBestRun() {
+            return best;
+        }
+
+        /**@return Evaluations of all runs*/
+        @Override
+        public long getEvaluations() {
+            return super.getEvaluations() + runs.stream().mapToLong(run -> run.context.getEvaluations()).sum();
+        }
+
+        /**@return Gradient evaluations of all runs*/
+        @Override
+        public long getGradientEvaluations() {
+            return super.getGradientEvaluations() + runs.stream().mapToLong(run -> run.context.getGradientEvaluations()).sum();
+        }
+    }
+
+    /**Outcome of the solve from one start point, with its own trajectory*/
+    public static class Run {
+        private final PointDouble start;
+        private final SolveContext context;
+        private double value;
+
+        private Run(PointDouble start, SolveContext context) {
+            this.start = start;
+            this.context = context;
+        }
+
+        public PointDouble getStart() {
+            return start;
+        }
+
+        public PointDouble getResult() {
+            return context.getResult();
+        }
+
+        /**@return Context of the inner solve, with its trace and counters*/
+        public SolveContext getContext() {
+            return context;
+        }
+
+        /**@return Score of the result*/
+        public double getValue() {
+            return value;
+        }
+    }
+}
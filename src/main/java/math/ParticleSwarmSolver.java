@@ -0,0 +1,116 @@
+package math;
+
+import java.util.Random;
+
+/**
+ * Particle swarm with a global topology: every particle moves with a velocity that keeps the inertia of the last one and is pulled
+ * towards the best point the particle has seen and the best point of the swarm, each pull scaled by a fresh random factor.
+ * Positions are kept inside the range, a particle stopping along the side it hits.
+ * The default coefficients are the constriction ones of Clerc and Kennedy.
+ */
+public class ParticleSwarmSolver extends PopulationSolver {
+    private double inertia = 0.7298;
+    private double cognitive = 1.49618;
+    private double social = 1.49618;
+
+    @Override
+    protected Population createPopulation(int size, double[] range) {
+        return new Swarm(size, range);
+    }
+
+    @Override
+    protected void initialize(Population population, Random random) {
+        Swarm swarm = (Swarm) population;
+        //Half the way towards a random point of the range
+        for (int i = 0; i < swarm.size; i++) {
+            swarm.vx[i] = (swarm.lowerX + random.nextDouble() * (swarm.upperX - swarm.lowerX) - swarm.x[i]) / 2;
+            swarm.vy[i] = (swarm.lowerY + random.nextDouble() * (swarm.upperY - swarm.lowerY) - swarm.y[i]) / 2;
+        }
+    }
+
+    @Override
+    protected void propose(Population population, Random random) {
+        Swarm swarm = (Swarm) population;
+        int best = swarm.best();
+        double bestX = swarm.x[best];
+        double bestY = swarm.y[best];
+        //The trial arrays hold the current positions, the member arrays the best points of the particles
+        for (int i = 0; i < swarm.size; i++) {
+            swarm.vx[i] = inertia * swarm.vx[i] + cognitive * random.nextDouble() * (swarm.x[i] - swarm.trialX[i])
+                    + social * random.nextDouble() * (bestX - swarm.trialX[i]);
+            swarm.vy[i] = inertia * swarm.vy[i] + cognitive * random.nextDouble() * (swarm.y[i] - swarm.trialY[i])
+                    + social * random.nextDouble() * (bestY - swarm.trialY[i]);
+            double x = swarm.trialX[i] + swarm.vx[i];
+            double y = swarm.trialY[i] + swarm.vy[i];
+            if (x < swarm.lowerX || x > swarm.upperX) {
+                x = swarm.clampX(x);
+                swarm.vx[i] = 0;
+            }
+            if (y < swarm.lowerY || y > swarm.upperY) {
+                y = swarm.clampY(y);
+                swarm.vy[i] = 0;
+            }
+            swarm.trialX[i] = x;
+            swarm.trialY[i] = y;
+        }
+    }
+
+    @Override
+    protected void accept(Population population) {
+        for (int i = 0; i < population.size; i++) {
+            if (population.trialValue[i] < population.value[i]) {
+                population.x[i] = population.trialX[i];
+                population.y[i] = population.trialY[i];
+                population.value[i] = population.trialValue[i];
+            }
+        }
+    }
+
+    public double getInertia() {
+        return inertia;
+    }
+
+    /**@param inertia Factor of the last velocity kept in the next one*/
+    public void setInertia(double inertia) {
+        if (!(inertia >= 0 && inertia < 1)) {
+            throw new IllegalArgumentException("Inertia has to be in [0; 1)");
+        }
+        this.inertia = inertia;
+    }
+
+    public double getCognitive() {
+        return cognitive;
+    }
+
+    /**@param cognitive Largest factor of the pull towards the best point of the particle*/
+    public void setCognitive(double cognitive) {
+        if (!(cognitive >= 0)) {
+            throw new IllegalArgumentException("Cognitive coefficient has to be non-negative");
+        }
+        this.cognitive = cognitive;
+    }
+
+    public double getSocial() {
+        return social;
+    }
+
+    /**@param social Largest factor of the pull towards the best point of the swarm*/
+    public void setSocial(double social) {
+        if (!(social >= 0)) {
+            throw new IllegalArgumentException("Social coefficient has to be non-negative");
+        }
+        this.social = social;
+    }
+
+    /**Population with the velocities of the particles*/
+    private static class Swarm extends Population {
+        private final double[] vx;
+        private final double[] vy;
+
+        private Swarm(int size, double[] range) {
+            super(size, range);
+            vx = new double[size];
+            vy = new double[size];
+        }
+    }
+}
@@ -1,24 +1,31 @@
 package math;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
 
 public class PenaltyAdjuster extends Solver {
     private Solver solver;
-    private BiFunction<Double, Double, Double> function;
-    private BiFunction<List<Double>, Double, Double> penaltyFunction;
-    private BiFunction<List<Double>, Double, Double> constraintPenaltyFunction = QUADRATIC_BIDIRECTIONAL_PENALTY_FUNCTION;
-    private List<BiFunction<Double, Double, Double>> bounds;
-    private List<BiFunction<Double, Double, Double>> constraints;
+    private PenaltyFunction penaltyFunction;
+    private PenaltyFunction constraintPenaltyFunction = QUADRATIC_BIDIRECTIONAL_PENALTY_FUNCTION;
+    private List<DoubleBinaryOperator> bounds;
+    private List<DoubleBinaryOperator> constraints;
     private boolean enabled;
+    private boolean continuation = false;
+    private double violationTolerance = EPSILON;
+    private boolean exactLinear = true;
+    private long timeBudget = 0;
     
     private double kStart = 1;
     private double kMulti = 10;
-    private double k = kStart;
     private int  displayIteration = -1;
+    private static final double MAX_INNER_TOLERANCE = 0.1;
+    private static final int MAX_LEVEL = 16;
     
-    public static final BiFunction<List<Double>, Double, Double> INVERSE_PENALTY_FUNCTION = (l, k) -> {
+    public static final PenaltyFunction INVERSE_PENALTY_FUNCTION = PenaltyFunction.of((l, k) -> {
         double sum = 0;
         for (double val : l) {
             if (Double.isNaN(val)) {
@@ -30,9 +37,9 @@ public class PenaltyAdjuster extends Solver {
             sum += 1 / val;
         }
         return Math.min(sum / k, Double.MAX_VALUE);
-    };
+    }, (l, i, k) -> isInside(l) ? -1 / (k * l[i] * l[i]) : 0);
     
-    public static final BiFunction<List<Double>, Double, Double> LOGARITHMIC_PENALTY_FUNCTION = (l, k) -> {
+    public static final PenaltyFunction LOGARITHMIC_PENALTY_FUNCTION = PenaltyFunction.of((l, k) -> {
         double sum = 0;
         for (double val : l) {
             if (Double.isNaN(val)) {
@@ -44,31 +51,42 @@ public class PenaltyAdjuster extends Solver {
             sum += Math.log(val);
         }
         return Math.min(-sum / k, Double.MAX_VALUE);
-    };
+    }, (l, i, k) -> isInside(l) ? -1 / (k * l[i]) : 0);
     
-    public static final BiFunction<List<Double>, Double, Double> QUADRATIC_PENALTY_FUNCTION = (l, k) -> {
+    public static final PenaltyFunction QUADRATIC_PENALTY_FUNCTION = PenaltyFunction.of((l, k) -> {
         double sum = 0;
         for (double val : l) {
             if (Double.isNaN(val)) {
                 val = 0.0;
             }
-            sum += Math.pow(Math.min(0, val), 2);
+            double violation = Math.min(0, val);
+            sum += violation * violation;
         }
         return Math.min(sum * k, Double.MAX_VALUE);
-    };
+    }, (l, i, k) -> Double.isNaN(l[i]) ? 0 : 2 * k * Math.min(0, l[i]));
     
-    public static final BiFunction<List<Double>, Double, Double> QUADRATIC_BIDIRECTIONAL_PENALTY_FUNCTION = (l, k) -> {
+    public static final PenaltyFunction QUADRATIC_BIDIRECTIONAL_PENALTY_FUNCTION = PenaltyFunction.of((l, k) -> {
         double sum = 0;
         for (double val : l) {
             if (Double.isNaN(val)) {
                 val = 0.0;
             }
-            sum += Math.pow(val, 2);
+            sum += val * val;
         }
         return Math.min(sum * k, Double.MAX_VALUE);
-    };
+    }, (l, i, k) -> Double.isNaN(l[i]) ? 0 : 2 * k * l[i]);
     
-    public PenaltyAdjuster(Solver solver, BiFunction<List<Double>, Double, Double> penaltyFunction, List<BiFunction<Double, Double, Double>> bounds, List<BiFunction<Double, Double, Double>> constraints, boolean enabled) {
+    /**@return Whether all the values are positive, outside of which the barrier penalties are flat at Double.MAX_VALUE*/
+    private static boolean isInside(double[] values) {
+        for (double value : values) {
+            if (!(value > 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public PenaltyAdjuster(Solver solver, PenaltyFunction penaltyFunction, List<DoubleBinaryOperator> bounds, List<DoubleBinaryOperator> constraints, boolean enabled) {
         this.solver = solver;
         this.penaltyFunction = penaltyFunction;
         this.bounds = bounds;
@@ -83,133 +101,232 @@ public class PenaltyAdjuster extends Solver {
     }
     
     @Override
-    protected PointDouble solveInternal(PointDouble... data) {
+    public Context solve(DoubleBinaryOperator f, PointDouble... data) {
+        return (Context) super.solve(f, data);
+    }
+    
+    @Override
+    protected Context createContext(DoubleBinaryOperator f) {
+        return new Context(f, this);
+    }
+    
+    @Override
+    protected PointDouble solveInternal(SolveContext solveContext, PointDouble... data) {
+        Context context = (Context) solveContext;
+        DoubleBinaryOperator function = context.getF();
+        context.k = kStart;
+        long deadline = deadline(context);
         if (!enabled) {
-            k = kStart;
-            PointDouble res = solver.solve(data);
-            solver.getSolutionLog().forEach(this::addToLog);
-            solver.getPoints().forEach(this::addPoint);
-            solver.getLines().forEach(this::addLine);
-            
-            return res;
+            SolveContext inner = solver.solve(function, context.getTolerance(), deadline, data);
+            context.addTrace(inner);
+            return inner.getResult();
         }
         
-        function = solver.getF();
-        k = kStart;
         PointDouble curr;
         PointDouble prev;
         int i = 0;
+        List<DoubleBinaryOperator> penaltyBounds = bounds;
+        List<DoubleBinaryOperator> penaltyConstraints = constraints;
+        LinearRegion region = null;
+        if (exactLinear) {
+            penaltyBounds = new ArrayList<>();
+            penaltyConstraints = new ArrayList<>();
+            region = LinearRegion.of(bounds, constraints, penaltyBounds, penaltyConstraints);
+        }
+        //Restoring the nonlinear bounds keeps to the region, so the linear parts still hold at the returned point
+        BoundsProjection projection = region != null ? new BoundsProjection(penaltyBounds, region) : new BoundsProjection(bounds);
     
         for (int j = 0; j < data.length; j++) {
-            PointDouble returned = returnToBounds(data[i]);
-            addPoint(returned);
-            addPoint(data[i]);
-            addLine(returned, data[i]);
-            data[i] = returned;
+            PointDouble returned = projection.project(project(region, data[j]), 1 / context.k);
+            context.addPoint(returned);
+            context.addPoint(data[j]);
+            context.addLine(returned, data[j]);
+            data[j] = returned;
         }
         
-        solver.setF(getCombinedPenaltyFunction(function, bounds, penaltyFunction, constraints, constraintPenaltyFunction, k));
+        if (region != null && penaltyBounds.isEmpty() && penaltyConstraints.isEmpty()) {
+            //Every part is linear, one solve over the region is exact
+            SolveContext inner = solver.solve(region.restrict(function), context.getTolerance(), deadline, data);
+            curr = project(region, inner.getResult());
+            context.addPoint(curr);
+            context.addToLog("i = " + i + "; Linear bounds and constraints enforced exactly; Solution: " + curr.toString(PRECISION) + cacheStatistics(inner));
+            context.addToLog("Log of the iteration " + i + ":");
+            context.addTrace(inner);
+            return curr;
+        }
+        
+        double tolerance = innerTolerance(context);
+        SolveContext inner = solver.solve(getLevelFunction(function, region, penaltyBounds, penaltyConstraints, context.k), tolerance, levelDeadline(deadline, MAX_LEVEL + 1), data);
+        PointDouble result = project(region, inner.getResult());
         
-        curr = returnToBounds(solver.solve(data));
-        addPoint(curr);
-        addToLog("i = " + i + "; k = " + k + "; Solution: " + curr.toString(PRECISION));
+        curr = projection.project(result, 1 / context.k);
+        context.addPoint(curr);
+        context.addToLog("i = " + i + "; k = " + context.k + "; Solution: " + curr.toString(PRECISION) + continuationStatistics(tolerance, result, penaltyBounds, penaltyConstraints, context.k) + cacheStatistics(inner));
     
         if (displayIteration == i) {
-            addToLog("Log of the iteration " + i + ":");
-            solver.getSolutionLog().forEach(this::addToLog);
-            solver.getPoints().forEach(this::addPoint);
-            solver.getLines().forEach(this::addLine);
+            context.addToLog("Log of the iteration " + i + ":");
+            context.addTrace(inner);
         }
         
         do {
             i++;
             prev = curr;
-            k *= kMulti;
+            context.k *= kMulti;
+            if (continuation) {
+                data = warmStart(data, prev);
+            }
+            tolerance = innerTolerance(context);
     
-            solver.setF(getCombinedPenaltyFunction(function, bounds, penaltyFunction, constraints, constraintPenaltyFunction, k));
+            inner = solver.solve(getLevelFunction(function, region, penaltyBounds, penaltyConstraints, context.k), tolerance, levelDeadline(deadline, MAX_LEVEL + 1 - i), data);
+            result = project(region, inner.getResult());
             
-            curr = returnToBounds(solver.solve(data));
+            curr = projection.project(result, 1 / context.k);
     
-            addPoint(curr);
-            addToLog("i = " + i + "; k = " + k + "; Solution: " + curr.toString(PRECISION));
+            context.addPoint(curr);
+            context.addToLog("i = " + i + "; k = " + context.k + "; Solution: " + curr.toString(PRECISION) + continuationStatistics(tolerance, result, penaltyBounds, penaltyConstraints, context.k) + cacheStatistics(inner));
     
             if (displayIteration == i) {
-                addToLog("Log of the iteration " + i + ":");
-                solver.getSolutionLog().forEach(this::addToLog);
-                solver.getPoints().forEach(this::addPoint);
-                solver.getLines().forEach(this::addLine);
+                context.addToLog("Log of the iteration " + i + ":");
+                context.addTrace(inner);
             }
             
-        } while (i < 16 && (curr.add(prev.scale(-1)).length() > EPSILON));
+        } while (i < MAX_LEVEL && !isFinished(context, tolerance, prev, curr, result, penaltyBounds, penaltyConstraints) && !isOutOfTime(context, deadline, i));
     
         if (displayIteration < 0 || displayIteration >= i) {
-            addToLog("Log of the iteration " + i + ":");
-            solver.getSolutionLog().forEach(this::addToLog);
-            solver.getPoints().forEach(this::addPoint);
-            solver.getLines().forEach(this::addLine);
+            context.addToLog("Log of the iteration " + i + ":");
+            context.addTrace(inner);
         }
         
-        solver.setF(function);
         return curr;
     }
     
-    @Override
-    protected int getLogBatchSize() {
-        return 1;
+    /**@return Deadline of the whole solve: the one of the call, brought forward by the time budget if there is one*/
+    protected long deadline(SolveContext context) {
+        return timeBudget > 0 ? Math.min(context.getDeadline(), System.nanoTime() + timeBudget * 1_000_000) : context.getDeadline();
     }
     
-    private PointDouble returnToBounds(PointDouble point) {
-        PointDouble totalGradient = new PointDouble(0, 0);
-        for (BiFunction<Double, Double, Double> bound : bounds) {
-            totalGradient = totalGradient.add(SolverUtils.gradient((x, y) -> Math.min(0, bound.apply(x, y)), point));
+    /**@return Deadline of the next inner solve: an equal share of the time left among the levels that may still run, so that the first ones can not take all of it*/
+    protected static long levelDeadline(long deadline, int levels) {
+        if (deadline == Long.MAX_VALUE) {
+            return deadline;
         }
-        if (totalGradient.length() < EPSILON) {
+        long now = System.nanoTime();
+        return now + Math.max(0, deadline - now) / levels;
+    }
+    
+    /**@return Whether the deadline has passed, noting it in the log*/
+    protected static boolean isOutOfTime(SolveContext context, long deadline, int i) {
+        if (System.nanoTime() < deadline) {
+            return false;
+        }
+        context.addToLog("Time budget spent after iteration " + i);
+        return true;
+    }
+    
+    /**@return Objective of a penalty level: the penalties of the nonlinear parts added, restricted to the region of the linear ones if there is one*/
+    private DoubleBinaryOperator getLevelFunction(DoubleBinaryOperator function, LinearRegion region, List<DoubleBinaryOperator> penaltyBounds, List<DoubleBinaryOperator> penaltyConstraints, double k) {
+        DoubleBinaryOperator combined = getCombinedPenaltyFunction(function, penaltyBounds, penaltyFunction, penaltyConstraints, constraintPenaltyFunction, k);
+        return region == null ? combined : region.restrict(combined);
+    }
+    
+    /**@return The point projected onto the region, or the point itself if there is no region*/
+    private static PointDouble project(LinearRegion region, PointDouble point) {
+        if (region == null) {
             return point;
         }
-        
-        BiFunction<Double, Double, Double> totalF = (x, y) -> {
-            double sum = 0;
-            for (int i = 0; i < bounds.size(); i++) {
-                sum += -Math.min(0, bounds.get(i).apply(x, y));
-            }
-            return sum;
-        };
-        
-        PointDouble res =  SolverUtils.findMinOnAxis(totalF/*getCombinedPenaltyFunction(function, bounds, penaltyFunction, k)*/, totalGradient, point);
-        
-        int i = 0;
-        PointDouble prevGradient = totalGradient;
-        while (i < 16 && totalGradient.length() > EPSILON) {
-            i++;
-            prevGradient = totalGradient;
+        Vector2 projected = new Vector2();
+        region.project(point.getX(), point.getY(), projected);
+        return projected.toPoint();
+    }
     
-            totalGradient = new PointDouble(0, 0);
-            for (BiFunction<Double, Double, Double> bound : bounds) {
-                totalGradient = totalGradient.add(SolverUtils.gradient((x, y) -> Math.min(0, bound.apply(x, y)), point));
-            }
-            
-            res =  SolverUtils.findMinOnAxis(totalF, totalGradient, res);
+    /**@return Tolerance of the inner solve at the current penalty factor. The penalty optimum is about 1/k off the constrained one, solving it finer is wasted*/
+    private double innerTolerance(Context context) {
+        if (!continuation) {
+            return context.getTolerance();
         }
-        
-        if (prevGradient.length() > EPSILON) {
-            res = res.add(prevGradient.normalize().scale(1 / k));
+        return Math.max(context.getTolerance(), Math.min(MAX_INNER_TOLERANCE, 1 / context.k));
+    }
+    
+    /**@return Start points moved so that the first one is at point, keeping the shape of a given simplex*/
+    static PointDouble[] warmStart(PointDouble[] data, PointDouble point) {
+        if (data.length == 0) {
+            return data;
         }
-        
-        return res;
+        PointDouble shift = point.add(data[0].scale(-1));
+        PointDouble[] starts = new PointDouble[data.length];
+        for (int j = 0; j < data.length; j++) {
+            starts[j] = data[j].add(shift);
+        }
+        return starts;
     }
     
-    public static BiFunction<Double, Double, Double> getCombinedPenaltyFunction(BiFunction<Double, Double, Double> function, List<BiFunction<Double, Double, Double>> bounds, BiFunction<List<Double>, Double, Double> penaltyFunction, List<BiFunction<Double, Double, Double>> constraints, BiFunction<List<Double>, Double, Double> constraintPenaltyFunction, double k) {
-        return (x, y) -> {
-            List<Double> values = new ArrayList<>();
-            List<Double> values2 = new ArrayList<>();
-            for (BiFunction<Double, Double, Double> bound : bounds) {
-                values.add(bound.apply(x, y));
-            }
-            for (BiFunction<Double, Double, Double> constraint : constraints) {
-                values2.add(constraint.apply(x, y));
-            }
-            return function.apply(x, y) + penaltyFunction.apply(values, k) + constraintPenaltyFunction.apply(values2, k);
-        };
+    /**
+     * @param result Solution of the inner solve, before returning it to the nonlinear bounds
+     * @return Whether raising the penalty factor further would not change the solution
+     */
+    private boolean isFinished(Context context, double tolerance, PointDouble prev, PointDouble curr, PointDouble result, List<DoubleBinaryOperator> penaltyBounds, List<DoubleBinaryOperator> penaltyConstraints) {
+        boolean settled = curr.add(prev.scale(-1)).length() <= context.getTolerance();
+        if (!continuation) {
+            return settled;
+        }
+        if (tolerance > context.getTolerance()) {
+            //A coarse inner solve may stop right at its warm start
+            return false;
+        }
+        //Barrier penalties are feasible from the start, the size of the penalty term tells how far they still pull the solution
+        return settled || violation(result) < violationTolerance && penalty(result, penaltyBounds, penaltyConstraints, context.k) < violationTolerance;
+    }
+    
+    /**@return Largest violation of a bound or a constraint at the point*/
+    private double violation(PointDouble point) {
+        double violation = 0;
+        for (DoubleBinaryOperator bound : bounds) {
+            violation = Math.max(violation, -bound.applyAsDouble(point.getX(), point.getY()));
+        }
+        for (DoubleBinaryOperator constraint : constraints) {
+            violation = Math.max(violation, Math.abs(constraint.applyAsDouble(point.getX(), point.getY())));
+        }
+        return violation;
+    }
+    
+    /**@return Penalty terms added to the objective at the point*/
+    private double penalty(PointDouble point, List<DoubleBinaryOperator> penaltyBounds, List<DoubleBinaryOperator> penaltyConstraints, double k) {
+        return penaltyFunction.apply(CombinedPenaltyFunction.values(penaltyBounds, point.getX(), point.getY(), new double[penaltyBounds.size()]), k)
+                + constraintPenaltyFunction.apply(CombinedPenaltyFunction.values(penaltyConstraints, point.getX(), point.getY(), new double[penaltyConstraints.size()]), k);
+    }
+    
+    private String continuationStatistics(double tolerance, PointDouble result, List<DoubleBinaryOperator> penaltyBounds, List<DoubleBinaryOperator> penaltyConstraints, double k) {
+        if (!continuation) {
+            return "";
+        }
+        return "; Tolerance = " + tolerance + "; Violation = " + BigDecimal.valueOf(violation(result)).round(new MathContext(PRECISION))
+                + "; Penalty = " + BigDecimal.valueOf(penalty(result, penaltyBounds, penaltyConstraints, k)).round(new MathContext(PRECISION));
+    }
+    
+    static String cacheStatistics(SolveContext context) {
+        EvaluationCache cache = context.getEvaluationCache();
+        if (cache == null || cache.getHits() + cache.getMisses() == 0) {
+            return "";
+        }
+        return "; Cache hit rate = " + BigDecimal.valueOf(cache.getHitRate()).setScale(PRECISION, RoundingMode.HALF_UP) + " (" + cache.getHits() + "/" + (cache.getHits() + cache.getMisses()) + ")";
+    }
+    
+    @Override
+    protected int getLogBatchSize() {
+        return 1;
+    }
+    
+    @Override
+    public boolean isLocal() {
+        return solver.isLocal();
+    }
+    
+    /**
+     * @return Objective with the penalties added. Its gradient combines the gradients of the parts through the chain rule.
+     * It evaluates the parts into buffers of the calling thread, so it is thread-safe without allocating
+     */
+    public static DoubleBinaryOperator getCombinedPenaltyFunction(DoubleBinaryOperator function, List<DoubleBinaryOperator> bounds, PenaltyFunction penaltyFunction, List<DoubleBinaryOperator> constraints, PenaltyFunction constraintPenaltyFunction, double k) {
+        return new CombinedPenaltyFunction(function, bounds, penaltyFunction, constraints, constraintPenaltyFunction, k);
     }
     
     public Solver getSolver() {
@@ -220,11 +337,19 @@ public class PenaltyAdjuster extends Solver {
         this.solver = solver;
     }
     
-    public BiFunction<List<Double>, Double, Double> getPenaltyFunction() {
+    public List<DoubleBinaryOperator> getBounds() {
+        return bounds;
+    }
+    
+    public List<DoubleBinaryOperator> getConstraints() {
+        return constraints;
+    }
+    
+    public PenaltyFunction getPenaltyFunction() {
         return penaltyFunction;
     }
     
-    public void setPenaltyFunction(BiFunction<List<Double>, Double, Double> penaltyFunction) {
+    public void setPenaltyFunction(PenaltyFunction penaltyFunction) {
         this.penaltyFunction = penaltyFunction;
         if (this.penaltyFunction == null) {
             penaltyFunction = (l, k) -> 0.0;
@@ -239,6 +364,48 @@ public class PenaltyAdjuster extends Solver {
         this.enabled = enabled;
     }
     
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+    
+    /**@param timeBudget Wall-clock milliseconds the whole solve may take, shared among its levels, 0 for no limit. Only inner solvers that can stop early keep to it*/
+    public void setTimeBudget(long timeBudget) {
+        if (timeBudget < 0) {
+            throw new IllegalArgumentException("Time budget has to be non-negative");
+        }
+        this.timeBudget = timeBudget;
+    }
+    
+    public boolean isContinuation() {
+        return continuation;
+    }
+    
+    /**@param continuation Whether each penalty level starts from the solution of the previous one, solved only as fine as its penalty factor warrants*/
+    public void setContinuation(boolean continuation) {
+        this.continuation = continuation;
+    }
+    
+    public boolean isExactLinear() {
+        return exactLinear;
+    }
+    
+    /**@param exactLinear Whether affine bounds and constraints are enforced exactly, by projecting onto their region, instead of through the penalty*/
+    public void setExactLinear(boolean exactLinear) {
+        this.exactLinear = exactLinear;
+    }
+    
+    public double getViolationTolerance() {
+        return violationTolerance;
+    }
+    
+    /**@param violationTolerance In continuation, levels stop once both the violation and the penalty term at the inner solution are below it*/
+    public void setViolationTolerance(double violationTolerance) {
+        if (violationTolerance < 0) {
+            throw new IllegalArgumentException("Violation tolerance has to be non-negative");
+        }
+        this.violationTolerance = violationTolerance;
+    }
+    
     public double getkStart() {
         return kStart;
     }
@@ -255,10 +422,6 @@ public class PenaltyAdjuster extends Solver {
         this.kMulti = kMulti;
     }
     
-    public double getK() {
-        return k;
-    }
-    
     public int getDisplayIteration() {
         return displayIteration;
     }
@@ -270,4 +433,93 @@ public class PenaltyAdjuster extends Solver {
     public double getKOfIteration(int i) {
         return kStart * Math.pow(kMulti, i);
     }
+    
+    /**Context of a penalty solve, reporting the penalty factor it finished with*/
+    public static class Context extends SolveContext {
+        double k;
+        
+        Context(DoubleBinaryOperator f, PenaltyAdjuster solver) {
+            super(f, solver);
+        }
+        
+        public double getK() {
+            return k;
+        }
+    }
+    
+    private static class CombinedPenaltyFunction implements DifferentiableFunction {
+        private final DoubleBinaryOperator function;
+        private final List<DoubleBinaryOperator> bounds;
+        private final PenaltyFunction penaltyFunction;
+        private final List<DoubleBinaryOperator> constraints;
+        private final PenaltyFunction constraintPenaltyFunction;
+        private final double k;
+        //Reused by every evaluation of a thread
+        private final ThreadLocal<Scratch> scratch;
+    
+        private CombinedPenaltyFunction(DoubleBinaryOperator function, List<DoubleBinaryOperator> bounds, PenaltyFunction penaltyFunction, List<DoubleBinaryOperator> constraints, PenaltyFunction constraintPenaltyFunction, double k) {
+            this.function = function;
+            this.bounds = bounds;
+            this.penaltyFunction = penaltyFunction;
+            this.constraints = constraints;
+            this.constraintPenaltyFunction = constraintPenaltyFunction;
+            this.k = k;
+            this.scratch = ThreadLocal.withInitial(() -> new Scratch(bounds.size(), constraints.size()));
+        }
+    
+        @Override
+        public double applyAsDouble(double x, double y) {
+            Scratch scratch = this.scratch.get();
+            return function.applyAsDouble(x, y) + penaltyFunction.apply(values(bounds, x, y, scratch.boundValues), k) + constraintPenaltyFunction.apply(values(constraints, x, y, scratch.constraintValues), k);
+        }
+    
+        @Override
+        public void gradient(double x, double y, Vector2 out) {
+            valueAndGradient(x, y, out);
+        }
+    
+        @Override
+        public double valueAndGradient(double x, double y, Vector2 out) {
+            double value = SolverUtils.valueAndGradient(function, x, y, out);
+            Scratch scratch = this.scratch.get();
+            values(bounds, x, y, scratch.boundValues);
+            values(constraints, x, y, scratch.constraintValues);
+            double boundPenalty = penaltyFunction.apply(scratch.boundValues, k);
+            double constraintPenalty = constraintPenaltyFunction.apply(scratch.constraintValues, k);
+            addPenaltyGradient(bounds, scratch.boundValues, penaltyFunction, x, y, scratch.partGradient, out);
+            addPenaltyGradient(constraints, scratch.constraintValues, constraintPenaltyFunction, x, y, scratch.partGradient, out);
+            return value + boundPenalty + constraintPenalty;
+        }
+        
+        /**Adds the sum of dP/dg * grad g over the parts. dP/dg comes from the penalty function over the values, which costs no evaluations of the parts*/
+        private void addPenaltyGradient(List<DoubleBinaryOperator> parts, double[] values, PenaltyFunction penalty, double x, double y, Vector2 partGradient, Vector2 out) {
+            for (int i = 0; i < values.length; i++) {
+                double derivative = penalty.derivative(values, i, k);
+                if (derivative == 0 || Double.isNaN(derivative) || Double.isInfinite(derivative)) {
+                    continue;
+                }
+                SolverUtils.gradient(parts.get(i), x, y, partGradient);
+                out.addScaled(partGradient, derivative);
+            }
+        }
+        
+        /**@return out, filled with the values of the parts at the point*/
+        private static double[] values(List<DoubleBinaryOperator> parts, double x, double y, double[] out) {
+            for (int i = 0; i < out.length; i++) {
+                out[i] = parts.get(i).applyAsDouble(x, y);
+            }
+            return out;
+        }
+        
+        private static class Scratch {
+            private final double[] boundValues;
+            private final double[] constraintValues;
+            private final Vector2 partGradient = new Vector2();
+            
+            private Scratch(int bounds, int constraints) {
+                boundValues = new double[bounds];
+                constraintValues = new double[constraints];
+            }
+        }
+    }
 }
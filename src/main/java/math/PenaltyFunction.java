@@ -0,0 +1,66 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Penalty of the values of the bounds or constraints at a point, for the penalty factor k.
+ * The values come in a buffer the caller reuses between evaluations: the function may read it, and may change an entry
+ * if it restores it, but must not keep it.
+ */
+@FunctionalInterface
+public interface PenaltyFunction {
+    double apply(double[] values, double k);
+
+    /**
+     * @return Derivative of the penalty by values[i]. Taken by a central difference over that value, with a step relative to
+     * the value alone, so its error does not grow with k; penalty functions that know their derivative override it
+     */
+    default double derivative(double[] values, int i, double k) {
+        double value = values[i];
+        //Cube root of the machine epsilon balances truncation and rounding of a central difference
+        double h = 6e-6 * Math.max(1, Math.abs(value));
+        values[i] = value + h;
+        double forward = apply(values, k);
+        values[i] = value - h;
+        double backward = apply(values, k);
+        values[i] = value;
+        return (forward - backward) / (2 * h);
+    }
+
+    /**@return Penalty function over a list of the values, boxing them on every evaluation*/
+    static PenaltyFunction of(BiFunction<List<Double>, Double, Double> function) {
+        if (function == null) {
+            return null;
+        }
+        return (values, k) -> {
+            List<Double> list = new ArrayList<>(values.length);
+            for (double value : values) {
+                list.add(value);
+            }
+            return function.apply(list, k);
+        };
+    }
+
+    /**@return Penalty function with an analytic derivative*/
+    static PenaltyFunction of(PenaltyFunction function, Derivative derivative) {
+        return new PenaltyFunction() {
+            @Override
+            public double apply(double[] values, double k) {
+                return function.apply(values, k);
+            }
+
+            @Override
+            public double derivative(double[] values, int i, double k) {
+                return derivative.apply(values, i, k);
+            }
+        };
+    }
+
+    /**Derivative of a penalty function by values[i], under the same rules for the buffer*/
+    @FunctionalInterface
+    interface Derivative {
+        double apply(double[] values, int i, double k);
+    }
+}
@@ -4,8 +4,8 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 
 public class PointDouble {
-    private Double x;
-    private Double y;
+    private double x;
+    private double y;
     
     public PointDouble(double x, double y) {
         this.x = x;
@@ -16,19 +16,19 @@ public class PointDouble {
         return new PointDouble(x, y);
     }
     
-    public Double getX() {
+    public double getX() {
         return x;
     }
     
-    public void setX(Double x) {
+    public void setX(double x) {
         this.x = x;
     }
     
-    public Double getY() {
+    public double getY() {
         return y;
     }
     
-    public void setY(Double y) {
+    public void setY(double y) {
         this.y = y;
     }
     
@@ -65,7 +65,7 @@ public class PointDouble {
         if (precision < 0) {
             return toString();
         }
-        if (x.isInfinite() || x.isNaN() || y.isInfinite() || y.isNaN()) {
+        if (Double.isInfinite(x) || Double.isNaN(x) || Double.isInfinite(y) || Double.isNaN(y)) {
             return toString();
         }
         
@@ -0,0 +1,257 @@
+package math;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleBinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Base of the population-based global solvers over the x/y range. Every generation a subclass proposes one candidate per member,
+ * the candidates are evaluated in parallel on a fork/join pool and the subclass accepts them into the population.
+ * Coordinates and values are kept in primitive arrays, one per component, that are reused by every generation.
+ * The objective has to be thread-safe, as compiled functions and penalty objectives are.
+ * Start points join the initial population, the rest of it is sampled uniformly from the range.
+ * Stops on the evaluation budget, or once the population has contracted below the tolerance.
+ * If the objective is restricted to a linear box by {@link LinearRegion}, the search covers only its part of the range.
+ */
+public abstract class PopulationSolver extends Solver {
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int populationSize = 40;
+    private long budget = 20000;
+    private long seed = 0;
+    private double lowerX = -1;
+    private double upperX = 1;
+    private double lowerY = -1;
+    private double upperY = 1;
+
+    @Override
+    public Context solve(DoubleBinaryOperator f, PointDouble... data) {
+        return (Context) super.solve(f, data);
+    }
+
+    @Override
+    protected Context createContext(DoubleBinaryOperator f) {
+        return new Context(f, this);
+    }
+
+    @Override
+    protected PointDouble solveInternal(SolveContext solveContext, PointDouble... data) {
+        Context context = (Context) solveContext;
+        //Counter and cache of the context are not thread-safe, generations evaluate the bare objective
+        DoubleBinaryOperator objective = context.getObjective();
+        Random random = new Random(seed);
+        Population population = createPopulation(Math.max(populationSize, data.length),
+                LinearRegion.searchRange(objective, lowerX, upperX, lowerY, upperY));
+        for (int i = 0; i < population.size; i++) {
+            if (i < data.length) {
+                population.trialX[i] = population.clampX(data[i].getX());
+                population.trialY[i] = population.clampY(data[i].getY());
+            }
+            else {
+                population.trialX[i] = population.lowerX + random.nextDouble() * (population.upperX - population.lowerX);
+                population.trialY[i] = population.lowerY + random.nextDouble() * (population.upperY - population.lowerY);
+            }
+        }
+        evaluate(context, objective, population);
+        System.arraycopy(population.trialX, 0, population.x, 0, population.size);
+        System.arraycopy(population.trialY, 0, population.y, 0, population.size);
+        System.arraycopy(population.trialValue, 0, population.value, 0, population.size);
+        initialize(population, random);
+
+        int best = population.best();
+        context.addPoint(population.x[best], population.y[best]);
+        while (context.evaluations + population.size <= budget && population.spread() > context.getTolerance()) {
+            propose(population, random);
+            evaluate(context, objective, population);
+            accept(population);
+            int next = population.best();
+            if (population.value[next] < population.value[best]) {
+                context.addLine(new PointDouble(population.x[best], population.y[best]), new PointDouble(population.x[next], population.y[next]));
+                context.addPoint(population.x[next], population.y[next]);
+            }
+            best = next;
+            context.generations++;
+            if (context.isTracing()) {
+                context.addToLog("Generation " + context.generations + ": spread " + population.spread() + "; Best: "
+                        + new PointDouble(population.x[best], population.y[best]).toString(PRECISION) + "; f = " + population.value[best]);
+            }
+        }
+        context.addToLog("Stopped after " + context.generations + " generations and " + context.evaluations + " evaluations; f = " + population.value[best]);
+        return new PointDouble(population.x[best], population.y[best]);
+    }
+
+    /**Evaluates the candidates in parallel on the pool, NaN ranked as infinity*/
+    private void evaluate(Context context, DoubleBinaryOperator objective, Population population) {
+        double[] xs = population.trialX;
+        double[] ys = population.trialY;
+        double[] values = population.trialValue;
+        pool.submit(() -> IntStream.range(0, population.size).parallel().forEach(i -> {
+            double value = objective.applyAsDouble(xs[i], ys[i]);
+            values[i] = Double.isNaN(value) ? Double.POSITIVE_INFINITY : value;
+        })).join();
+        context.evaluations += population.size;
+    }
+
+    /**@return Empty population over the range {lowerX, upperX, lowerY, upperY}. Subclasses with more state per member return a subclass*/
+    protected Population createPopulation(int size, double[] range) {
+        return new Population(size, range);
+    }
+
+    /**Sets up the state of the subclass once the initial population has been evaluated*/
+    protected void initialize(Population population, Random random) {
+    }
+
+    /**Writes one candidate per member into the trial arrays, inside the range*/
+    protected abstract void propose(Population population, Random random);
+
+    /**Takes the evaluated candidates into the population, whose values have to stay the best ones each member has seen*/
+    protected abstract void accept(Population population);
+
+    @Override
+    protected int getLogBatchSize() {
+        return 1;
+    }
+
+    /**Start points only seed the population, one solve takes all of them*/
+    @Override
+    public boolean isLocal() {
+        return false;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public int getPopulationSize() {
+        return populationSize;
+    }
+
+    /**@param populationSize Members of the population, raised to the amount of start points if there are more*/
+    public void setPopulationSize(int populationSize) {
+        if (populationSize < 4) {
+            throw new IllegalArgumentException("Population needs at least 4 members");
+        }
+        this.populationSize = populationSize;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**@param budget Evaluations a solve may use. The initial population is always evaluated*/
+    public void setBudget(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget has to be non-negative");
+        }
+        this.budget = budget;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setBounds(double lowerX, double upperX, double lowerY, double upperY) {
+        if (!(lowerX < upperX) || !(lowerY < upperY)) {
+            throw new IllegalArgumentException("Lower bounds of the range have to be below the upper ones");
+        }
+        this.lowerX = lowerX;
+        this.upperX = upperX;
+        this.lowerY = lowerY;
+        this.upperY = upperY;
+    }
+
+    /**
+     * Members of one solve as parallel arrays: x, y and value hold the members, or with memory the best point each has seen,
+     * trialX, trialY and trialValue the candidates of the current generation
+     */
+    protected static class Population {
+        protected final int size;
+        protected final double lowerX;
+        protected final double upperX;
+        protected final double lowerY;
+        protected final double upperY;
+        protected final double[] x;
+        protected final double[] y;
+        protected final double[] value;
+        protected final double[] trialX;
+        protected final double[] trialY;
+        protected final double[] trialValue;
+
+        protected Population(int size, double[] range) {
+            this.size = size;
+            lowerX = range[0];
+            upperX = range[1];
+            lowerY = range[2];
+            upperY = range[3];
+            x = new double[size];
+            y = new double[size];
+            value = new double[size];
+            trialX = new double[size];
+            trialY = new double[size];
+            trialValue = new double[size];
+        }
+
+        protected double clampX(double x) {
+            return Math.min(Math.max(x, lowerX), upperX);
+        }
+
+        protected double clampY(double y) {
+            return Math.min(Math.max(y, lowerY), upperY);
+        }
+
+        /**@return Index of the member with the least value*/
+        protected int best() {
+            int best = 0;
+            for (int i = 1; i < size; i++) {
+                if (value[i] < value[best]) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        /**@return Larger side of the bounding box of the members*/
+        protected double spread() {
+            double minX = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                minX = Math.min(minX, x[i]);
+                maxX = Math.max(maxX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxY = Math.max(maxY, y[i]);
+            }
+            return Math.max(maxX - minX, maxY - minY);
+        }
+    }
+
+    /**Context of a population solve, counting the evaluations of its generations*/
+    public static class Context extends SolveContext {
+        private long evaluations;
+        private int generations;
+
+        private Context(DoubleBinaryOperator f, PopulationSolver solver) {
+            super(f, solver);
+        }
+
+        /**@return Generations after the initial population*/
+        public int getGenerations() {
+            return generations;
+        }
+
+        /**@return Evaluations of all generations*/
+        @Override
+        public long getEvaluations() {
+            return super.getEvaluations() + evaluations;
+        }
+    }
+}
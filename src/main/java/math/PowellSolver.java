@@ -1,62 +1,61 @@
 package math;
 
 public class PowellSolver extends Solver {
-    private static final PointDouble AXIS_X = new PointDouble(1, 0);
-    private static final PointDouble AXIS_Y = new PointDouble(0, 1);
     private static final int I_MAX = 1024;
     
     @Override
-    protected PointDouble solveInternal(PointDouble... data) {
+    protected PointDouble solveInternal(SolveContext context, PointDouble... data) {
         if (data.length < 1) {
             throw new IllegalArgumentException("No parameters passed to solver");
         }
         
-        PointDouble startPoint = data[0];
-        
-        double prevX = startPoint.getX();
-        double prevY = startPoint.getY();
-        double currX = startPoint.getX();
-        double currY = startPoint.getY();
+        Vector2 curr = new Vector2(data[0]);
+        Vector2 prev = new Vector2(curr);
+        Vector2 lineStart = new Vector2();
+        Vector2 axisX = new Vector2(1, 0);
+        Vector2 axisY = new Vector2(0, 1);
+        Vector2 diagonal = new Vector2();
         int i = 0;
-        PointDouble axisX = AXIS_X;
-        PointDouble axisY = AXIS_Y;
-        while(!(i > I_MAX || (i > 0 && Math.sqrt(Math.pow(currX - prevX, 2) + Math.pow(currY - prevY, 2)) < EPSILON))) {
-            prevX = currX;
-            prevY = currY;
-            PointDouble res;
-    
-            addToLog(i + ") Begin: " + new PointDouble(currX, currY).toString(PRECISION));
+        while(!(i > I_MAX || (i > 0 && curr.distance(prev) < context.getTolerance()))) {
+            prev.set(curr);
             
-            res = findMinOnAxis(axisX, new PointDouble(currX, currY));
-            addLine(new PointDouble(prevX, prevY), res);
-            currX = res.getX();
-            currY = res.getY();
-    
-            addToLog(i + ") Minimum on axis X: " + new PointDouble(currX, currY).toString(PRECISION));
+            if (context.isTracing()) {
+                context.addToLog(i + ") Begin: " + curr.toString(PRECISION));
+            }
             
-            res = findMinOnAxis(axisY, new PointDouble(currX, currY));
-            addLine(new PointDouble(currX, currY), res);
-            currX = res.getX();
-            currY = res.getY();
+            findMinOnAxis(context, axisX, curr);
+            context.addLine(prev, curr);
     
-            addToLog(i + ") Minimum on axis Y: " + new PointDouble(currX, currY).toString(PRECISION));
+            if (context.isTracing()) {
+                context.addToLog(i + ") Minimum on axis X: " + curr.toString(PRECISION));
+            }
     
-            addLine(new PointDouble(prevX, prevY), res);
-            
-            axisX = new PointDouble(axisX.getX() / 2.0, axisX.getY() / 2.0);
-            axisY = new PointDouble(axisY.getX() / 2.0, axisY.getY() / 2.0);
+            lineStart.set(curr);
+            findMinOnAxis(context, axisY, curr);
+            context.addLine(lineStart, curr);
+    
+            if (context.isTracing()) {
+                context.addToLog(i + ") Minimum on axis Y: " + curr.toString(PRECISION));
+            }
+    
+            context.addLine(prev, curr);
+
+            axisX.scale(0.5);
+            axisY.scale(0.5);
             
-            res = findMinOnAxis(new PointDouble((currX - prevX) / 10.0, (currY - prevY) / 10.0), new PointDouble(currX, currY));
-            addLine(new PointDouble(currX, currY), res);
-            currX = res.getX();
-            currY = res.getY();
+            diagonal.set((curr.x - prev.x) / 10.0, (curr.y - prev.y) / 10.0);
+            lineStart.set(curr);
+            findMinOnAxis(context, diagonal, curr);
+            context.addLine(lineStart, curr);
     
-            addToLog(i + ") Minimum on diagonal axis: " + new PointDouble(currX, currY).toString(PRECISION));
+            if (context.isTracing()) {
+                context.addToLog(i + ") Minimum on diagonal axis: " + curr.toString(PRECISION));
+            }
             
             i++;
         }
-        
-        return new PointDouble(currX, currY);
+    
+        return curr.toPoint();
     }
     
     @Override
@@ -0,0 +1,306 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.DoubleBinaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Hierarchical grid search over the x/y range. The first level evaluates the centers of a grid over the whole range,
+ * every further level a finer grid around each of the best cells of the previous one, until the cells are smaller
+ * than the tolerance or the next level would exceed the evaluation budget. Each level is evaluated in parallel on a fork/join pool,
+ * so the objective has to be thread-safe, as compiled functions and penalty objectives are.
+ * Optionally the best candidates seed a local solver, run in parallel as well.
+ */
+public class ScanSolver extends Solver {
+    private Solver localSolver;
+    private int localStarts = 1;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int gridSize = 32;
+    private int refinedCells = 4;
+    private int refinementSize = 8;
+    private long budget = 20000;
+    private double lowerX = -1;
+    private double upperX = 1;
+    private double lowerY = -1;
+    private double upperY = 1;
+
+    @Override
+    public Context solve(DoubleBinaryOperator f, PointDouble... data) {
+        return (Context) super.solve(f, data);
+    }
+
+    @Override
+    protected Context createContext(DoubleBinaryOperator f) {
+        return new Context(f, this);
+    }
+
+    @Override
+    protected PointDouble solveInternal(SolveContext solveContext, PointDouble... data) {
+        Context context = (Context) solveContext;
+        //Counter and cache of the context are not thread-safe, the levels evaluate the bare objective
+        DoubleBinaryOperator objective = context.getObjective();
+
+        //Level 0: the whole range
+        double width = (upperX - lowerX) / gridSize;
+        double height = (upperY - lowerY) / gridSize;
+        int count = gridSize * gridSize;
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        for (int i = 0; i < gridSize; i++) {
+            for (int j = 0; j < gridSize; j++) {
+                xs[i * gridSize + j] = lowerX + (i + 0.5) * width;
+                ys[i * gridSize + j] = lowerY + (j + 0.5) * height;
+            }
+        }
+        double[] values = evaluate(context, objective, xs, ys, count);
+
+        double bestX = Double.NaN;
+        double bestY = Double.NaN;
+        double bestValue = Double.POSITIVE_INFINITY;
+        for (PointDouble point : data) {
+            double value = rank(objective.applyAsDouble(point.getX(), point.getY()));
+            context.evaluations++;
+            if (value < bestValue) {
+                bestX = point.getX();
+                bestY = point.getY();
+                bestValue = value;
+            }
+        }
+
+        int level = 0;
+        int[] best;
+        while (true) {
+            best = best(values, count, refinedCells);
+            if (values[best[0]] < bestValue || Double.isNaN(bestX)) {
+                if (!Double.isNaN(bestX)) {
+                    context.addLine(new PointDouble(bestX, bestY), new PointDouble(xs[best[0]], ys[best[0]]));
+                }
+                bestX = xs[best[0]];
+                bestY = ys[best[0]];
+                bestValue = values[best[0]];
+            }
+            context.addPoint(xs[best[0]], ys[best[0]]);
+            if (context.isTracing()) {
+                context.addToLog("Level " + level + ": " + count + " cells of " + new PointDouble(width, height).toString(PRECISION)
+                        + "; Best: " + new PointDouble(xs[best[0]], ys[best[0]]).toString(PRECISION) + "; f = " + values[best[0]]);
+            }
+
+            //Each refined area spans the cell and half of its neighbours
+            double nextWidth = 2 * width / refinementSize;
+            double nextHeight = 2 * height / refinementSize;
+            int nextCount = best.length * refinementSize * refinementSize;
+            if (Math.max(width, height) <= context.getTolerance() || context.evaluations + nextCount > budget) {
+                break;
+            }
+            double[] nextXs = new double[nextCount];
+            double[] nextYs = new double[nextCount];
+            int n = 0;
+            for (int cell : best) {
+                double cornerX = xs[cell] - width;
+                double cornerY = ys[cell] - height;
+                for (int i = 0; i < refinementSize; i++) {
+                    for (int j = 0; j < refinementSize; j++) {
+                        nextXs[n] = cornerX + (i + 0.5) * nextWidth;
+                        nextYs[n] = cornerY + (j + 0.5) * nextHeight;
+                        n++;
+                    }
+                }
+            }
+            xs = nextXs;
+            ys = nextYs;
+            count = nextCount;
+            width = nextWidth;
+            height = nextHeight;
+            values = evaluate(context, objective, xs, ys, count);
+            level++;
+        }
+
+        if (localSolver == null) {
+            return new PointDouble(bestX, bestY);
+        }
+        //The best cells of the last level, with the best point overall first
+        List<PointDouble> starts = new ArrayList<>();
+        starts.add(new PointDouble(bestX, bestY));
+        for (int cell : best(values, count, localStarts)) {
+            if (starts.size() < localStarts && (xs[cell] != bestX || ys[cell] != bestY)) {
+                starts.add(new PointDouble(xs[cell], ys[cell]));
+            }
+        }
+        List<ForkJoinTask<SolveContext>> tasks = new ArrayList<>(starts.size());
+        for (PointDouble start : starts) {
+            tasks.add(pool.submit(() -> localSolver.solve(objective, context.getTolerance(), start)));
+        }
+        PointDouble result = new PointDouble(bestX, bestY);
+        for (int i = 0; i < tasks.size(); i++) {
+            SolveContext local = tasks.get(i).join();
+            context.localRuns.add(local);
+            context.addTrace(local);
+            double value = rank(objective.applyAsDouble(local.getResult().getX(), local.getResult().getY()));
+            context.evaluations++;
+            context.addToLog("Local solve " + i + " from " + starts.get(i).toString(PRECISION) + ": " + local.getResult().toString(PRECISION) + "; f = " + value);
+            if (value < bestValue) {
+                result = local.getResult();
+                bestValue = value;
+            }
+        }
+        return result;
+    }
+
+    /**@return Values of the objective at the points, NaN ranked as infinity, evaluated in parallel on the pool*/
+    private double[] evaluate(Context context, DoubleBinaryOperator objective, double[] xs, double[] ys, int count) {
+        double[] values = new double[count];
+        pool.submit(() -> IntStream.range(0, count).parallel().forEach(i -> values[i] = rank(objective.applyAsDouble(xs[i], ys[i])))).join();
+        context.evaluations += count;
+        return values;
+    }
+
+    private static double rank(double value) {
+        return Double.isNaN(value) ? Double.POSITIVE_INFINITY : value;
+    }
+
+    /**@return Indices of the up to amount smallest values, the smallest first*/
+    private static int[] best(double[] values, int count, int amount) {
+        int[] best = new int[Math.min(amount, count)];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (found == best.length && values[i] >= values[best[found - 1]]) {
+                continue;
+            }
+            int j = found < best.length ? found++ : found - 1;
+            while (j > 0 && values[best[j - 1]] > values[i]) {
+                best[j] = best[j - 1];
+                j--;
+            }
+            best[j] = i;
+        }
+        return Arrays.copyOf(best, found);
+    }
+
+    @Override
+    protected int getLogBatchSize() {
+        return 1;
+    }
+
+    @Override
+    public boolean isLocal() {
+        return false;
+    }
+
+    public Solver getLocalSolver() {
+        return localSolver;
+    }
+
+    /**@param localSolver Solver started from the best candidates of the scan, null to return the best grid point*/
+    public void setLocalSolver(Solver localSolver) {
+        this.localSolver = localSolver;
+    }
+
+    public int getLocalStarts() {
+        return localStarts;
+    }
+
+    /**@param localStarts Amount of candidates the local solver is started from*/
+    public void setLocalStarts(int localStarts) {
+        if (localStarts < 1) {
+            throw new IllegalArgumentException("At least one local start is required");
+        }
+        this.localStarts = localStarts;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public int getGridSize() {
+        return gridSize;
+    }
+
+    /**@param gridSize Cells per side of the first level*/
+    public void setGridSize(int gridSize) {
+        if (gridSize < 1) {
+            throw new IllegalArgumentException("Grid size has to be positive");
+        }
+        this.gridSize = gridSize;
+    }
+
+    public int getRefinedCells() {
+        return refinedCells;
+    }
+
+    /**@param refinedCells Amount of best cells of a level the next level refines*/
+    public void setRefinedCells(int refinedCells) {
+        if (refinedCells < 1) {
+            throw new IllegalArgumentException("At least one cell has to be refined");
+        }
+        this.refinedCells = refinedCells;
+    }
+
+    public int getRefinementSize() {
+        return refinementSize;
+    }
+
+    /**@param refinementSize Cells per side of the grid around a refined cell, which spans two cells. Above 2 the cells shrink every level*/
+    public void setRefinementSize(int refinementSize) {
+        if (refinementSize < 3) {
+            throw new IllegalArgumentException("Refinement size has to be at least 3");
+        }
+        this.refinementSize = refinementSize;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**@param budget Evaluations the levels may use. The first level is always evaluated*/
+    public void setBudget(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget has to be non-negative");
+        }
+        this.budget = budget;
+    }
+
+    public void setBounds(double lowerX, double upperX, double lowerY, double upperY) {
+        if (!(lowerX < upperX) || !(lowerY < upperY)) {
+            throw new IllegalArgumentException("Lower bounds of the range have to be below the upper ones");
+        }
+        this.lowerX = lowerX;
+        this.upperX = upperX;
+        this.lowerY = lowerY;
+        this.upperY = upperY;
+    }
+
+    /**Context of a scan, counting the evaluations of its levels and local solves*/
+    public static class Context extends SolveContext {
+        private long evaluations;
+        private final List<SolveContext> localRuns = new ArrayList<>();
+
+        private Context(DoubleBinaryOperator f, ScanSolver solver) {
+            super(f, solver);
+        }
+
+        /**@return Contexts of the local solves, in start order*/
+        public List<SolveContext> getLocalRuns() {
+            return localRuns;
+        }
+
+        /**@return Evaluations of the levels and of all local solves*/
+        @Override
+        public long getEvaluations() {
+            return super.getEvaluations() + evaluations + localRuns.stream().mapToLong(SolveContext::getEvaluations).sum();
+        }
+
+        /**@return Gradient evaluations of the local solves*/
+        @Override
+        public long getGradientEvaluations() {
+            return super.getGradientEvaluations() + localRuns.stream().mapToLong(SolveContext::getGradientEvaluations).sum();
+        }
+    }
+}
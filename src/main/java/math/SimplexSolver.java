@@ -1,10 +1,5 @@
 package math;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
-
 public class SimplexSolver extends Solver {
     private static final int I_MAX = 1024;
     private double alpha = 1;
@@ -13,7 +8,7 @@ public class SimplexSolver extends Solver {
     private double initStep = 1;
     
     @Override
-    protected PointDouble solveInternal(PointDouble... data) {
+    protected PointDouble solveInternal(SolveContext context, PointDouble... data) {
         
         PointDouble p1;
         PointDouble p2;
@@ -38,8 +33,12 @@ public class SimplexSolver extends Solver {
                 p3 = data[2];
         }
         
-        List<PointDouble> points = Arrays.asList(p1, p2, p3);
-        List<Double> pointValues;
+        Vector2[] points = {new Vector2(p1), new Vector2(p2), new Vector2(p3)};
+        double[] pointValues = new double[3];
+        Vector2 pc = new Vector2();
+        Vector2 po = new Vector2();
+        Vector2 pr = new Vector2();
+        Vector2 ps = new Vector2();
         int ph = 2;
         int pg = 1;
         int pl = 0;
@@ -50,26 +49,35 @@ public class SimplexSolver extends Solver {
             iteration++;
             double sqrAvg = 0;
             double avg = 0;
-            pointValues = points.stream().map(p -> getF().apply(p.getX(), p.getY())).collect(Collectors.toList());
-            avg = (pointValues.get(0) + pointValues.get(1) + pointValues.get(2)) / 3;
+            for (int i = 0; i < pointValues.length; i++) {
+                pointValues[i] = context.getF().applyAsDouble(points[i].x, points[i].y);
+            }
+            avg = (pointValues[0] + pointValues[1] + pointValues[2]) / 3;
             /*for (Double v : pointValues) {
                 sqrAvg += Math.pow(v - avg, 2) / 3.0;
             }*/
-            sqrAvg = ((pointValues.get(0) - avg) * (pointValues.get(0) - avg) + (pointValues.get(1) - avg) * (pointValues.get(1) - avg) + (pointValues.get(2) - avg) * (pointValues.get(2) - avg)) / 3.0;
+            sqrAvg = ((pointValues[0] - avg) * (pointValues[0] - avg) + (pointValues[1] - avg) * (pointValues[1] - avg) + (pointValues[2] - avg) * (pointValues[2] - avg)) / 3.0;
             
-            points.forEach(this::addPoint);
-            addLine(new LineDouble(points.get(0), points.get(1)));
-            addLine(new LineDouble(points.get(1), points.get(2)));
-            addLine(new LineDouble(points.get(2), points.get(0)));
-            addToLog(iteration + ") p1 = " + points.get(0).toString(PRECISION) + "; p2 = " + points.get(1).toString(PRECISION)  + "; p3 = " + points.get(2).toString(PRECISION));
+            if (context.isTracing()) {
+                PointDouble t1 = points[0].toPoint();
+                PointDouble t2 = points[1].toPoint();
+                PointDouble t3 = points[2].toPoint();
+                context.addPoint(t1);
+                context.addPoint(t2);
+                context.addPoint(t3);
+                context.addLine(t1, t2);
+                context.addLine(t2, t3);
+                context.addLine(t3, t1);
+                context.addToLog(iteration + ") p1 = " + t1.toString(PRECISION) + "; p2 = " + t2.toString(PRECISION) + "; p3 = " + t3.toString(PRECISION));
+            }
             
             //Finish condition
-            if (Math.sqrt(sqrAvg) < EPSILON) {
+            if (Math.sqrt(sqrAvg) < context.getTolerance()) {
                 break;
             }
             //Point 1
-            if (pointValues.get(0) > pointValues.get(1)) {
-                if (pointValues.get(0) > pointValues.get(2)) {
+            if (pointValues[0] > pointValues[1]) {
+                if (pointValues[0] > pointValues[2]) {
                     ph = 0;
                 }
                 else {
@@ -77,7 +85,7 @@ public class SimplexSolver extends Solver {
                 }
             }
             else {
-                if (pointValues.get(0) > pointValues.get(2)) {
+                if (pointValues[0] > pointValues[2]) {
                     pg = 0;
                 }
                 else {
@@ -85,8 +93,8 @@ public class SimplexSolver extends Solver {
                 }
             }
             //Point 2
-            if (pointValues.get(1) > pointValues.get(0)) {
-                if (pointValues.get(1) > pointValues.get(2)) {
+            if (pointValues[1] > pointValues[0]) {
+                if (pointValues[1] > pointValues[2]) {
                     ph = 1;
                 }
                 else {
@@ -94,7 +102,7 @@ public class SimplexSolver extends Solver {
                 }
             }
             else {
-                if (pointValues.get(1) > pointValues.get(2)) {
+                if (pointValues[1] > pointValues[2]) {
                     pg = 1;
                 }
                 else {
@@ -102,8 +110,8 @@ public class SimplexSolver extends Solver {
                 }
             }
             //Point 3
-            if (pointValues.get(2) > pointValues.get(1)) {
-                if (pointValues.get(2) > pointValues.get(0)) {
+            if (pointValues[2] > pointValues[1]) {
+                if (pointValues[2] > pointValues[0]) {
                     ph = 2;
                 }
                 else {
@@ -111,7 +119,7 @@ public class SimplexSolver extends Solver {
                 }
             }
             else {
-                if (pointValues.get(2) > pointValues.get(0)) {
+                if (pointValues[2] > pointValues[0]) {
                     pg = 2;
                 }
                 else {
@@ -119,71 +127,67 @@ public class SimplexSolver extends Solver {
                 }
             }
             //Find center
-            PointDouble pc = (points.get(pl).add(points.get(pg))).scale(0.5);
-            double valPc = getF().apply(pc.getX(), pc.getY());
+            pc.set(points[pl]).add(points[pg]).scale(0.5);
             //Mirror
-            PointDouble po = pc.scale(1 + alpha).add(points.get(ph).scale(- alpha));
-            double valPo = getF().apply(po.getX(), po.getY());
+            po.set(pc).scale(1 + alpha).addScaled(points[ph], -alpha);
+            double valPo = context.getF().applyAsDouble(po.x, po.y);
             
-            PointDouble pr = po;
-            double valPr = valPo;
+            double valPr;
             //Extend
-            if (valPo < pointValues.get(pl)) {
-                pr = pc.scale(1 - beta).add(po.scale(beta));
-                valPr = getF().apply(pr.getX(), pr.getY());
-                addPoint(pr);
+            if (valPo < pointValues[pl]) {
+                pr.set(pc).scale(1 - beta).addScaled(po, beta);
+                valPr = context.getF().applyAsDouble(pr.x, pr.y);
+                context.addPoint(pr);
                 
                 //Iteration finish
-                if (valPr < pointValues.get(pl)) {
-                    points.set(ph, pr);
-                    addToLog("\r\nSimplex extended");
+                if (valPr < pointValues[pl]) {
+                    points[ph].set(pr);
+                    context.addToLog("\r\nSimplex extended");
                     continue;
                 }
                 else {
-                    points.set(ph, po);
-                    addToLog("\r\nSimplex mirrored");
+                    points[ph].set(po);
+                    context.addToLog("\r\nSimplex mirrored");
                     continue;
                 }
             }
     
             //Possible iteration finish
-            if (valPo <= pointValues.get(pg)) {
-                points.set(ph, po);
-                addToLog("\r\nSimplex mirrored");
+            if (valPo <= pointValues[pg]) {
+                points[ph].set(po);
+                context.addToLog("\r\nSimplex mirrored");
                 continue;
             }
             
-            PointDouble ps;
             double valPs;
             //Shrink
-            if (valPo < pointValues.get(ph)) {
-                ps = po.scale(gamma).add(pc.scale(1 - gamma));
-                valPs = getF().apply(ps.getX(), ps.getY());
+            if (valPo < pointValues[ph]) {
+                ps.set(po).scale(gamma).addScaled(pc, 1 - gamma);
             }
             else {
-                ps = points.get(ph).scale(gamma).add(pc.scale(1 - gamma));
-                valPs = getF().apply(ps.getX(), ps.getY());
+                ps.set(points[ph]).scale(gamma).addScaled(pc, 1 - gamma);
             }
-            addPoint(ps);
+            valPs = context.getF().applyAsDouble(ps.x, ps.y);
+            context.addPoint(ps);
             //Possible iteration finish
-            if (valPs < pointValues.get(ph)) {
-                points.set(ph, ps);
-                addToLog("\r\nSimplex shrunk");
+            if (valPs < pointValues[ph]) {
+                points[ph].set(ps);
+                context.addToLog("\r\nSimplex shrunk");
                 continue;
             }
     
             //Decrease simplex scale
-            for (int i = 0; i < points.size(); i++) {
+            for (int i = 0; i < points.length; i++) {
                 if (i == pl) {
                     continue;
                 }
-                points.set(i, points.get(i).add(points.get(i).add(points.get(pl).scale(-1)).scale(0.5)));
-                pointValues.set(i, getF().apply(points.get(i).getX(), points.get(i).getY()));
+                points[i].add((points[i].x - points[pl].x) * 0.5, (points[i].y - points[pl].y) * 0.5);
+                pointValues[i] = context.getF().applyAsDouble(points[i].x, points[i].y);
             }
-            addToLog("\r\nSimplex scale halved");
+            context.addToLog("\r\nSimplex scale halved");
         }
         
-        return points.get(pl);
+        return points[pl].toPoint();
     }
     
     @Override
@@ -0,0 +1,222 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * State of one {@link Solver#solve} call: the objective, the trace, evaluation counters, the evaluation cache and the scratch of the line search.
+ * Every call gets its own context, so a configured solver can be shared between threads. A context itself is not thread-safe.
+ */
+public class SolveContext {
+    private final DoubleBinaryOperator objective;
+    private final DoubleBinaryOperator f;
+    private final Counter counter;
+    private final EvaluationCache cache;
+    private final boolean tracing;
+    private final int logBatchSize;
+    private final List<String> log = new ArrayList<>();
+    private final List<PointDouble> points = new ArrayList<>();
+    private final List<LineDouble> lines = new ArrayList<>();
+    private PointDouble result;
+    private double tolerance;
+    private long deadline = Long.MAX_VALUE;
+
+    //Scratch of the line search on the segment from lineStart to lineEnd
+    final Vector2 lineStart = new Vector2();
+    final Vector2 lineEnd = new Vector2();
+    DoubleBinaryOperator lineFunction;
+    private Supplier<Solver1D> lineSolverFactory;
+    private Solver1D lineSolver;
+
+    protected SolveContext(DoubleBinaryOperator objective, Solver solver) {
+        if (objective == null) {
+            throw new IllegalArgumentException("No function passed to solver");
+        }
+        this.objective = objective;
+        this.counter = objective instanceof DifferentiableFunction ? new DifferentiableCounter((DifferentiableFunction) objective) : new Counter(objective);
+        this.cache = solver.getCacheCapacity() > 0 ? new EvaluationCache(counter, solver.getCacheCapacity()) : null;
+        this.f = cache != null ? cache : counter;
+        this.tracing = solver.isTracing();
+        this.logBatchSize = solver.getLogBatchSize();
+        this.tolerance = solver.getTolerance();
+    }
+
+    /**@return 1D solver minimizing lineFunction over the segment from lineStart to lineEnd, created once per factory*/
+    Solver1D lineSolver(Supplier<Solver1D> factory) {
+        if (lineSolver == null || lineSolverFactory != factory) {
+            lineSolverFactory = factory;
+            lineSolver = factory.get();
+            lineSolver.setTracing(false);
+            lineSolver.setF(a -> lineFunction.applyAsDouble(lineStart.x * (1 - a) + lineEnd.x * a, lineStart.y * (1 - a) + lineEnd.y * a));
+        }
+        return lineSolver;
+    }
+
+    /**@return Objective as seen by the solver: counted, and cached if the solver has caching enabled*/
+    public DoubleBinaryOperator getF() {
+        return f;
+    }
+
+    /**@return Objective as passed to the solve call, without the counter and the cache*/
+    public DoubleBinaryOperator getObjective() {
+        return objective;
+    }
+
+    /**@return Cache used by the solve, with its hit statistics, null if caching was disabled*/
+    public EvaluationCache getEvaluationCache() {
+        return cache;
+    }
+
+    /**@return Evaluations of the objective that were not answered by the cache*/
+    public long getEvaluations() {
+        return counter.evaluations;
+    }
+
+    /**@return Gradient evaluations of the objective that were not answered by the cache*/
+    public long getGradientEvaluations() {
+        return counter.gradients;
+    }
+
+    public PointDouble getResult() {
+        return result;
+    }
+
+    void setResult(PointDouble result) {
+        this.result = result;
+    }
+
+    /**@return Stopping tolerance of the solve, the solver's own unless the call passed another*/
+    public double getTolerance() {
+        return tolerance;
+    }
+    
+    void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**@return {@link System#nanoTime} by which the solve should return, Long.MAX_VALUE if the call set none*/
+    public long getDeadline() {
+        return deadline;
+    }
+
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+    
+    /**@return Whether the log, points and lines are recorded. Solvers skip building log entries when this is off*/
+    public boolean isTracing() {
+        return tracing;
+    }
+
+    public void addToLog(String value) {
+        if (tracing) {
+            log.add(value);
+        }
+    }
+    public void addPoint(PointDouble point) {
+        if (tracing) {
+            points.add(point);
+        }
+    }
+    public void addPoint(double x, double y) {
+        if (tracing) {
+            points.add(new PointDouble(x, y));
+        }
+    }
+    public void addPoint(Vector2 point) {
+        if (tracing) {
+            points.add(point.toPoint());
+        }
+    }
+    public void addLine(LineDouble line) {
+        if (tracing) {
+            lines.add(line);
+        }
+    }
+    public void addLine(PointDouble a, PointDouble b) {
+        if (tracing) {
+            lines.add(new LineDouble(a, b));
+        }
+    }
+    public void addLine(Vector2 a, Vector2 b) {
+        if (tracing) {
+            lines.add(new LineDouble(a.toPoint(), b.toPoint()));
+        }
+    }
+
+    /**Appends the trace of another solve, typically of an inner solver*/
+    public void addTrace(SolveContext context) {
+        context.getSolutionLog().forEach(this::addToLog);
+        context.points.forEach(this::addPoint);
+        context.lines.forEach(this::addLine);
+    }
+
+    /**@return Returns log as a list of string, each representing a solution step*/
+    public List<String> getSolutionLog() {
+        List<String> strings = new ArrayList<>();
+        StringBuilder string = new StringBuilder();
+        for (int i = 0; i < this.log.size(); ++i) {
+            if (i % logBatchSize == 0 && string.length() != 0) {
+                strings.add(string.toString());
+                string = new StringBuilder();
+            }
+            string.append(this.log.get(i)).append(" ");
+        }
+        if (string.length() != 0) {
+            strings.add(string.toString());
+        }
+        return strings;
+    }
+
+    public List<PointDouble> getPoints() {
+        return points;
+    }
+    public List<LineDouble> getLines() {
+        return lines;
+    }
+
+    private static class Counter implements DoubleBinaryOperator {
+        private final DoubleBinaryOperator f;
+        long evaluations;
+        long gradients;
+
+        private Counter(DoubleBinaryOperator f) {
+            this.f = f;
+        }
+
+        @Override
+        public double applyAsDouble(double x, double y) {
+            evaluations++;
+            return f.applyAsDouble(x, y);
+        }
+    }
+
+    private static class DifferentiableCounter extends Counter implements DifferentiableFunction {
+        private final DifferentiableFunction f;
+
+        private DifferentiableCounter(DifferentiableFunction f) {
+            super(f);
+            this.f = f;
+        }
+
+        @Override
+        public void gradient(double x, double y, Vector2 out) {
+            gradients++;
+            f.gradient(x, y, out);
+        }
+
+        @Override
+        public double valueAndGradient(double x, double y, Vector2 gradient) {
+            evaluations++;
+            gradients++;
+            return f.valueAndGradient(x, y, gradient);
+        }
+
+        @Override
+        public void hessian(double x, double y, double[] out) {
+            f.hessian(x, y, out);
+        }
+    }
+}
@@ -1,181 +1,109 @@
 package math;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
 
+/**
+ * Minimization method. A solver only holds its configuration: every {@link #solve} call keeps its objective, trace and counters
+ * in its own {@link SolveContext}, so one configured instance can serve concurrent solves. Configure it before sharing.
+ */
 public abstract class Solver {
     public static final Double EPSILON = 0.001;
     public static int PRECISION = 3;
-    private BiFunction<Double, Double, Double> f;
-    private List<String> log = new ArrayList<>();
-    private List<PointDouble> points = new ArrayList<>();
-    private List<LineDouble> lines = new ArrayList<>();
+    private boolean tracing = true;
+    private int cacheCapacity = 0;
+    private double tolerance = EPSILON;
+    private LineSearch lineSearch = new ExactLineSearch(BrentSolver::new);
     
-    public Solver(){}
-    public Solver(BiFunction<Double, Double, Double> f) {
-        this.f = f;
+    /**@return Context of the call, holding the result, the trace and the evaluation counters*/
+    public SolveContext solve(DoubleBinaryOperator f, PointDouble... data) {
+        return solve(f, tolerance, data);
     }
-
-    public BiFunction<Double, Double, Double> getF() {
-        return this.f;
+    
+    /**@param tolerance Stopping tolerance of this call, in place of the configured one. Lets a wrapper solve its inner problems coarser*/
+    public SolveContext solve(DoubleBinaryOperator f, double tolerance, PointDouble... data) {
+        return solve(f, tolerance, Long.MAX_VALUE, data);
     }
-
-    public void setF(BiFunction<Double, Double, Double> f) {
-        this.f = f;
+    
+    /**@param deadline {@link System#nanoTime} by which the call should return, kept by the solvers that can stop early. Lets a wrapper share one time budget among its inner solves*/
+    public SolveContext solve(DoubleBinaryOperator f, double tolerance, long deadline, PointDouble... data) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("Tolerance has to be positive");
+        }
+        SolveContext context = createContext(f);
+        context.setTolerance(tolerance);
+        context.setDeadline(deadline);
+        context.setResult(solveInternal(context, data));
+        return context;
     }
     
-    public PointDouble solve(PointDouble... data) {
-        points.clear();
-        log.clear();
-        lines.clear();
-        return solveInternal(data);
+    /**@return Fresh context for a solve of f. Solvers that report more than the common state return a subclass*/
+    protected SolveContext createContext(DoubleBinaryOperator f) {
+        return new SolveContext(f, this);
     }
     
-    protected abstract PointDouble solveInternal(PointDouble... data);
+    protected abstract PointDouble solveInternal(SolveContext context, PointDouble... data);
     protected abstract int getLogBatchSize();
 
-    protected void addToLog(String value) {
-        log.add(value);
-    }
-    protected void addPoint(PointDouble point) {
-        points.add(point);
-    }
-    protected void addLine(LineDouble line) {
-        lines.add(line);
-    }
-    protected void addLine(PointDouble a, PointDouble b) {
-        lines.add(new LineDouble(a, b));
+    /**@return Whether the solve searches from its start points, so that other start points can lead to other minima. Global solvers cover their range by themselves*/
+    public boolean isLocal() {
+        return true;
     }
 
-    /**@return Returns log as a list of string, each representing a solution step*/
-    public List<String> getSolutionLog() {
-        List<String> strings = new ArrayList<>();
-        StringBuilder string = new StringBuilder();
-        for (int i = 0; i < this.log.size(); ++i) {
-            if (i % getLogBatchSize() == 0 && string.length() != 0) {
-                strings.add(string.toString());
-                string = new StringBuilder();
-            }
-            string.append(this.log.get(i)).append(" ");
-        }
-        if (string.length() != 0) {
-            strings.add(string.toString());
-        }
-        return strings;
+    public int getCacheCapacity() {
+        return cacheCapacity;
     }
     
-    public List<PointDouble> getPoints() {
-        return points;
-    }
-    public List<LineDouble> getLines() {
-        return lines;
+    /**@param cacheCapacity Amount of points memoized during each solve, 0 to disable the cache*/
+    public void setCacheCapacity(int cacheCapacity) {
+        this.cacheCapacity = cacheCapacity;
     }
     
-    public PointDouble gradient(PointDouble point) {
-        return new PointDouble(fdx(point, 1), fdy(point, 1));
+    public double getTolerance() {
+        return tolerance;
     }
     
-    public double fdx(PointDouble point, int order) {
-        if (order < 0) {
-            throw new IllegalArgumentException("Derivative order has to be non-negative");
-        }
-        if (order == 0) {
-            return f.apply(point.getX(), point.getY());
+    /**@param tolerance Step, spread or gradient size below which solves stop, {@link #EPSILON} by default*/
+    public void setTolerance(double tolerance) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("Tolerance has to be positive");
         }
-        return (fdx(point.add(EPSILON, 0), order - 1) - fdx(point, order - 1)) / EPSILON;
+        this.tolerance = tolerance;
     }
     
-    public double fdx(PointDouble point) {
-        return fdx(point, 1);
+    public LineSearch getLineSearch() {
+        return lineSearch;
     }
     
-    public double fdy(PointDouble point, int order) {
-        if (order < 0) {
-            throw new IllegalArgumentException("Derivative order has to be non-negative");
+    /**@param lineSearch Strategy of {@link #findMinOnAxis}. Exact search by default, {@link ArmijoLineSearch} and {@link WolfeLineSearch} take cheaper inexact steps*/
+    public void setLineSearch(LineSearch lineSearch) {
+        if (lineSearch == null) {
+            throw new IllegalArgumentException("Line search is required");
         }
-        if (order == 0) {
-            return f.apply(point.getX(), point.getY());
-        }
-        return (fdy(point.add(0, EPSILON), order - 1) - fdy(point, order - 1)) / EPSILON;
+        this.lineSearch = lineSearch;
     }
     
-    public double fdy(PointDouble point) {
-        return fdy(point, 1);
+    /**@return Whether solves record the log, points and lines*/
+    public boolean isTracing() {
+        return tracing;
     }
     
-    protected PointDouble findMinOnAxis(PointDouble axis, PointDouble startPoint) {
-        axis = new PointDouble(Math.min(Math.max(axis.getX(), -Double.MAX_VALUE), Double.MAX_VALUE), Math.min(Math.max(axis.getY(), -Double.MAX_VALUE), Double.MAX_VALUE));
-        if (axis.getX().isNaN() || axis.getY().isNaN()) {
-            return startPoint;
-        }
-        
-        int i = 0;
-        double prevX = startPoint.getX();
-        double prevY = startPoint.getY();
-        double currX = startPoint.getX();
-        double currY = startPoint.getY();
-        double nextX = currX + axis.getX() * Math.pow(2, i);
-        double nextY = currY + axis.getY() * Math.pow(2, i);
-        i++;
-        addPoint(new PointDouble(currX, currY));
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+    
+    /**Writes the gradient at the point into out, exact when the function provides it, forward differences otherwise*/
+    protected void gradient(SolveContext context, Vector2 point, Vector2 out) {
+        SolverUtils.gradient(context.getF(), point.x, point.y, out);
+    }
     
-        do {
-            nextX = currX + axis.getX() * Math.pow(2, i);
-            nextY = currY + axis.getY() * Math.pow(2, i);
-            addPoint(new PointDouble(nextX, nextY));
-            if (getF().apply(currX, currY) > getF().apply(nextX, nextY)) {
-                //Positive direction
-                while (getF().apply(currX, currY) > getF().apply(nextX, nextY)) {
-                    prevX = currX;
-                    prevY = currY;
-                    currX = nextX;
-                    currY = nextY;
-                    nextX = currX + axis.getX() * Math.pow(2, i);
-                    nextY = currY + axis.getY() * Math.pow(2, i);
-                    i++;
-                    addPoint(new PointDouble(nextX, nextY));
-                }
-                double minX = prevX;
-                double maxX = nextX;
-                double minY = prevY;
-                double maxY = nextY;
-                Solver1D solver = new GoldenRatioSolver();
-                solver.setF(a -> getF().apply(minX * (1 - a) + maxX * a, minY * (1 - a) + maxY * a));
-                PointDouble res = solver.solve(0, 1);
-                PointDouble point = new PointDouble(maxX * res.getX() + minX * (1 - res.getX()), maxY * res.getX() + minY * (1 - res.getX()));
-                addPoint(point);
-                return point;
-            }
-            nextX = currX - axis.getX() * Math.pow(2, i - 1);
-            nextY = currY - axis.getY() * Math.pow(2, i - 1);
-            addPoint(new PointDouble(nextX, nextY));
-            if (getF().apply(currX, currY) > getF().apply(nextX, nextY)) {
-                //Negative direction
-                while (getF().apply(currX, currY) > getF().apply(nextX, nextY)) {
-                    prevX = currX;
-                    prevY = currY;
-                    currX = nextX;
-                    currY = nextY;
-                    nextX = currX - axis.getX() * Math.pow(2, i);
-                    nextY = currY - axis.getY() * Math.pow(2, i);
-                    i++;
-                    addPoint(new PointDouble(nextX, nextY));
-                }
-                double minX = prevX;
-                double maxX = nextX;
-                double minY = prevY;
-                double maxY = nextY;
-                Solver1D solver = new GoldenRatioSolver();
-                solver.setF(a -> getF().apply(minX * (1 - a) + maxX * a, minY * (1 - a) + maxY * a));
-                PointDouble res = solver.solve(0, 1);
-                PointDouble point = new PointDouble(maxX * res.getX() + minX * (1 - res.getX()), maxY * res.getX() + minY * (1 - res.getX()));
-                addPoint(point);
-                return point;
-            }
+    protected PointDouble findMinOnAxis(SolveContext context, PointDouble axis, PointDouble startPoint) {
+        Vector2 point = new Vector2(startPoint);
+        findMinOnAxis(context, new Vector2(axis), point);
+        return point.toPoint();
+    }
     
-            axis = axis.scale(0.5);
-        } while (axis.length() > EPSILON && i < 32);
-        return startPoint;
+    /**Moves the point along the axis with the configured line search, in place. The axis is left unchanged*/
+    protected void findMinOnAxis(SolveContext context, Vector2 direction, Vector2 point) {
+        lineSearch.search(context.getF(), point, direction, context);
     }
 }
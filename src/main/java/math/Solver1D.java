@@ -2,24 +2,25 @@ package math;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Function;
+import java.util.function.DoubleUnaryOperator;
 
 public abstract class Solver1D {
     public static final Double EPSILON = 0.0001;
-    private Function<Double, Double> f;
+    private DoubleUnaryOperator f;
     private List<String> log = new ArrayList<>();
     private List<PointDouble> points = new ArrayList<>();
+    private boolean tracing = true;
     
     public Solver1D(){}
-    public Solver1D(Function<Double, Double> f) {
+    public Solver1D(DoubleUnaryOperator f) {
         this.f = f;
     }
 
-    public Function<Double, Double> getF() {
+    public DoubleUnaryOperator getF() {
         return this.f;
     }
 
-    public void setF(Function<Double, Double> f) {
+    public void setF(DoubleUnaryOperator f) {
         this.f = f;
     }
 
@@ -35,14 +36,40 @@ public abstract class Solver1D {
         return solveInternal(lower, upper);
     }
     
+    /**
+     * Minimize with a bracket already known, x lying inside it with a value below both ends.
+     * Solvers that can start from the known values override {@link #solveInternal(double, double, double, double, double, double)}, the rest ignore them
+     */
+    public PointDouble solve(double lower, double upper, double x, double fx, double fLower, double fUpper) {
+        points.clear();
+        log.clear();
+        return solveInternal(lower, upper, x, fx, fLower, fUpper);
+    }
+    
     protected abstract PointDouble solveInternal(double lower, double upper);
+    
+    protected PointDouble solveInternal(double lower, double upper, double x, double fx, double fLower, double fUpper) {
+        return solveInternal(lower, upper);
+    }
     protected abstract int getLogBatchSize();
 
+    public boolean isTracing() {
+        return tracing;
+    }
+    
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+    
     protected void addToLog(String value) {
-        log.add(value);
+        if (tracing) {
+            log.add(value);
+        }
     }
     protected void addPoint(PointDouble point) {
-        points.add(point);
+        if (tracing) {
+            points.add(point);
+        }
     }
 
     /**@return Returns log as a list of string, each representing a solution step*/
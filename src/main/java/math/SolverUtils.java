@@ -1,103 +1,104 @@
 package math;
 
 import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
 
 public abstract class SolverUtils {
     public static final Double EPSILON = 0.001;
     
-    public static PointDouble gradient(BiFunction<Double, Double, Double> f, PointDouble point) {
-        return new PointDouble(fdx(f, point, 1), fdy(f, point, 1));
+    /**Adapts an objective written against the old boxed signature*/
+    public static DoubleBinaryOperator unboxed(BiFunction<Double, Double, Double> f) {
+        return f::apply;
     }
     
-    public static double fdx(BiFunction<Double, Double, Double> f, PointDouble point, int order) {
+    /**@return Boxed view of a primitive objective, for code still using the old signature*/
+    public static BiFunction<Double, Double, Double> boxed(DoubleBinaryOperator f) {
+        return f::applyAsDouble;
+    }
+    
+    public static PointDouble gradient(DoubleBinaryOperator f, PointDouble point) {
+        Vector2 gradient = new Vector2();
+        gradient(f, point.getX(), point.getY(), gradient);
+        return gradient.toPoint();
+    }
+    
+    /**Writes the gradient into out, exact if the function is a {@link DifferentiableFunction}, forward differences otherwise*/
+    public static void gradient(DoubleBinaryOperator f, double x, double y, Vector2 out) {
+        if (f instanceof DifferentiableFunction) {
+            ((DifferentiableFunction) f).gradient(x, y, out);
+            return;
+        }
+        valueAndGradient(f, x, y, out);
+    }
+    
+    /**@return Value at the point, with the gradient written into out. Costs one pass for a {@link DifferentiableFunction}, three evaluations otherwise*/
+    public static double valueAndGradient(DoubleBinaryOperator f, double x, double y, Vector2 out) {
+        if (f instanceof DifferentiableFunction) {
+            return ((DifferentiableFunction) f).valueAndGradient(x, y, out);
+        }
+        double value = f.applyAsDouble(x, y);
+        out.set((f.applyAsDouble(x + EPSILON, y) - value) / EPSILON, (f.applyAsDouble(x, y + EPSILON) - value) / EPSILON);
+        return value;
+    }
+    
+    /**@return Exact partial derivative of order 1 or 2 by x (byX) or y, NaN if the function does not provide it*/
+    static double exactDerivative(DoubleBinaryOperator f, PointDouble point, int order, boolean byX) {
+        if (!(f instanceof DifferentiableFunction) || order < 1 || order > 2) {
+            return Double.NaN;
+        }
+        DifferentiableFunction d = (DifferentiableFunction) f;
+        if (order == 1) {
+            Vector2 gradient = new Vector2();
+            d.gradient(point.getX(), point.getY(), gradient);
+            return byX ? gradient.x : gradient.y;
+        }
+        double[] hessian = new double[3];
+        d.hessian(point.getX(), point.getY(), hessian);
+        return byX ? hessian[0] : hessian[2];
+    }
+    
+    public static double fdx(DoubleBinaryOperator f, PointDouble point, int order) {
         if (order < 0) {
             throw new IllegalArgumentException("Derivative order has to be non-negative");
         }
         if (order == 0) {
-            return f.apply(point.getX(), point.getY());
+            return f.applyAsDouble(point.getX(), point.getY());
+        }
+        if (f instanceof DifferentiableFunction && order <= 2) {
+            return exactDerivative(f, point, order, true);
         }
         return (fdx(f, point.add(EPSILON, 0), order - 1) - fdx(f, point, order - 1)) / EPSILON;
     }
     
-    public static double fdx(BiFunction<Double, Double, Double> f, PointDouble point) {
+    public static double fdx(DoubleBinaryOperator f, PointDouble point) {
         return fdx(f, point, 1);
     }
     
-    public static double fdy(BiFunction<Double, Double, Double> f, PointDouble point, int order) {
+    public static double fdy(DoubleBinaryOperator f, PointDouble point, int order) {
         if (order < 0) {
             throw new IllegalArgumentException("Derivative order has to be non-negative");
         }
         if (order == 0) {
-            return f.apply(point.getX(), point.getY());
+            return f.applyAsDouble(point.getX(), point.getY());
+        }
+        if (f instanceof DifferentiableFunction && order <= 2) {
+            return exactDerivative(f, point, order, false);
         }
         return (fdy(f, point.add(0, EPSILON), order - 1) - fdy(f, point, order - 1)) / EPSILON;
     }
     
-    public static double fdy(BiFunction<Double, Double, Double> f, PointDouble point) {
+    public static double fdy(DoubleBinaryOperator f, PointDouble point) {
         return fdy(f, point, 1);
     }
     
-    public static PointDouble findMinOnAxis(BiFunction<Double, Double, Double> f, PointDouble axis, PointDouble startPoint) {
-        
-        int i = 0;
-        double prevX = startPoint.getX();
-        double prevY = startPoint.getY();
-        double currX = startPoint.getX();
-        double currY = startPoint.getY();
-        double nextX = currX + axis.getX() * Math.pow(2, i);
-        double nextY = currY + axis.getY() * Math.pow(2, i);
-        i++;
-        
-        do {
-            nextX = currX + axis.getX() * Math.pow(2, i);
-            nextY = currY + axis.getY() * Math.pow(2, i);
-            if (f.apply(currX, currY) >= f.apply(nextX, nextY)) {
-                //Positive direction
-                while (f.apply(currX, currY) > f.apply(nextX, nextY)) {
-                    prevX = currX;
-                    prevY = currY;
-                    currX = nextX;
-                    currY = nextY;
-                    nextX = currX + axis.getX() * Math.pow(2, i);
-                    nextY = currY + axis.getY() * Math.pow(2, i);
-                    i++;
-                }
-                double minX = prevX;
-                double maxX = nextX;
-                double minY = prevY;
-                double maxY = nextY;
-                Solver1D solver = new GoldenRatioSolver();
-                solver.setF(a -> f.apply(minX * (1 - a) + maxX * a, minY * (1 - a) + maxY * a));
-                PointDouble res = solver.solve(0, 1);
-                PointDouble point = new PointDouble(maxX * res.getX() + minX * (1 - res.getX()), maxY * res.getX() + minY * (1 - res.getX()));
-                return point;
-            }
-            nextX = currX - axis.getX() * Math.pow(2, i - 1);
-            nextY = currY - axis.getY() * Math.pow(2, i - 1);
-            if (f.apply(currX, currY) > f.apply(nextX, nextY)) {
-                //Negative direction
-                while (f.apply(currX, currY) >= f.apply(nextX, nextY)) {
-                    prevX = currX;
-                    prevY = currY;
-                    currX = nextX;
-                    currY = nextY;
-                    nextX = currX - axis.getX() * Math.pow(2, i);
-                    nextY = currY - axis.getY() * Math.pow(2, i);
-                    i++;
-                }
-                double minX = prevX;
-                double maxX = nextX;
-                double minY = prevY;
-                double maxY = nextY;
-                Solver1D solver = new GoldenRatioSolver();
-                solver.setF(a -> f.apply(minX * (1 - a) + maxX * a, minY * (1 - a) + maxY * a));
-                PointDouble res = solver.solve(0, 1);
-                PointDouble point = new PointDouble(maxX * res.getX() + minX * (1 - res.getX()), maxY * res.getX() + minY * (1 - res.getX()));
-                return point;
-            }
-            
-            axis = axis.scale(0.5);
-        } while (axis.length() > EPSILON);
-        return startPoint;
+    public static PointDouble findMinOnAxis(DoubleBinaryOperator f, PointDouble axis, PointDouble startPoint) {
+        return findMinOnAxis(f, axis, startPoint, new ExactLineSearch());
+    }
+    
+    /**@return Point reached from the start point along the axis by the line search, without a trace*/
+    public static PointDouble findMinOnAxis(DoubleBinaryOperator f, PointDouble axis, PointDouble startPoint, LineSearch lineSearch) {
+        Vector2 point = new Vector2(startPoint);
+        lineSearch.search(f, point, new Vector2(axis), null);
+        return point.toPoint();
     }
 }
@@ -0,0 +1,98 @@
+package math;
+
+import math.ExpressionNode.Type;
+
+import static math.ExpressionNode.constant;
+import static math.ExpressionNode.of;
+
+/**Symbolic differentiation of expression trees. Piecewise operations are rejected, since their derivative is not an expression of the same kind*/
+public abstract class SymbolicDifferentiator {
+
+    /**
+     * @param variable {@link Type#X} or {@link Type#Y}
+     * @return Simplified partial derivative of the expression
+     * @throws IllegalArgumentException If the expression contains an operation that can not be differentiated symbolically
+     */
+    public static ExpressionNode derivative(ExpressionNode node, Type variable) {
+        if (variable != Type.X && variable != Type.Y) {
+            throw new IllegalArgumentException("Can only differentiate by x or y");
+        }
+        return differentiate(node.simplify(), variable).simplify();
+    }
+
+    private static ExpressionNode differentiate(ExpressionNode node, Type variable) {
+        if (!node.dependsOn(variable)) {
+            return constant(0);
+        }
+        if (node.getType() == variable) {
+            return constant(1);
+        }
+        ExpressionNode u = node.getChild(0);
+        ExpressionNode du = differentiate(u, variable);
+        ExpressionNode v = node.getChildCount() > 1 ? node.getChild(1) : null;
+        switch (node.getType()) {
+            case ADD:
+                return of(Type.ADD, du, differentiate(v, variable));
+            case SUBTRACT:
+                return of(Type.SUBTRACT, du, differentiate(v, variable));
+            case MULTIPLY:
+                return of(Type.ADD, of(Type.MULTIPLY, du, v), of(Type.MULTIPLY, u, differentiate(v, variable)));
+            case DIVIDE:
+                return of(Type.DIVIDE, of(Type.SUBTRACT, of(Type.MULTIPLY, du, v), of(Type.MULTIPLY, u, differentiate(v, variable))), of(Type.MULTIPLY, v, v));
+            case POWER:
+                if (v.isConstant() && ExpressionNode.oddRoot(v.getValue()) != 0) {
+                    //u ^ (v - 1) as (u ^ v) ^ (1 - 1 / v), an integer power of the odd root, so it stays real for negative u
+                    int root = ExpressionNode.oddRoot(v.getValue());
+                    return of(Type.MULTIPLY, of(Type.MULTIPLY, v, of(Type.POWER, node, constant(v.getValue() > 0 ? 1 - root : 1 + root))), du);
+                }
+                if (!v.dependsOn(variable)) {
+                    return of(Type.MULTIPLY, of(Type.MULTIPLY, v, of(Type.POWER, u, of(Type.SUBTRACT, v, constant(1)))), du);
+                }
+                if (!u.dependsOn(variable)) {
+                    return of(Type.MULTIPLY, of(Type.MULTIPLY, node, of(Type.LN, u)), differentiate(v, variable));
+                }
+                return of(Type.MULTIPLY, node, of(Type.ADD, of(Type.MULTIPLY, differentiate(v, variable), of(Type.LN, u)), of(Type.DIVIDE, of(Type.MULTIPLY, v, du), u)));
+            case NEGATE:
+                return of(Type.NEGATE, du);
+            case SIN:
+                return of(Type.MULTIPLY, of(Type.COS, u), du);
+            case COS:
+                return of(Type.NEGATE, of(Type.MULTIPLY, of(Type.SIN, u), du));
+            case TAN:
+                return of(Type.DIVIDE, du, of(Type.POWER, of(Type.COS, u), constant(2)));
+            case COT:
+                return of(Type.NEGATE, of(Type.DIVIDE, du, of(Type.POWER, of(Type.SIN, u), constant(2))));
+            case ASIN:
+                return of(Type.DIVIDE, du, of(Type.SQRT, of(Type.SUBTRACT, constant(1), of(Type.POWER, u, constant(2)))));
+            case ACOS:
+                return of(Type.NEGATE, of(Type.DIVIDE, du, of(Type.SQRT, of(Type.SUBTRACT, constant(1), of(Type.POWER, u, constant(2))))));
+            case ATAN:
+                return of(Type.DIVIDE, du, of(Type.ADD, constant(1), of(Type.POWER, u, constant(2))));
+            case SINH:
+                return of(Type.MULTIPLY, of(Type.COSH, u), du);
+            case COSH:
+                return of(Type.MULTIPLY, of(Type.SINH, u), du);
+            case TANH:
+                return of(Type.DIVIDE, du, of(Type.POWER, of(Type.COSH, u), constant(2)));
+            case EXP:
+                return of(Type.MULTIPLY, node, du);
+            case LN:
+                return of(Type.DIVIDE, du, u);
+            case LOG10:
+                return of(Type.DIVIDE, du, of(Type.MULTIPLY, constant(Math.log(10)), u));
+            case LOG2:
+                return of(Type.DIVIDE, du, of(Type.MULTIPLY, constant(Math.log(2)), u));
+            case SQRT:
+                return of(Type.DIVIDE, du, of(Type.MULTIPLY, constant(2), node));
+            case ABS:
+                return of(Type.MULTIPLY, of(Type.SIGN, u), du);
+            case SIGN:
+            case FLOOR:
+            case CEIL:
+                //Piecewise constant, zero almost everywhere
+                return constant(0);
+            default:
+                throw new IllegalArgumentException("Operation " + node.getType() + " can not be differentiated symbolically");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package math;
+
+/**
+ * Mutable two-component vector for solver inner loops.
+ * Operations modify the vector in place and return it, so hot loops can reuse a few instances instead of allocating {@link PointDouble}s.
+ */
+public final class Vector2 {
+    public double x;
+    public double y;
+
+    public Vector2() {
+    }
+
+    public Vector2(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public Vector2(Vector2 v) {
+        this(v.x, v.y);
+    }
+
+    public Vector2(PointDouble point) {
+        this(point.getX(), point.getY());
+    }
+
+    public Vector2 set(double x, double y) {
+        this.x = x;
+        this.y = y;
+        return this;
+    }
+
+    public Vector2 set(Vector2 v) {
+        return set(v.x, v.y);
+    }
+
+    public Vector2 set(PointDouble point) {
+        return set(point.getX(), point.getY());
+    }
+
+    public Vector2 add(double x, double y) {
+        this.x += x;
+        this.y += y;
+        return this;
+    }
+
+    public Vector2 add(Vector2 v) {
+        return add(v.x, v.y);
+    }
+
+    /**Adds v * k to this vector*/
+    public Vector2 addScaled(Vector2 v, double k) {
+        return add(v.x * k, v.y * k);
+    }
+
+    public Vector2 scale(double k) {
+        x *= k;
+        y *= k;
+        return this;
+    }
+
+    public Vector2 normalize() {
+        return scale(1 / length());
+    }
+
+    public double dot(Vector2 v) {
+        return x * v.x + y * v.y;
+    }
+
+    public double lengthSquared() {
+        return x * x + y * y;
+    }
+
+    public double length() {
+        return Math.sqrt(lengthSquared());
+    }
+
+    public double distance(Vector2 v) {
+        return Math.sqrt((x - v.x) * (x - v.x) + (y - v.y) * (y - v.y));
+    }
+
+    public boolean isNaN() {
+        return Double.isNaN(x) || Double.isNaN(y);
+    }
+
+    public PointDouble toPoint() {
+        return new PointDouble(x, y);
+    }
+
+    @Override
+    public String toString() {
+        return toPoint().toString();
+    }
+
+    public String toString(int precision) {
+        return toPoint().toString(precision);
+    }
+}
@@ -0,0 +1,137 @@
+package math;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Finds a step satisfying the strong Wolfe conditions: sufficient decrease, f(x + t d) <= f(x) + c1 t grad f(x) . d,
+ * and curvature, |grad f(x + t d) . d| <= c2 |grad f(x) . d|. Doubles the step until an acceptable one is bracketed,
+ * then zooms in with safeguarded cubic interpolation. Searches against the direction if it points uphill.
+ */
+public class WolfeLineSearch implements LineSearch {
+    private static final int I_MAX = 32;
+    private static final double STEP_TOLERANCE = 1e-9;
+    private final double c1;
+    private final double c2;
+
+    public WolfeLineSearch() {
+        this(1e-4, 0.9);
+    }
+
+    /**
+     * @param c1 Sufficient decrease constant
+     * @param c2 Curvature constant, 0 < c1 < c2 < 1
+     */
+    public WolfeLineSearch(double c1, double c2) {
+        if (!(c1 > 0 && c1 < c2 && c2 < 1)) {
+            throw new IllegalArgumentException("Wolfe constants have to satisfy 0 < c1 < c2 < 1");
+        }
+        this.c1 = c1;
+        this.c2 = c2;
+    }
+
+    @Override
+    public double search(DoubleBinaryOperator f, Vector2 point, Vector2 direction, SolveContext context) {
+        Vector2 start = new Vector2(point);
+        Vector2 gradient = new Vector2();
+        double value = SolverUtils.valueAndGradient(f, start.x, start.y, gradient);
+        double slope = gradient.dot(direction);
+        if (slope == 0 || Double.isNaN(slope)) {
+            return 0;
+        }
+        Vector2 axis = new Vector2(direction);
+        double sign = 1;
+        if (slope > 0) {
+            axis.scale(-1);
+            slope = -slope;
+            sign = -1;
+        }
+
+        double prevStep = 0;
+        double prevValue = value;
+        double prevSlope = slope;
+        double step = 1;
+        for (int i = 0; i < I_MAX; i++) {
+            double stepValue = evaluate(f, start, axis, step, point, gradient, context);
+            double stepSlope = gradient.dot(axis);
+            if (stepValue > value + c1 * step * slope || (i > 0 && stepValue >= prevValue)) {
+                return sign * zoom(f, start, axis, value, slope, prevStep, prevValue, prevSlope, step, stepValue, stepSlope, point, gradient, context);
+            }
+            if (Math.abs(stepSlope) <= -c2 * slope) {
+                return sign * step;
+            }
+            if (stepSlope >= 0) {
+                return sign * zoom(f, start, axis, value, slope, step, stepValue, stepSlope, prevStep, prevValue, prevSlope, point, gradient, context);
+            }
+            prevStep = step;
+            prevValue = stepValue;
+            prevSlope = stepSlope;
+            step *= 2;
+        }
+        evaluate(f, start, axis, prevStep, point, gradient, context);
+        return sign * prevStep;
+    }
+
+    /**
+     * Narrows the interval between the steps lo and hi, where lo satisfies sufficient decrease and has the lower value
+     * @return Accepted step, with the point moved to it
+     */
+    private double zoom(DoubleBinaryOperator f, Vector2 start, Vector2 axis, double value, double slope,
+                        double lo, double loValue, double loSlope, double hi, double hiValue, double hiSlope, Vector2 point, Vector2 gradient, SolveContext context) {
+        for (int i = 0; i < I_MAX; i++) {
+            double step = interpolate(lo, loValue, loSlope, hi, hiValue, hiSlope);
+            double stepValue = evaluate(f, start, axis, step, point, gradient, context);
+            double stepSlope = gradient.dot(axis);
+            if (stepValue > value + c1 * step * slope || stepValue >= loValue) {
+                hi = step;
+                hiValue = stepValue;
+                hiSlope = stepSlope;
+            }
+            else {
+                if (Math.abs(stepSlope) <= -c2 * slope) {
+                    return step;
+                }
+                if (stepSlope * (hi - lo) >= 0) {
+                    hi = lo;
+                    hiValue = loValue;
+                    hiSlope = loSlope;
+                }
+                lo = step;
+                loValue = stepValue;
+                loSlope = stepSlope;
+            }
+            if (Math.abs(hi - lo) < STEP_TOLERANCE) {
+                break;
+            }
+        }
+        point.set(start).addScaled(axis, lo);
+        return lo;
+    }
+
+    /**@return Minimizer of the cubic through both ends, kept away from the ends; the midpoint if the cubic is unusable*/
+    private static double interpolate(double lo, double loValue, double loSlope, double hi, double hiValue, double hiSlope) {
+        double d1 = loSlope + hiSlope - 3 * (loValue - hiValue) / (lo - hi);
+        double d2 = Math.signum(hi - lo) * Math.sqrt(d1 * d1 - loSlope * hiSlope);
+        double step = hi - (hi - lo) * (hiSlope + d2 - d1) / (hiSlope - loSlope + 2 * d2);
+        double margin = 0.1 * Math.abs(hi - lo);
+        if (Double.isNaN(step) || step < Math.min(lo, hi) + margin || step > Math.max(lo, hi) - margin) {
+            return (lo + hi) / 2;
+        }
+        return step;
+    }
+
+    private static double evaluate(DoubleBinaryOperator f, Vector2 start, Vector2 axis, double step, Vector2 point, Vector2 gradient, SolveContext context) {
+        point.set(start).addScaled(axis, step);
+        if (context != null) {
+            context.addPoint(point);
+        }
+        return SolverUtils.valueAndGradient(f, point.x, point.y, gradient);
+    }
+
+    public double getC1() {
+        return c1;
+    }
+
+    public double getC2() {
+        return c2;
+    }
+}